@@ -0,0 +1,186 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * All accounts of the bank, keyed by account number.
+ *
+ * The map is a {@link ConcurrentHashMap}, which locks per bin, so lookups
+ * never block and openings only contend when they hash together.
+ * Transfers lock both accounts in account-number order, which rules out
+ * deadlock between opposite transfers. Anyone reading two balances through
+ * {@link #balancesOf} takes the same locks, so a transfer is never seen
+ * half-applied.
+ *
+ * Once a {@link TransactionJournal} is attached, openings, deposits,
+ * withdrawals and transfers are journaled before they take effect, so a
+ * change the journal refused is never applied; a transfer is one record,
+ * so replay never sees half of one either.
+ */
+class AccountRegistry {
+
+    /**
+     * Outcome of a transfer.
+     */
+    enum TransferResult {
+        OK,
+        UNKNOWN_ACCOUNT,
+        SAME_ACCOUNT,
+        INVALID_AMOUNT,
+        INSUFFICIENT_FUNDS
+    }
+
+    private final ConcurrentMap<String, BankAccount> accounts;
+    private volatile TransactionJournal journal; // Null when not journaled
+
+    AccountRegistry() {
+        this(16);
+    }
+
+    AccountRegistry(int expectedAccounts) {
+        accounts = new ConcurrentHashMap<>(expectedAccounts);
+    }
+
+    /**
+     * Opens a new account. Throws if the number is already taken.
+     */
+    BankAccount open(String accountNumber, String holderName, long initialCents) {
+        TransactionJournal journal = this.journal;
+        long[] sequence = new long[1];
+        boolean[] created = new boolean[1];
+        BankAccount account = accounts.computeIfAbsent(accountNumber, number -> {
+            // Journaled before the account is visible; if the append throws, nothing is opened
+            if (journal != null) {
+                sequence[0] = journal.append(TransactionJournal.OPEN, number, initialCents, holderName);
+            }
+            BankAccount opened = new BankAccount(number, holderName, initialCents);
+            opened.setJournal(journal);
+            created[0] = true;
+            return opened;
+        });
+        if (!created[0]) {
+            throw new IllegalArgumentException("Account " + accountNumber + " already exists");
+        }
+        if (journal != null) {
+            journal.awaitDurable(sequence[0]);
+        }
+        return account;
+    }
+
+    /**
+     * Puts back an account during recovery, without journaling it.
+     */
+    BankAccount restore(String accountNumber, String holderName, long balanceCents) {
+        BankAccount account = new BankAccount(accountNumber, holderName, balanceCents);
+        accounts.put(accountNumber, account);
+        return account;
+    }
+
+    /**
+     * Journals every change from now on, or stops journaling when null.
+     */
+    void attach(TransactionJournal journal) {
+        this.journal = journal;
+        for (BankAccount account : accounts.values()) {
+            account.setJournal(journal);
+        }
+    }
+
+    void forEach(Consumer<BankAccount> action) {
+        accounts.values().forEach(action);
+    }
+
+    /**
+     * Returns the account with this number, or null.
+     */
+    BankAccount find(String accountNumber) {
+        return accounts.get(accountNumber);
+    }
+
+    int size() {
+        return accounts.size();
+    }
+
+    /**
+     * Moves money between two accounts, all or nothing.
+     */
+    TransferResult transfer(String fromNumber, String toNumber, long cents) {
+        long start = System.nanoTime();
+        TransferResult result = null; // Stays null if the journal throws
+        try {
+            result = transferUnmetered(fromNumber, toNumber, cents);
+            return result;
+        } finally {
+            BankMetrics.Rejection rejection = result == TransferResult.OK ? BankMetrics.Rejection.NONE
+                : result == TransferResult.INSUFFICIENT_FUNDS ? BankMetrics.Rejection.FUNDS : BankMetrics.Rejection.OTHER;
+            BankMetrics.INSTANCE.record(BankMetrics.Operation.TRANSFER, rejection, System.nanoTime() - start);
+        }
+    }
+
+    private TransferResult transferUnmetered(String fromNumber, String toNumber, long cents) {
+        BankAccount from = accounts.get(fromNumber);
+        BankAccount to = accounts.get(toNumber);
+        if (from == null || to == null) {
+            return TransferResult.UNKNOWN_ACCOUNT;
+        }
+        if (from == to) {
+            return TransferResult.SAME_ACCOUNT;
+        }
+        if (cents <= 0) {
+            return TransferResult.INVALID_AMOUNT;
+        }
+
+        TransactionJournal journal = this.journal;
+        long sequence;
+        BankAccount first = lockOrder(from, to);
+        BankAccount second = first == from ? to : from;
+        synchronized (first) {
+            synchronized (second) {
+                if (journal == null) {
+                    if (!from.debit(cents)) {
+                        return TransferResult.INSUFFICIENT_FUNDS;
+                    }
+                    if (!to.credit(cents)) {
+                        from.credit(cents); // Destination would overflow; put the money back
+                        return TransferResult.INVALID_AMOUNT;
+                    }
+                    return TransferResult.OK;
+                }
+                if (!from.canDebit(cents)) {
+                    return TransferResult.INSUFFICIENT_FUNDS;
+                }
+                if (!to.canCredit(cents)) {
+                    return TransferResult.INVALID_AMOUNT; // Destination would overflow
+                }
+                // Journaled first; if the append throws, neither balance has moved
+                sequence = journal.append(TransactionJournal.TRANSFER, fromNumber, cents, toNumber);
+                if (!from.debit(cents) || !to.credit(cents)) {
+                    throw new AssertionError("Balance changed under the account locks");
+                }
+            }
+        }
+        journal.awaitDurable(sequence); // Outside the locks, so other transfers share the flush
+        return TransferResult.OK;
+    }
+
+    /**
+     * Reads two balances, in cents, at one instant with respect to transfers.
+     */
+    long[] balancesOf(BankAccount a, BankAccount b) {
+        if (a == b) {
+            long balance = a.getBalanceCents();
+            return new long[] { balance, balance };
+        }
+        BankAccount first = lockOrder(a, b);
+        BankAccount second = first == a ? b : a;
+        synchronized (first) {
+            synchronized (second) {
+                return new long[] { a.getBalanceCents(), b.getBalanceCents() };
+            }
+        }
+    }
+
+    private static BankAccount lockOrder(BankAccount a, BankAccount b) {
+        return a.getAccountNumber().compareTo(b.getAccountNumber()) <= 0 ? a : b;
+    }
+}
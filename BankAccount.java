@@ -0,0 +1,139 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bank account that is safe to use from several threads at once.
+ *
+ * Amounts are whole cents (see {@link Money}), so balances never drift.
+ * The balance is held in an {@link AtomicLong} and updated with
+ * compare-and-set loops, so concurrent deposits are never lost and a
+ * withdrawal only succeeds if the funds are there at the moment it applies.
+ * When the account is attached to a {@link TransactionJournal}, each change
+ * is journaled before it is applied, under the account's lock, and durable
+ * before the call returns; a change the journal refused is never applied.
+ */
+class BankAccount {
+    private final String accountNumber;
+    private final String accountHolderName;
+    private final AtomicLong balanceCents;
+    private volatile TransactionJournal journal; // Null when not journaled
+
+    public BankAccount(String accountNumber, String accountHolderName, long initialCents) {
+        this.accountNumber = accountNumber;
+        this.accountHolderName = accountHolderName;
+        this.balanceCents = new AtomicLong(initialCents);
+    }
+
+    public String getAccountNumber() { return accountNumber; }
+    public String getAccountHolderName() { return accountHolderName; }
+    public long getBalanceCents() { return balanceCents.get(); }
+
+    void setJournal(TransactionJournal journal) { this.journal = journal; }
+
+    public boolean deposit(long cents) {
+        long start = System.nanoTime();
+        boolean done = false;
+        try {
+            done = apply(TransactionJournal.DEPOSIT, cents);
+        } finally {
+            BankMetrics.INSTANCE.record(BankMetrics.Operation.DEPOSIT,
+                done ? BankMetrics.Rejection.NONE : BankMetrics.Rejection.OTHER, System.nanoTime() - start);
+        }
+        return done;
+    }
+
+    public boolean withdraw(long cents) {
+        long start = System.nanoTime();
+        boolean done = false;
+        try {
+            done = apply(TransactionJournal.WITHDRAWAL, cents);
+        } finally {
+            BankMetrics.Rejection rejection = done ? BankMetrics.Rejection.NONE
+                : cents <= 0 || balanceCents.get() >= cents ? BankMetrics.Rejection.OTHER : BankMetrics.Rejection.FUNDS;
+            BankMetrics.INSTANCE.record(BankMetrics.Operation.WITHDRAWAL, rejection, System.nanoTime() - start);
+        }
+        return done;
+    }
+
+    /**
+     * Journals a deposit or withdrawal, then applies it. If the append
+     * fails the balance is untouched and the exception propagates.
+     */
+    private boolean apply(byte type, long cents) {
+        boolean deposit = type == TransactionJournal.DEPOSIT;
+        TransactionJournal journal = this.journal;
+        if (journal == null) {
+            return deposit ? credit(cents) : debit(cents);
+        }
+        long sequence;
+        synchronized (this) { // Transfers take the same lock, so the balance can't move between check and apply
+            if (!(deposit ? canCredit(cents) : canDebit(cents))) {
+                return false;
+            }
+            sequence = journal.append(type, accountNumber, cents, null);
+            if (!(deposit ? credit(cents) : debit(cents))) {
+                throw new AssertionError("Balance changed under the account lock");
+            }
+        }
+        journal.awaitDurable(sequence); // Outside the lock, so other accounts' changes share the flush
+        return true;
+    }
+
+    /**
+     * True if {@link #credit} would succeed right now.
+     */
+    boolean canCredit(long cents) {
+        return cents > 0 && cents <= Long.MAX_VALUE - balanceCents.get();
+    }
+
+    /**
+     * True if {@link #debit} would succeed right now.
+     */
+    boolean canDebit(long cents) {
+        return cents > 0 && balanceCents.get() >= cents;
+    }
+
+    /**
+     * Adds to the balance without journaling. False if not positive or
+     * it would overflow.
+     */
+    boolean credit(long cents) {
+        if (cents <= 0) {
+            return false;
+        }
+        while (true) {
+            long current = balanceCents.get();
+            if (cents > Long.MAX_VALUE - current) {
+                return false; // Would overflow
+            }
+            if (balanceCents.compareAndSet(current, current + cents)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes from the balance without journaling. False if not positive or
+     * the funds aren't there.
+     */
+    boolean debit(long cents) {
+        if (cents <= 0) {
+            return false;
+        }
+        while (true) {
+            long current = balanceCents.get();
+            if (current < cents) {
+                return false; // Checked against the same value the CAS applies to, so no overdraft
+            }
+            if (balanceCents.compareAndSet(current, current - cents)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Applies a journaled change during replay, unconditionally.
+     */
+    void replay(long deltaCents) {
+        balanceCents.addAndGet(deltaCents);
+    }
+}
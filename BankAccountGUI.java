@@ -1,122 +1,247 @@
-import javax.swing.*;
-import java.awt.*;
-
-class BankAccount {
-    private String accountNumber;
-    private String accountHolderName;
-    private double balance;
-
-    public BankAccount(String accountNumber, String accountHolderName, double initialBalance) {
-        this.accountNumber = accountNumber;
-        this.accountHolderName = accountHolderName;
-        this.balance = initialBalance;
-    }
-
-    public String getAccountNumber() { return accountNumber; }
-    public String getAccountHolderName() { return accountHolderName; }
-    public double getBalance() { return balance; }
-
-    public boolean deposit(double amount) {
-        if (amount > 0) {
-            balance += amount;
-            return true;
-        }
-        return false;
-    }
-
-    public boolean withdraw(double amount) {
-        if (amount > 0 && balance >= amount) {
-            balance -= amount;
-            return true;
-        }
-        return false;
-    }
-}
-
-public class BankAccountGUI extends JFrame {
-    private final BankAccount account;
-    private final JLabel holderLabel;
-    private final JLabel numberLabel;
-    private final JLabel balanceLabel;
-
-    public BankAccountGUI() {
-        account = new BankAccount("987654321", "Jane Doe", 1000.00);
-
-        setTitle("Bank Account Management");
-        setSize(400, 300);
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setLocationRelativeTo(null);
-        setLayout(new BorderLayout(10, 10));
-
-        JPanel infoPanel = new JPanel(new GridLayout(3, 2, 5, 5));
-        infoPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-
-        infoPanel.add(new JLabel("Account Holder:"));
-        holderLabel = new JLabel(account.getAccountHolderName());
-        infoPanel.add(holderLabel);
-
-        infoPanel.add(new JLabel("Account Number:"));
-        numberLabel = new JLabel(account.getAccountNumber());
-        infoPanel.add(numberLabel);
-
-        infoPanel.add(new JLabel("Current Balance:"));
-        balanceLabel = new JLabel(String.format("$%.2f", account.getBalance()));
-        infoPanel.add(balanceLabel);
-
-        add(infoPanel, BorderLayout.CENTER);
-
-        JPanel buttonPanel = new JPanel();
-        JButton depositButton = new JButton("Deposit");
-        JButton withdrawButton = new JButton("Withdraw");
-        buttonPanel.add(depositButton);
-        buttonPanel.add(withdrawButton);
-
-        add(buttonPanel, BorderLayout.SOUTH);
-
-        depositButton.addActionListener(e -> performDeposit());
-        withdrawButton.addActionListener(e -> performWithdrawal());
-    }
-
-    private void updateBalance() {
-        balanceLabel.setText(String.format("$%.2f", account.getBalance()));
-    }
-    
-    private void performDeposit() {
-        String amountStr = JOptionPane.showInputDialog(this, "Enter amount to deposit:", "Deposit", JOptionPane.PLAIN_MESSAGE);
-        try {
-            double amount = Double.parseDouble(amountStr);
-            if (account.deposit(amount)) {
-                JOptionPane.showMessageDialog(this, "Deposit successful.");
-                updateBalance();
-            } else {
-                JOptionPane.showMessageDialog(this, "Deposit amount must be positive.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
-        } catch (NumberFormatException ex) {
-            JOptionPane.showMessageDialog(this, "Invalid amount entered.", "Error", JOptionPane.ERROR_MESSAGE);
-        } catch (NullPointerException ignored) {
-            // User cancelled
-        }
-    }
-    
-    private void performWithdrawal() {
-        String amountStr = JOptionPane.showInputDialog(this, "Enter amount to withdraw:", "Withdrawal", JOptionPane.PLAIN_MESSAGE);
-        try {
-            double amount = Double.parseDouble(amountStr);
-             if (account.withdraw(amount)) {
-                JOptionPane.showMessageDialog(this, "Withdrawal successful.");
-                updateBalance();
-            } else {
-                JOptionPane.showMessageDialog(this, "Invalid amount or insufficient funds.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
-        } catch (NumberFormatException ex) {
-            JOptionPane.showMessageDialog(this, "Invalid amount entered.", "Error", JOptionPane.ERROR_MESSAGE);
-        } catch (NullPointerException ignored) {
-            // User cancelled
-        }
-    }
-
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> new BankAccountGUI().setVisible(true));
-    }
-}
-
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+public class BankAccountGUI extends JFrame {
+    private final AccountRegistry registry;
+    private TransactionJournal journal; // Null if it could not be opened
+    private BankAccount account; // The account on screen
+    private final JTextField lookupField;
+    private final JLabel holderLabel;
+    private final JLabel numberLabel;
+    private final JLabel balanceLabel;
+    private long shownBalanceCents; // What balanceLabel says, to skip formatting when unchanged
+    private final JLabel[] statsLabels = new JLabel[6];
+
+    public BankAccountGUI() {
+        registry = new AccountRegistry();
+        try {
+            journal = TransactionJournal.open(Paths.get(System.getProperty("bank.journal.dir", "bank-journal")), registry);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not open the transaction journal; changes will not be saved.\n"
+                + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+        seedAccounts(registry);
+        account = registry.find("987654321");
+        BankMetrics.registerMBean();
+
+        setTitle("Bank Account Management");
+        setSize(640, 300);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLocationRelativeTo(null);
+        setLayout(new BorderLayout(10, 10));
+
+        JPanel lookupPanel = new JPanel();
+        lookupPanel.add(new JLabel("Account #:"));
+        lookupField = new JTextField(12);
+        lookupPanel.add(lookupField);
+        JButton lookupButton = new JButton("Open");
+        lookupPanel.add(lookupButton);
+
+        add(lookupPanel, BorderLayout.NORTH);
+
+        JPanel infoPanel = new JPanel(new GridLayout(3, 2, 5, 5));
+        infoPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        infoPanel.add(new JLabel("Account Holder:"));
+        holderLabel = new JLabel(account.getAccountHolderName());
+        infoPanel.add(holderLabel);
+
+        infoPanel.add(new JLabel("Account Number:"));
+        numberLabel = new JLabel(account.getAccountNumber());
+        infoPanel.add(numberLabel);
+
+        infoPanel.add(new JLabel("Current Balance:"));
+        shownBalanceCents = account.getBalanceCents();
+        balanceLabel = new JLabel(Money.format(shownBalanceCents));
+        infoPanel.add(balanceLabel);
+
+        add(infoPanel, BorderLayout.CENTER);
+
+        JPanel statsPanel = new JPanel(new GridLayout(statsLabels.length, 2, 5, 2));
+        statsPanel.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createTitledBorder("Activity"), BorderFactory.createEmptyBorder(2, 5, 2, 5)));
+        String[] statsNames = { "Deposits:", "Withdrawals:", "Transfers:", "Rejected:", "Ops/sec:", "Latency p50/p99:" };
+        for (int i = 0; i < statsLabels.length; i++) {
+            statsPanel.add(new JLabel(statsNames[i]));
+            statsLabels[i] = new JLabel("0");
+            statsPanel.add(statsLabels[i]);
+        }
+        add(statsPanel, BorderLayout.EAST);
+        // Reads the counters once a second; recording threads never wait on this
+        new Timer(1000, e -> updateStats()).start();
+
+        JPanel buttonPanel = new JPanel();
+        JButton depositButton = new JButton("Deposit");
+        JButton withdrawButton = new JButton("Withdraw");
+        JButton transferButton = new JButton("Transfer");
+        buttonPanel.add(depositButton);
+        buttonPanel.add(withdrawButton);
+        buttonPanel.add(transferButton);
+
+        add(buttonPanel, BorderLayout.SOUTH);
+
+        depositButton.addActionListener(e -> performDeposit());
+        withdrawButton.addActionListener(e -> performWithdrawal());
+        transferButton.addActionListener(e -> performTransfer());
+        lookupButton.addActionListener(e -> lookupAccount());
+        lookupField.addActionListener(e -> lookupAccount());
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                closeJournal();
+            }
+        });
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close(); // Snapshot now so the next start has nothing to replay
+        } catch (IOException ex) {
+            System.err.println("Could not snapshot the transaction journal: " + ex.getMessage());
+        }
+        journal = null;
+    }
+
+    /**
+     * Opens the demo accounts unless the journal already brought them back.
+     */
+    static void seedAccounts(AccountRegistry registry) {
+        if (registry.find("987654321") == null) {
+            registry.open("987654321", "Jane Doe", 100_000L);
+        }
+        if (registry.find("123456789") == null) {
+            registry.open("123456789", "John Smith", 50_000L);
+        }
+    }
+
+    private void updateBalance() {
+        long cents = account.getBalanceCents();
+        if (cents != shownBalanceCents) {
+            shownBalanceCents = cents;
+            balanceLabel.setText(Money.format(cents));
+        }
+    }
+
+    private void updateStats() {
+        BankMetrics metrics = BankMetrics.INSTANCE;
+        statsLabels[0].setText(Long.toString(metrics.getDeposits()));
+        statsLabels[1].setText(Long.toString(metrics.getWithdrawals()));
+        statsLabels[2].setText(Long.toString(metrics.getTransfers()));
+        statsLabels[3].setText(metrics.getRejectedForFunds() + " funds, " + metrics.getRejectedOther() + " other");
+        statsLabels[4].setText(Long.toString(metrics.getOperationsLastSecond()));
+        statsLabels[5].setText(String.format("%.0f / %.0f \u00b5s", metrics.getLatencyP50Micros(), metrics.getLatencyP99Micros()));
+    }
+
+    private void lookupAccount() {
+        String number = lookupField.getText().trim();
+        BankAccount found = registry.find(number);
+        if (found == null) {
+            JOptionPane.showMessageDialog(this, "No account with number " + number + ".", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        account = found;
+        holderLabel.setText(account.getAccountHolderName());
+        numberLabel.setText(account.getAccountNumber());
+        updateBalance();
+    }
+    
+    private void performDeposit() {
+        String amountStr = JOptionPane.showInputDialog(this, "Enter amount to deposit:", "Deposit", JOptionPane.PLAIN_MESSAGE);
+        try {
+            long amount = Money.parseCents(amountStr);
+            if (account.deposit(amount)) {
+                JOptionPane.showMessageDialog(this, "Deposit successful.");
+                updateBalance();
+            } else {
+                JOptionPane.showMessageDialog(this, "Deposit amount must be positive.", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        } catch (UncheckedIOException | IllegalStateException ex) {
+            journalFailed(ex);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid amount entered.", "Error", JOptionPane.ERROR_MESSAGE);
+        } catch (NullPointerException ignored) {
+            // User cancelled
+        }
+    }
+    
+    private void performWithdrawal() {
+        String amountStr = JOptionPane.showInputDialog(this, "Enter amount to withdraw:", "Withdrawal", JOptionPane.PLAIN_MESSAGE);
+        try {
+            long amount = Money.parseCents(amountStr);
+             if (account.withdraw(amount)) {
+                JOptionPane.showMessageDialog(this, "Withdrawal successful.");
+                updateBalance();
+            } else {
+                JOptionPane.showMessageDialog(this, "Invalid amount or insufficient funds.", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        } catch (UncheckedIOException | IllegalStateException ex) {
+            journalFailed(ex);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid amount entered.", "Error", JOptionPane.ERROR_MESSAGE);
+        } catch (NullPointerException ignored) {
+            // User cancelled
+        }
+    }
+
+    private void performTransfer() {
+        String target = JOptionPane.showInputDialog(this, "Transfer to account number:", "Transfer", JOptionPane.PLAIN_MESSAGE);
+        if (target == null) {
+            return; // User cancelled
+        }
+        String amountStr = JOptionPane.showInputDialog(this, "Enter amount to transfer:", "Transfer", JOptionPane.PLAIN_MESSAGE);
+        try {
+            long amount = Money.parseCents(amountStr);
+            switch (registry.transfer(account.getAccountNumber(), target.trim(), amount)) {
+                case OK:
+                    JOptionPane.showMessageDialog(this, "Transfer successful.");
+                    updateBalance();
+                    break;
+                case UNKNOWN_ACCOUNT:
+                    JOptionPane.showMessageDialog(this, "No account with number " + target.trim() + ".", "Error", JOptionPane.ERROR_MESSAGE);
+                    break;
+                case SAME_ACCOUNT:
+                    JOptionPane.showMessageDialog(this, "Cannot transfer to the same account.", "Error", JOptionPane.ERROR_MESSAGE);
+                    break;
+                default:
+                    JOptionPane.showMessageDialog(this, "Invalid amount or insufficient funds.", "Error", JOptionPane.ERROR_MESSAGE);
+                    break;
+            }
+        } catch (UncheckedIOException | IllegalStateException ex) {
+            journalFailed(ex);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid amount entered.", "Error", JOptionPane.ERROR_MESSAGE);
+        } catch (NullPointerException ignored) {
+            // User cancelled
+        }
+    }
+
+    /**
+     * A change the journal refused was not applied; one whose flush failed
+     * was applied but may not survive a restart.
+     */
+    private void journalFailed(RuntimeException ex) {
+        ex.printStackTrace();
+        updateBalance();
+        JOptionPane.showMessageDialog(this, "Could not save the change to the transaction journal: " + ex.getMessage(),
+            "Error", JOptionPane.ERROR_MESSAGE);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--post")) {
+            BatchPostingEngine.run(Arrays.copyOfRange(args, 1, args.length)); // Headless end-of-day posting
+            return;
+        }
+        SwingUtilities.invokeLater(() -> new BankAccountGUI().setVisible(true));
+    }
+}
+
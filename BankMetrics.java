@@ -0,0 +1,272 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts and times account operations.
+ *
+ * Recording never blocks or retries: counters, latency histogram buckets
+ * and per-second slots are all {@link LongAdder}s, so threads recording at
+ * once spread over separate cells instead of fighting over one. Readers
+ * (the stats panel, JMX) only sum what is there, so they don't slow down
+ * the threads doing the work.
+ */
+class BankMetrics implements BankMetricsMBean {
+
+    static final BankMetrics INSTANCE = new BankMetrics();
+
+    enum Operation { DEPOSIT, WITHDRAWAL, TRANSFER }
+
+    /**
+     * Why an operation was refused, or {@code NONE}.
+     */
+    enum Rejection { NONE, FUNDS, OTHER }
+
+    private final LongAdder[] succeeded = new LongAdder[Operation.values().length];
+    private final LongAdder rejectedForFunds = new LongAdder();
+    private final LongAdder rejectedOther = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final RateWindow rate = new RateWindow();
+
+    BankMetrics() {
+        for (int i = 0; i < succeeded.length; i++) {
+            succeeded[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Registers {@link #INSTANCE} with the platform MBean server, once.
+     */
+    static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName("BankAccountGUI:type=BankMetrics"));
+        } catch (InstanceAlreadyExistsException ex) {
+            // Registered already
+        } catch (JMException ex) {
+            System.err.println("Could not register bank metrics with JMX: " + ex.getMessage());
+        }
+    }
+
+    void record(Operation operation, Rejection rejection, long elapsedNanos) {
+        switch (rejection) {
+            case NONE:
+                succeeded[operation.ordinal()].increment();
+                break;
+            case FUNDS:
+                rejectedForFunds.increment();
+                break;
+            default:
+                rejectedOther.increment();
+                break;
+        }
+        latency.record(elapsedNanos);
+        rate.increment(System.nanoTime());
+    }
+
+    @Override
+    public long getDeposits() {
+        return succeeded[Operation.DEPOSIT.ordinal()].sum();
+    }
+
+    @Override
+    public long getWithdrawals() {
+        return succeeded[Operation.WITHDRAWAL.ordinal()].sum();
+    }
+
+    @Override
+    public long getTransfers() {
+        return succeeded[Operation.TRANSFER.ordinal()].sum();
+    }
+
+    @Override
+    public long getRejectedForFunds() {
+        return rejectedForFunds.sum();
+    }
+
+    @Override
+    public long getRejectedOther() {
+        return rejectedOther.sum();
+    }
+
+    @Override
+    public long getOperationsLastSecond() {
+        return rate.sum(System.nanoTime(), 1);
+    }
+
+    @Override
+    public double getOperationsPerSecondLastMinute() {
+        return rate.sum(System.nanoTime(), RateWindow.SECONDS) / (double) RateWindow.SECONDS;
+    }
+
+    @Override
+    public double getLatencyP50Micros() {
+        return latency.percentile(0.50) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP99Micros() {
+        return latency.percentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyMaxMicros() {
+        return latency.percentile(1.0) / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder adder : succeeded) {
+            adder.reset();
+        }
+        rejectedForFunds.reset();
+        rejectedOther.reset();
+        latency.reset();
+        rate.reset();
+    }
+
+    /**
+     * Log-linear latency histogram in the style of HdrHistogram: each power
+     * of two is split into {@link #SUB_BUCKETS} buckets, so any recorded value
+     * is reported within 12.5% of the truth, from nanoseconds to hours.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+        private final LongAdder[] counts = new LongAdder[64 * SUB_BUCKETS];
+
+        LatencyHistogram() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            counts[indexOf(Math.max(0, nanos))].increment();
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the given fraction
+         * of values, or 0 if nothing was recorded.
+         */
+        long percentile(double fraction) {
+            long[] snapshot = new long[counts.length];
+            long total = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                snapshot[i] = counts[i].sum();
+                total += snapshot[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * total));
+            long seen = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return upperBoundOf(i);
+                }
+            }
+            return upperBoundOf(snapshot.length - 1);
+        }
+
+        void reset() {
+            for (LongAdder count : counts) {
+                count.reset();
+            }
+        }
+
+        private static int indexOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value; // Exact below the first split
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long upperBoundOf(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+            long sub = index % SUB_BUCKETS;
+            long width = 1L << (exponent - SUB_BITS);
+            return (1L << exponent) + (sub + 1) * width - 1;
+        }
+    }
+
+    /**
+     * Operation counts for each of the last {@link #SECONDS} seconds, in a
+     * ring of slots stamped with the second they count.
+     *
+     * A slot is cleared and stamped for its second a second early, by the
+     * first operation that sees it still holding an old one, so counting in
+     * the current second is just an add. Only after an idle second does an
+     * operation have to claim its own slot, and then a count racing the
+     * clear can be lost; that only happens when there is little to count.
+     */
+    static final class RateWindow {
+        static final int SECONDS = 60;
+        private static final int SLOTS = SECONDS + 2; // Plus the current second and the one claimed early
+
+        private final AtomicLongArray stamps = new AtomicLongArray(SLOTS); // Second each slot counts
+        private final LongAdder[] counts = new LongAdder[SLOTS];
+
+        RateWindow() {
+            for (int i = 0; i < SLOTS; i++) {
+                counts[i] = new LongAdder();
+                stamps.set(i, Long.MIN_VALUE);
+            }
+        }
+
+        void increment(long nanoTime) {
+            long second = nanoTime / 1_000_000_000L;
+            int slot = slotOf(second);
+            if (stamps.get(slot) != second) {
+                claim(slot, second);
+            }
+            counts[slot].increment();
+            int next = slotOf(second + 1);
+            if (stamps.get(next) != second + 1) {
+                claim(next, second + 1);
+            }
+        }
+
+        /**
+         * Sums the last {@code seconds} complete seconds before now.
+         */
+        long sum(long nanoTime, int seconds) {
+            long now = nanoTime / 1_000_000_000L;
+            long total = 0;
+            for (long second = now - seconds; second < now; second++) {
+                int slot = slotOf(second);
+                if (stamps.get(slot) == second) {
+                    total += counts[slot].sum();
+                }
+            }
+            return total;
+        }
+
+        void reset() {
+            for (int i = 0; i < SLOTS; i++) {
+                stamps.set(i, Long.MIN_VALUE);
+                counts[i].reset();
+            }
+        }
+
+        private void claim(int slot, long second) {
+            long stamp = stamps.get(slot);
+            if (stamp < second && stamps.compareAndSet(slot, stamp, second)) {
+                counts[slot].reset(); // Only the thread that moved the stamp clears
+            }
+        }
+
+        private static int slotOf(long second) {
+            return (int) Math.floorMod(second, (long) SLOTS);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures what {@link BankMetrics} costs the threads it counts. It times
+ * deposits and withdrawals with their recording against the same balance
+ * changes without it, then times recording alone with and without a reader
+ * summing every statistic as fast as it can, far more often than the stats
+ * panel's once a second. Needs no database:
+ *
+ *     javac *.java && java BankMetricsBenchmark [threads] [seconds]
+ *
+ * Exits with status 1 if a count is lost or a reported percentile is
+ * further from the recorded latencies than the histogram allows.
+ */
+class BankMetricsBenchmark {
+
+    private static final int ACCOUNTS = 1_000;
+
+    private static volatile long sink; // Where the reader's sums go, so they aren't optimized away
+
+    /**
+     * One operation on behalf of a worker thread.
+     */
+    private interface Work {
+        void run(ThreadLocalRandom random, BankMetrics metrics, BankAccount[] accounts);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 3;
+
+        BankAccount[] accounts = new BankAccount[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = new BankAccount(String.format("M%05d", i), "Holder " + i, 1_000_000_000L);
+        }
+        Work bare = (random, metrics, on) -> {
+            BankAccount account = on[random.nextInt(on.length)];
+            if (random.nextBoolean()) {
+                account.credit(1 + random.nextInt(1_000));
+            } else {
+                account.debit(1 + random.nextInt(1_000));
+            }
+        };
+        Work counted = (random, metrics, on) -> {
+            BankAccount account = on[random.nextInt(on.length)];
+            if (random.nextBoolean()) {
+                account.deposit(1 + random.nextInt(1_000));
+            } else {
+                account.withdraw(1 + random.nextInt(1_000));
+            }
+        };
+        Work recordOnly = (random, metrics, on) ->
+            metrics.record(BankMetrics.Operation.DEPOSIT, BankMetrics.Rejection.NONE, random.nextInt(1_000_000));
+
+        run(bare, threads, 1, false, accounts); // Warm the JIT
+        run(counted, threads, 1, false, accounts);
+        run(recordOnly, threads, 1, false, accounts);
+
+        double bareRate = run(bare, threads, seconds, false, accounts);
+        double countedRate = run(counted, threads, seconds, false, accounts);
+        report("balance changes alone", threads, bareRate);
+        report("deposit and withdraw", threads, countedRate);
+        System.out.printf("%-28s %,10.1f ns an operation%n", "metrics add", busy(threads) * (1e9 / countedRate - 1e9 / bareRate));
+
+        report("record alone", threads, run(recordOnly, threads, seconds, false, accounts));
+        report("record, reader summing", threads, run(recordOnly, threads, seconds, true, accounts));
+
+        String failure = check(threads);
+        if (failure != null) {
+            System.out.println("FAILED: " + failure);
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Has {@code threads} threads repeat {@code work} for {@code seconds},
+     * optionally with a reader polling every statistic in a loop.
+     *
+     * @return operations per second, all threads together
+     */
+    private static double run(Work work, int threads, long seconds, boolean reader, BankAccount[] accounts)
+            throws InterruptedException {
+        BankMetrics metrics = new BankMetrics();
+        long[] counts = new long[threads];
+        CountDownLatch go = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                try {
+                    go.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                while ((count & 255) != 0 || System.nanoTime() < deadline[0]) {
+                    work.run(random, metrics, accounts);
+                    count++;
+                }
+                counts[worker] = count;
+            }, "metrics-bench-" + t);
+            workers.add(thread);
+            thread.start();
+        }
+        Thread polling = null;
+        if (reader) {
+            polling = new Thread(() -> {
+                while (!done.get()) {
+                    sink = metrics.getDeposits() + metrics.getWithdrawals() + metrics.getRejectedForFunds()
+                        + metrics.getOperationsLastSecond() + (long) metrics.getLatencyP99Micros();
+                }
+            }, "metrics-reader");
+            polling.start();
+        }
+        long start = System.nanoTime();
+        deadline[0] = start + seconds * 1_000_000_000L;
+        go.countDown();
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        done.set(true);
+        if (polling != null) {
+            polling.join();
+        }
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total / (elapsed / 1e9);
+    }
+
+    /**
+     * Records known latencies from several threads at once into fresh
+     * metrics and checks what comes back.
+     *
+     * @return what went wrong, or null
+     */
+    private static String check(int threads) throws InterruptedException {
+        BankMetrics metrics = new BankMetrics();
+        int perThread = 1_000_000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 1; i <= perThread; i++) {
+                    metrics.record(i % 10 == 0 ? BankMetrics.Operation.WITHDRAWAL : BankMetrics.Operation.DEPOSIT,
+                        i % 100 == 0 ? BankMetrics.Rejection.FUNDS : BankMetrics.Rejection.NONE, i * 1_000L);
+                }
+            });
+            workers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : workers) {
+            thread.join();
+        }
+
+        long recorded = (long) threads * perThread;
+        long funds = recorded / 100;
+        long counted = metrics.getDeposits() + metrics.getWithdrawals() + metrics.getRejectedForFunds();
+        if (counted != recorded || metrics.getRejectedForFunds() != funds) {
+            return counted + " operations counted (" + metrics.getRejectedForFunds() + " refused), "
+                + recorded + " recorded (" + funds + " refused)";
+        }
+        // Latencies of 1 to 1,000,000 us, evenly spread; each percentile reads as the top of its bucket
+        double[][] expected = {{metrics.getLatencyP50Micros(), 500_000}, {metrics.getLatencyP99Micros(), 990_000},
+            {metrics.getLatencyMaxMicros(), 1_000_000}};
+        for (double[] pair : expected) {
+            long nanos = (long) pair[1] * 1_000;
+            long width = Long.highestOneBit(nanos) / 8; // An eighth of the power of two it falls in
+            long bound = (nanos / width + 1) * width - 1;
+            if (Math.round(pair[0] * 1_000) != bound) {
+                return "a percentile reads " + pair[0] + " us, the recorded one is " + pair[1]
+                    + " us, in the bucket up to " + bound / 1e3 + " us";
+            }
+        }
+        System.out.printf("%,d operations counted exactly, percentiles in the right buckets%n", recorded);
+        return null;
+    }
+
+    private static void report(String label, int threads, double perSecond) {
+        System.out.printf("%-28s %,10.1f ns an operation  %,12.0f operations/s on %d threads%n", label,
+            busy(threads) * 1e9 / perSecond, perSecond, threads);
+    }
+
+    /**
+     * Cores kept busy, to turn throughput into CPU time an operation.
+     */
+    private static int busy(int threads) {
+        return Math.min(threads, Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * JMX view of {@link BankMetrics}. Latencies include waiting for the
+ * transaction journal.
+ */
+public interface BankMetricsMBean {
+
+    long getDeposits();
+
+    long getWithdrawals();
+
+    long getTransfers();
+
+    /**
+     * Withdrawals and transfers refused for lack of funds.
+     */
+    long getRejectedForFunds();
+
+    /**
+     * Operations refused for any other reason, such as a bad amount.
+     */
+    long getRejectedOther();
+
+    /**
+     * Operations, successful or not, in the last complete second.
+     */
+    long getOperationsLastSecond();
+
+    /**
+     * Average operations per second over the last minute.
+     */
+    double getOperationsPerSecondLastMinute();
+
+    double getLatencyP50Micros();
+
+    double getLatencyP99Micros();
+
+    double getLatencyMaxMicros();
+
+    void reset();
+}
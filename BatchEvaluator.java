@@ -0,0 +1,106 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates one formula over whole columns of values, e.g. a price for
+ * every row of a sheet.
+ *
+ * Rows are processed in blocks of {@link #BLOCK_ROWS}, a column-wise pass
+ * per instruction (see {@link CompiledExpression#evaluateBlock}), so the
+ * arithmetic runs as SIMD loops over arrays that stay in cache. Inputs
+ * larger than {@link #PARALLEL_ROWS} are split across the common
+ * fork/join pool.
+ */
+final class BatchEvaluator {
+
+    private static final int BLOCK_ROWS = 1024;
+    private static final int PARALLEL_ROWS = 64 * 1024;
+
+    /**
+     * Values for every row, plus which rows failed. A failed row is one
+     * the calculator would show as "Error"; its value is NaN.
+     */
+    static final class Result {
+        final double[] values;
+        final boolean[] errors;
+
+        Result(double[] values, boolean[] errors) {
+            this.values = values;
+            this.errors = errors;
+        }
+
+        int errorCount() {
+            int count = 0;
+            for (boolean error : errors) {
+                if (error) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private BatchEvaluator() {
+    }
+
+    /**
+     * Evaluates {@code expression} for each row, taking the value of
+     * {@code expression.variables()[i]} from {@code columns[i]}.
+     *
+     * @throws IllegalArgumentException if a column is missing or the lengths differ
+     */
+    static Result evaluate(CompiledExpression expression, double[]... columns) {
+        if (columns.length == 0 || columns.length < expression.variables().length) {
+            throw new IllegalArgumentException("Expected columns for " + String.join(", ", expression.variables()));
+        }
+        int rows = columns[0].length;
+        for (double[] column : columns) {
+            if (column.length != rows) {
+                throw new IllegalArgumentException("Columns differ in length");
+            }
+        }
+
+        double[] values = new double[rows];
+        boolean[] errors = new boolean[rows];
+        Slice all = new Slice(expression, columns, 0, rows, values, errors);
+        if (rows <= PARALLEL_ROWS) {
+            all.compute(); // Not worth waking other threads
+        } else {
+            ForkJoinPool.commonPool().invoke(all);
+        }
+        return new Result(values, errors);
+    }
+
+    private static final class Slice extends RecursiveAction {
+        private final CompiledExpression expression;
+        private final double[][] columns;
+        private final int from;
+        private final int to;
+        private final double[] values;
+        private final boolean[] errors;
+
+        Slice(CompiledExpression expression, double[][] columns, int from, int to, double[] values, boolean[] errors) {
+            this.expression = expression;
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+            this.values = values;
+            this.errors = errors;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_ROWS) {
+                // Split on a block boundary so no two tasks share a block
+                int middle = from + ((to - from) / 2 / BLOCK_ROWS) * BLOCK_ROWS;
+                invokeAll(new Slice(expression, columns, from, middle, values, errors),
+                          new Slice(expression, columns, middle, to, values, errors));
+                return;
+            }
+            double[][] stack = new double[expression.maxStack()][BLOCK_ROWS];
+            for (int start = from; start < to; start += BLOCK_ROWS) {
+                expression.evaluateBlock(columns, start, Math.min(to, start + BLOCK_ROWS), stack, values, errors);
+            }
+        }
+    }
+}
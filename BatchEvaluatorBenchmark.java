@@ -0,0 +1,107 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Prices a made-up sheet three ways and reports the throughput of each:
+ * row by row with {@link CompiledExpression#evaluate}, block by block on
+ * one thread with {@link CompiledExpression#evaluateBlock} (the loops the
+ * JIT turns into SIMD code), and with {@link BatchEvaluator}, which also
+ * splits the rows across cores. Needs no database:
+ *
+ *     javac *.java && java BatchEvaluatorBenchmark [rows] [rounds]
+ *
+ * Some rows divide by zero and some take the square root of a negative;
+ * every way must flag the same rows as errors and agree on the rest.
+ * Exits with status 1 if they don't.
+ */
+class BatchEvaluatorBenchmark {
+
+    private static final String FORMULA = "sqrt(price - 1) * (1 + tax) + price / qty";
+    private static final int BLOCK_ROWS = 1024;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        CompiledExpression expression = CompiledExpression.compile(FORMULA);
+        Random random = new Random(7);
+        double[] price = new double[rows];
+        double[] tax = new double[rows];
+        double[] qty = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            price[i] = random.nextDouble() * 100; // About 1% under 1, which has no square root
+            tax[i] = random.nextInt(4) * 0.05;
+            qty[i] = random.nextInt(100); // 1% zero
+        }
+        double[][] columns = new double[expression.variables().length][];
+        columns[expression.indexOf("price")] = price;
+        columns[expression.indexOf("tax")] = tax;
+        columns[expression.indexOf("qty")] = qty;
+
+        double[] scalarValues = new double[rows];
+        boolean[] scalarErrors = new boolean[rows];
+        double[] blockValues = new double[rows];
+        boolean[] blockErrors = new boolean[rows];
+        BatchEvaluator.Result parallel = null;
+        long scalarNanos = Long.MAX_VALUE;
+        long blockNanos = Long.MAX_VALUE;
+        long parallelNanos = Long.MAX_VALUE;
+
+        for (int round = 0; round < rounds; round++) { // The best round counts; the first warms the JIT
+            long start = System.nanoTime();
+            double[] values = new double[columns.length];
+            for (int i = 0; i < rows; i++) {
+                for (int c = 0; c < columns.length; c++) {
+                    values[c] = columns[c][i];
+                }
+                try {
+                    scalarValues[i] = expression.evaluate(values);
+                    scalarErrors[i] = Double.isNaN(scalarValues[i]); // As the calculator shows it
+                } catch (ArithmeticException ex) {
+                    scalarValues[i] = Double.NaN;
+                    scalarErrors[i] = true;
+                }
+            }
+            scalarNanos = Math.min(scalarNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            Arrays.fill(blockErrors, false);
+            double[][] stack = new double[expression.maxStack()][BLOCK_ROWS];
+            for (int from = 0; from < rows; from += BLOCK_ROWS) {
+                expression.evaluateBlock(columns, from, Math.min(rows, from + BLOCK_ROWS), stack, blockValues, blockErrors);
+            }
+            blockNanos = Math.min(blockNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            parallel = BatchEvaluator.evaluate(expression, columns);
+            parallelNanos = Math.min(parallelNanos, System.nanoTime() - start);
+        }
+
+        System.out.printf("%,d rows of %s, %d cores%n", rows, FORMULA, Runtime.getRuntime().availableProcessors());
+        report("scalar", rows, scalarNanos, scalarNanos);
+        report("block", rows, blockNanos, scalarNanos);
+        report("parallel", rows, parallelNanos, scalarNanos);
+
+        int errors = 0;
+        for (int i = 0; i < rows; i++) {
+            errors += scalarErrors[i] ? 1 : 0;
+            if (!same(scalarValues[i], scalarErrors[i], blockValues[i], blockErrors[i])
+                    || !same(scalarValues[i], scalarErrors[i], parallel.values[i], parallel.errors[i])) {
+                System.out.printf("FAILED: row %d gives %s (error %b) row by row, %s (error %b) by block, %s (error %b) in parallel%n",
+                    i, scalarValues[i], scalarErrors[i], blockValues[i], blockErrors[i], parallel.values[i], parallel.errors[i]);
+                System.exit(1);
+            }
+        }
+        System.out.printf("%,d rows flagged as errors by all three%n", errors);
+        System.out.println("OK");
+    }
+
+    private static boolean same(double a, boolean aError, double b, boolean bError) {
+        return aError == bError && (aError ? Double.isNaN(b) : Double.compare(a, b) == 0);
+    }
+
+    private static void report(String label, int rows, long nanos, long scalarNanos) {
+        System.out.printf("%-9s %,8d ms  %,7.1f M rows/s  %5.1fx scalar%n", label, nanos / 1_000_000,
+            rows / (nanos / 1e9) / 1e6, (double) scalarNanos / nanos);
+    }
+}
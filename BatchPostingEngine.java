@@ -0,0 +1,331 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Posts a file of deposits and withdrawals without the GUI.
+ *
+ * Each line is {@code account,type,amount} with type {@code D} or
+ * {@code W}; blank lines and lines starting with '#' are skipped. The file
+ * streams through three stages joined by bounded queues of chunks:
+ * parse, validate, then apply. Apply is split across worker threads by
+ * account number, so all postings for an account go to the same worker in
+ * file order and workers never contend for an account. Postings that fail
+ * go to a rejects file with the reason.
+ */
+class BatchPostingEngine {
+
+    private static final int CHUNK_SIZE = 512;
+    private static final int QUEUE_CHUNKS = 64;
+    private static final List<Posting> END = new ArrayList<>(0); // Sentinel; compared by identity
+
+    /**
+     * One line of the input.
+     */
+    static final class Posting {
+        final long lineNumber;
+        final String line;
+        String accountNumber;
+        byte type;
+        long cents;
+        BankAccount account; // Resolved by the validate stage
+
+        Posting(long lineNumber, String line) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Counts for a finished run.
+     */
+    static final class Report {
+        final long read;
+        final long applied;
+        final long rejected;
+        final long elapsedNanos;
+
+        Report(long read, long applied, long rejected, long elapsedNanos) {
+            this.read = read;
+            this.applied = applied;
+            this.rejected = rejected;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            return String.format("Read %d, applied %d, rejected %d in %.2f s (%.0f postings/s)",
+                read, applied, rejected, seconds, seconds > 0 ? read / seconds : 0);
+        }
+    }
+
+    private final AccountRegistry registry;
+    private final TransactionJournal journal; // Null when not journaled
+    private final int workers;
+
+    private final AtomicLong read = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private BufferedWriter rejectsWriter; // Guarded by itself
+
+    BatchPostingEngine(AccountRegistry registry, TransactionJournal journal, int workers) {
+        this.registry = registry;
+        this.journal = journal;
+        this.workers = workers;
+    }
+
+    /**
+     * Entry point for {@code BankAccountGUI --post <transactions> [rejects]}.
+     */
+    static void run(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: BankAccountGUI --post <transactions> [rejects]");
+            return;
+        }
+        Path input = Paths.get(args[0]);
+        Path rejects = Paths.get(args.length > 1 ? args[1] : args[0] + ".rejects");
+
+        AccountRegistry registry = new AccountRegistry();
+        TransactionJournal journal;
+        try {
+            journal = TransactionJournal.open(Paths.get(System.getProperty("bank.journal.dir", "bank-journal")), registry);
+        } catch (IOException ex) {
+            System.err.println("Could not open the transaction journal: " + ex.getMessage()); // E.g. the GUI has it open
+            System.exit(1);
+            return;
+        }
+        BankAccountGUI.seedAccounts(registry);
+        BankMetrics.registerMBean();
+        try {
+            int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 2); // Leave cores for parse and validate
+            Report report = new BatchPostingEngine(registry, journal, workers).post(input, rejects);
+            System.out.println(report);
+            if (report.rejected > 0) {
+                System.out.println("Rejects written to " + rejects);
+            }
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * Posts every line of {@code input}, writing failures to {@code rejects}.
+     */
+    Report post(Path input, Path rejects) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        BlockingQueue<List<Posting>> parsed = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+        List<BlockingQueue<List<Posting>>> partitions = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            partitions.add(new ArrayBlockingQueue<>(QUEUE_CHUNKS));
+        }
+
+        ExecutorService stages = Executors.newFixedThreadPool(workers + 2, runnable -> {
+            Thread thread = new Thread(runnable, "bank-posting");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (BufferedWriter writer = Files.newBufferedWriter(rejects, StandardCharsets.UTF_8)) {
+            rejectsWriter = writer;
+            CompletionService<Long> completion = new ExecutorCompletionService<>(stages);
+            completion.submit(() -> parse(input, parsed));
+            completion.submit(() -> validate(parsed, partitions));
+            for (BlockingQueue<List<Posting>> partition : partitions) {
+                completion.submit(() -> apply(partition));
+            }
+
+            // In completion order, so a failed stage is seen while the others are still blocked on it
+            long lastSequence = 0;
+            for (int i = 0; i < workers + 2; i++) {
+                lastSequence = Math.max(lastSequence, completion.take().get());
+            }
+            if (journal != null && lastSequence > 0) {
+                journal.awaitDurable(lastSequence); // One wait covers the whole run
+            }
+            return new Report(read.get(), applied.get(), rejected.get(), System.nanoTime() - start);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            stages.shutdownNow(); // Unblocks the other stages if one failed
+        }
+    }
+
+    /**
+     * Stage 1: splits lines into fields.
+     */
+    private long parse(Path input, BlockingQueue<List<Posting>> out) throws IOException, InterruptedException {
+        long lineNumber = 0;
+        List<Posting> chunk = new ArrayList<>(CHUNK_SIZE);
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                Posting posting = new Posting(lineNumber, line);
+                int first = line.indexOf(',');
+                int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+                if (second >= 0) {
+                    posting.accountNumber = line.substring(0, first).trim();
+                    posting.type = typeOf(line.substring(first + 1, second).trim());
+                    posting.cents = parseCents(line.substring(second + 1).trim());
+                }
+                chunk.add(posting);
+                read.incrementAndGet();
+                if (chunk.size() == CHUNK_SIZE) {
+                    out.put(chunk);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+        } finally {
+            if (!chunk.isEmpty()) {
+                out.put(chunk);
+            }
+            out.put(END);
+        }
+        return 0;
+    }
+
+    /**
+     * Stage 2: rejects malformed postings and unknown accounts, and routes
+     * the rest to the worker that owns the account.
+     */
+    private long validate(BlockingQueue<List<Posting>> in, List<BlockingQueue<List<Posting>>> out)
+            throws IOException, InterruptedException {
+        List<List<Posting>> routed = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            routed.add(new ArrayList<>(CHUNK_SIZE));
+        }
+        try {
+            List<Posting> chunk;
+            while ((chunk = in.take()) != END) {
+                for (Posting posting : chunk) {
+                    if (posting.accountNumber == null) {
+                        reject(posting, "malformed line");
+                    } else if (posting.type == 0) {
+                        reject(posting, "unknown type");
+                    } else if (posting.cents <= 0) {
+                        reject(posting, "invalid amount");
+                    } else if ((posting.account = registry.find(posting.accountNumber)) == null) {
+                        reject(posting, "unknown account");
+                    } else {
+                        int worker = Math.floorMod(posting.accountNumber.hashCode(), workers);
+                        List<Posting> batch = routed.get(worker);
+                        batch.add(posting);
+                        if (batch.size() == CHUNK_SIZE) {
+                            out.get(worker).put(batch);
+                            routed.set(worker, new ArrayList<>(CHUNK_SIZE));
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (int i = 0; i < workers; i++) {
+                if (!routed.get(i).isEmpty()) {
+                    out.get(i).put(routed.get(i));
+                }
+                out.get(i).put(END);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stage 3: applies one partition's postings in order. Returns the last
+     * journal sequence written, or 0.
+     *
+     * Each chunk's records go to the journal in one batch of this worker's
+     * own, so partitions don't take turns on the journal's lock. If that
+     * fails, the chunk is backed out before the error propagates; only this
+     * worker touches its partition's accounts, so the undo is exact.
+     */
+    private long apply(BlockingQueue<List<Posting>> in) throws IOException, InterruptedException {
+        long lastSequence = 0;
+        TransactionJournal.Batch batch = journal != null ? journal.batch() : null;
+        List<Posting> posted = new ArrayList<>(CHUNK_SIZE);
+        List<Posting> chunk;
+        while ((chunk = in.take()) != END) {
+            posted.clear();
+            for (Posting posting : chunk) {
+                long start = System.nanoTime();
+                boolean deposit = posting.type == TransactionJournal.DEPOSIT;
+                boolean done = deposit ? posting.account.credit(posting.cents) : posting.account.debit(posting.cents);
+                BankMetrics.INSTANCE.record(deposit ? BankMetrics.Operation.DEPOSIT : BankMetrics.Operation.WITHDRAWAL,
+                    done ? BankMetrics.Rejection.NONE : deposit ? BankMetrics.Rejection.OTHER : BankMetrics.Rejection.FUNDS,
+                    System.nanoTime() - start);
+                if (!done) {
+                    reject(posting, deposit ? "balance would overflow" : "insufficient funds");
+                    continue;
+                }
+                posted.add(posting);
+                if (batch != null) {
+                    batch.add(posting.type, posting.accountNumber, posting.cents, null);
+                }
+            }
+            if (batch != null && batch.size() > 0) {
+                try {
+                    lastSequence = batch.flush();
+                } catch (RuntimeException ex) {
+                    for (int i = posted.size() - 1; i >= 0; i--) {
+                        Posting posting = posted.get(i);
+                        posting.account.replay(posting.type == TransactionJournal.DEPOSIT ? -posting.cents : posting.cents);
+                    }
+                    throw ex;
+                }
+            }
+            applied.addAndGet(posted.size());
+        }
+        return lastSequence;
+    }
+
+    private void reject(Posting posting, String reason) throws IOException {
+        rejected.incrementAndGet();
+        synchronized (rejectsWriter) {
+            rejectsWriter.write(posting.lineNumber + "," + posting.line + "," + reason);
+            rejectsWriter.newLine();
+        }
+    }
+
+    private static byte typeOf(String type) {
+        switch (type.toUpperCase()) {
+            case "D":
+            case "DEPOSIT":
+                return TransactionJournal.DEPOSIT;
+            case "W":
+            case "WITHDRAWAL":
+                return TransactionJournal.WITHDRAWAL;
+            default:
+                return 0;
+        }
+    }
+
+    private static long parseCents(String amount) {
+        try {
+            return Money.parseCents(amount);
+        } catch (NumberFormatException ex) {
+            return 0; // Rejected as an invalid amount
+        }
+    }
+}
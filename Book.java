@@ -0,0 +1,40 @@
+/**
+ * Data class to hold book information.
+ */
+class Book {
+    private final int id;
+    private final String title;
+    private final String author;
+    private final boolean isIssued;
+    private final long version; // Change feed sequence this state reflects; 0 if unknown
+
+    public Book(int id, String title, String author, boolean isIssued) {
+        this(id, title, author, isIssued, 0L);
+    }
+
+    public Book(int id, String title, String author, boolean isIssued, long version) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.isIssued = isIssued;
+        this.version = version;
+    }
+
+    public int getId() { return id; }
+    public String getTitle() { return title; }
+    public String getAuthor() { return author; }
+    public boolean isIssued() { return isIssued; }
+    public long getVersion() { return version; }
+
+    /**
+     * Returns a copy stamped with the given change feed sequence.
+     */
+    public Book withVersion(long version) {
+        return new Book(id, title, author, isIssued, version);
+    }
+    
+    @Override
+    public String toString() {
+        return title + " by " + author;
+    }
+}
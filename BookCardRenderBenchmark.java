@@ -0,0 +1,192 @@
+import javax.swing.*;
+import javax.swing.border.Border;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Scrolls a grid of ten thousand book cards from top to bottom, painting
+ * each frame into an off-screen image, and reports frames per second and
+ * bytes allocated per frame, then the bytes the renderer alone allocates
+ * per card once the cards on screen have been seen. It does this twice: with the catalog's
+ * {@link LibraryManagementSystemGUI.BookCellRenderer}, and with the HTML
+ * label renderer it replaced, kept here for comparison. Needs no database
+ * and, as nothing is shown, no display:
+ *
+ *     javac *.java && java -Djava.awt.headless=true BookCardRenderBenchmark [books] [passes]
+ */
+class BookCardRenderBenchmark {
+
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    private static final int SCROLL_STEP = 40; // Pixels a frame, as a fast mouse wheel moves
+    private static final int SCREEN_CARDS = 30;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        DefaultListModel<Book> books = new DefaultListModel<>();
+        for (int id = 1; id <= count; id++) {
+            String title = id % 3 == 0 ? "A Rather Long Title That Needs Wrapping, Volume " + id : "Title " + id;
+            books.addElement(new Book(id, title, "Author " + (id % 500), id % 7 == 0));
+        }
+
+        SwingUtilities.invokeAndWait(() -> {
+            measure("html labels", books, new HtmlCardRenderer(), 1); // Warm-up for both
+            measure("plain text", books, new LibraryManagementSystemGUI.BookCellRenderer(), 1);
+        });
+        SwingUtilities.invokeAndWait(() -> {
+            double before = measure("html labels", books, new HtmlCardRenderer(), passes);
+            double after = measure("plain text", books, new LibraryManagementSystemGUI.BookCellRenderer(), passes);
+            System.out.printf("plain text paints %.1fx the frames per second%n", after / before);
+        });
+        System.out.println("OK");
+    }
+
+    /**
+     * Scrolls a list like the catalog's through a viewport, {@code passes}
+     * times from top to bottom, painting every frame.
+     *
+     * @return frames per second
+     */
+    private static double measure(String label, ListModel<Book> books, ListCellRenderer<Book> renderer, int passes) {
+        JList<Book> list = new JList<>(books);
+        list.setSize(WIDTH, 1); // A wrapping list lays out by its width when its properties change
+        list.setCellRenderer((l, book, index, selected, focused) -> {
+            Component card = renderer.getListCellRendererComponent(l, book, index, selected, focused);
+            card.setSize(l.getFixedCellWidth(), l.getFixedCellHeight());
+            layOut(card);
+            return card;
+        });
+        list.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        list.setVisibleRowCount(-1);
+        list.setFixedCellWidth(130);
+        list.setFixedCellHeight(160);
+        list.setSelectedIndex(0);
+        list.setSize(WIDTH, list.getPreferredSize().height);
+
+        JViewport viewport = new JViewport();
+        viewport.setView(list);
+        viewport.setSize(WIDTH, HEIGHT);
+
+        BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int bottom = Math.max(0, list.getHeight() - HEIGHT);
+
+        int frames = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int pass = 0; pass < passes; pass++) {
+            for (int y = 0; y <= bottom; y += SCROLL_STEP) {
+                viewport.setViewPosition(new Point(0, y));
+                Graphics2D g = frame.createGraphics();
+                viewport.paint(g);
+                g.dispose();
+                frames++;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        // The renderer alone, asked again for the cards of one screen as every repaint does
+        long rendererBytes = 0;
+        int cards = 0;
+        for (int round = 0; round < 2; round++) { // The first round runs while the JIT recompiles for the new pattern
+            cards = 0;
+            long rendererBefore = threads.getThreadAllocatedBytes(thread);
+            for (int repaint = 0; repaint < 5_000; repaint++) {
+                for (int i = 0; i < SCREEN_CARDS; i++, cards++) {
+                    renderer.getListCellRendererComponent(list, books.getElementAt(i), i, i == 0, false);
+                }
+            }
+            rendererBytes = threads.getThreadAllocatedBytes(thread) - rendererBefore;
+        }
+
+        double perSecond = frames / (nanos / 1e9);
+        System.out.printf("%-12s %,6d frames  %,7.1f frames/s  %,9d bytes allocated a frame, %,6d by the renderer a card%n",
+            label, frames, perSecond, allocated / frames, rendererBytes / cards);
+        return perSecond;
+    }
+
+    /**
+     * Lays out a card and everything in it. On screen the list's
+     * CellRendererPane has validate() do this, but without a display no
+     * component has a peer and validate() does nothing, which would leave
+     * every label zero-sized and unpainted.
+     */
+    private static void layOut(Component component) {
+        if (component instanceof Container) {
+            ((Container) component).doLayout();
+            for (Component child : ((Container) component).getComponents()) {
+                layOut(child);
+            }
+        }
+    }
+
+    /**
+     * The card renderer as it was: HTML labels for wrapping, and new
+     * borders for every cell.
+     */
+    private static class HtmlCardRenderer extends JPanel implements ListCellRenderer<Book> {
+        private final JLabel iconLabel;
+        private final JLabel titleLabel;
+        private final JLabel authorLabel;
+        private final JLabel statusLabel;
+        private final Border selectedBorder = BorderFactory.createLineBorder(UIManager.getColor("List.selectionBackground"), 2);
+
+        HtmlCardRenderer() {
+            setLayout(new BorderLayout(5, 5));
+            setOpaque(true);
+            iconLabel = new JLabel("📖");
+            iconLabel.setFont(new Font("SansSerif", Font.PLAIN, 48));
+            iconLabel.setHorizontalAlignment(SwingConstants.CENTER);
+            add(iconLabel, BorderLayout.CENTER);
+
+            JPanel textPanel = new JPanel(new GridLayout(3, 1));
+            textPanel.setOpaque(false);
+            titleLabel = new JLabel();
+            titleLabel.setFont(new Font("SansSerif", Font.BOLD, 12));
+            titleLabel.setHorizontalAlignment(SwingConstants.CENTER);
+            authorLabel = new JLabel();
+            authorLabel.setFont(new Font("SansSerif", Font.ITALIC, 11));
+            authorLabel.setHorizontalAlignment(SwingConstants.CENTER);
+            statusLabel = new JLabel();
+            statusLabel.setFont(new Font("SansSerif", Font.BOLD, 11));
+            statusLabel.setHorizontalAlignment(SwingConstants.CENTER);
+            textPanel.add(titleLabel);
+            textPanel.add(authorLabel);
+            textPanel.add(statusLabel);
+            add(textPanel, BorderLayout.SOUTH);
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends Book> list, Book book, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            titleLabel.setText("<html><div style='text-align: center; width: 100px;'>" + book.getTitle() + "</div></html>");
+            authorLabel.setText("<html><div style='text-align: center; width: 100px;'>" + book.getAuthor() + "</div></html>");
+            if (book.isIssued()) {
+                statusLabel.setText("Issued");
+                statusLabel.setForeground(Color.RED);
+                iconLabel.setForeground(Color.LIGHT_GRAY);
+            } else {
+                statusLabel.setText("Available");
+                statusLabel.setForeground(new Color(0, 128, 0));
+                iconLabel.setForeground(Color.BLACK);
+            }
+            if (isSelected) {
+                setBackground(list.getSelectionBackground());
+                setForeground(list.getSelectionForeground());
+                setBorder(BorderFactory.createCompoundBorder(selectedBorder, new EmptyBorder(3, 3, 3, 3)));
+            } else {
+                setBackground(list.getBackground());
+                setForeground(list.getForeground());
+                setBorder(BorderFactory.createCompoundBorder(
+                    BorderFactory.createLineBorder(Color.GRAY, 1), new EmptyBorder(5, 5, 5, 5)));
+            }
+            return this;
+        }
+    }
+}
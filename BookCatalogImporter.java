@@ -0,0 +1,355 @@
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams a CSV or TSV file of books (title, author) into a {@link BookRepository}.
+ *
+ * A parser thread reads and dedupes rows while the calling thread inserts
+ * them in chunks, one transaction per chunk ({@link BookRepository#addAll}). After each
+ * commit the number of source lines consumed is written to a checkpoint file
+ * next to the input, so an interrupted import resumes after the last
+ * committed chunk. Rows already in the catalog are skipped, which also makes
+ * a chunk replayed after a crash harmless.
+ *
+ * Other terminals are asked to reload the catalog when the import stops, for
+ * whatever reason, and every {@link #RELOAD_INTERVAL_MILLIS} during a long
+ * one, rather than once per chunk.
+ */
+class BookCatalogImporter {
+
+    private static final int QUEUE_CAPACITY = 4; // Chunks parsed ahead of the writer
+    private static final int MAX_FIELD_LENGTH = 255; // Matches the VARCHAR(255) columns
+    private static final long RELOAD_INTERVAL_MILLIS = 30_000L;
+
+    /**
+     * Receives progress after every committed chunk, on the importing thread.
+     */
+    interface ProgressListener {
+        void progress(long bytesRead, long totalBytes, long imported);
+    }
+
+    /**
+     * Outcome of an import run.
+     */
+    static class Result {
+        final long imported;
+        final long duplicates;
+        final long invalid;
+        final boolean cancelled;
+
+        Result(long imported, long duplicates, long invalid, boolean cancelled) {
+            this.imported = imported;
+            this.duplicates = duplicates;
+            this.invalid = invalid;
+            this.cancelled = cancelled;
+        }
+    }
+
+    private static class Chunk {
+        final List<String[]> rows;
+        final long lastLine; // Source lines consumed up to and including this chunk
+        final long bytesRead;
+
+        Chunk(List<String[]> rows, long lastLine, long bytesRead) {
+            this.rows = rows;
+            this.lastLine = lastLine;
+            this.bytesRead = bytesRead;
+        }
+    }
+
+    private static final Chunk END = new Chunk(List.of(), 0, 0);
+
+    private final int chunkSize;
+    private volatile boolean cancelled = false;
+
+    BookCatalogImporter(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Asks a running import to stop after the chunk in flight. It can be
+     * resumed later from the checkpoint.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    static Path checkpointFile(Path source) {
+        return source.resolveSibling(source.getFileName() + ".import-progress");
+    }
+
+    /**
+     * Imports {@code source}, resuming from its checkpoint if one exists.
+     * The checkpoint is deleted once the whole file has been imported.
+     */
+    Result importFile(BookRepository repository, Path source, ProgressListener listener) throws IOException, SQLException {
+        Path checkpoint = checkpointFile(source);
+        long resumeAfter = readCheckpoint(checkpoint);
+        long totalBytes = Files.size(source);
+        boolean tabSeparated = source.getFileName().toString().toLowerCase().endsWith(".tsv");
+
+        Set<String> seen = new HashSet<>();
+        repository.forEach(book -> seen.add(key(book.getTitle(), book.getAuthor())));
+        long[] counters = new long[2]; // duplicates, invalid; written by the parser, read after join
+        IOException[] parseFailure = new IOException[1];
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        Thread parser = new Thread(() -> {
+            try {
+                parse(source, tabSeparated, resumeAfter, seen, counters, queue);
+            } catch (IOException ex) {
+                parseFailure[0] = ex;
+            } catch (InterruptedException ex) {
+                return; // Writer gave up; nobody is waiting for END
+            }
+            try {
+                queue.put(END);
+            } catch (InterruptedException ignored) {
+                // Writer gave up
+            }
+        }, "catalog-import-parser");
+        parser.setDaemon(true);
+        parser.start();
+
+        long imported = 0;
+        long unannounced = 0; // Rows committed since the last reload request
+        long lastReload = System.currentTimeMillis();
+        try {
+            while (true) {
+                Chunk chunk = queue.take();
+                if (chunk == END) {
+                    break;
+                }
+                repository.addAll(chunk.rows);
+                writeCheckpoint(checkpoint, chunk.lastLine);
+
+                imported += chunk.rows.size();
+                unannounced += chunk.rows.size();
+                if (System.currentTimeMillis() - lastReload >= RELOAD_INTERVAL_MILLIS) {
+                    if (announce(repository)) {
+                        unannounced = 0;
+                    }
+                    lastReload = System.currentTimeMillis();
+                }
+                listener.progress(chunk.bytesRead, totalBytes, imported);
+                if (cancelled) {
+                    break;
+                }
+            }
+        } catch (SQLException ex) {
+            cancelled = true; // Stops the parser; the checkpoint still marks the last good chunk
+            throw ex;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        } finally {
+            if (cancelled) {
+                parser.interrupt(); // Unblock it if it is waiting on a full queue
+            }
+            if (unannounced > 0) {
+                announce(repository);
+            }
+        }
+
+        try {
+            parser.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (cancelled) {
+            return new Result(imported, counters[0], counters[1], true);
+        }
+        if (parseFailure[0] != null) {
+            throw parseFailure[0];
+        }
+        Files.deleteIfExists(checkpoint);
+        return new Result(imported, counters[0], counters[1], false);
+    }
+
+    /**
+     * Asks other terminals to pick up the rows committed so far. A failure
+     * here must not fail the import, so it is only logged.
+     *
+     * @return false if the request could not be recorded
+     */
+    private static boolean announce(BookRepository repository) {
+        try {
+            repository.recordCatalogReload();
+            return true;
+        } catch (SQLException ex) {
+            System.err.println("Could not ask other terminals to reload the catalog: " + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * The number of lines already imported, or 0 if there is no checkpoint
+     * or it can't be read. Starting over is safe: rows already in the
+     * catalog are skipped as duplicates.
+     */
+    private static long readCheckpoint(Path checkpoint) throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return 0L;
+        }
+        String text = Files.readString(checkpoint, StandardCharsets.UTF_8).trim();
+        try {
+            long lines = Long.parseLong(text);
+            if (lines >= 0) {
+                return lines;
+            }
+        } catch (NumberFormatException ex) {
+            // Reported below
+        }
+        System.err.println("Ignoring unreadable import checkpoint " + checkpoint + " (\"" + text + "\"); starting from the top");
+        return 0L;
+    }
+
+    /**
+     * Replaces the checkpoint in one step, so a crash leaves either the old
+     * count or the new one, never a truncated file.
+     */
+    private static void writeCheckpoint(Path checkpoint, long lines) throws IOException {
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        Files.writeString(temp, Long.toString(lines), StandardCharsets.UTF_8);
+        Files.move(temp, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void parse(Path source, boolean tabSeparated, long resumeAfter, Set<String> seen,
+                       long[] counters, BlockingQueue<Chunk> queue) throws IOException, InterruptedException {
+        try (CountingInputStream counting = new CountingInputStream(Files.newInputStream(source));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(counting, StandardCharsets.UTF_8))) {
+            List<String[]> rows = new ArrayList<>(chunkSize);
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null && !cancelled) {
+                lineNumber++;
+                List<String> fields = tabSeparated || line.indexOf('\t') >= 0
+                    ? List.of(line.split("\t", -1))
+                    : splitCsv(line);
+                if (lineNumber == 1 && isHeader(fields)) {
+                    continue;
+                }
+                if (fields.size() < 2) {
+                    countIfNew(counters, 1, lineNumber, resumeAfter);
+                    continue;
+                }
+                String title = fields.get(0).trim();
+                String author = fields.get(1).trim();
+                if (title.isEmpty() || author.isEmpty()
+                        || title.length() > MAX_FIELD_LENGTH || author.length() > MAX_FIELD_LENGTH) {
+                    countIfNew(counters, 1, lineNumber, resumeAfter);
+                    continue;
+                }
+                // Lines before the checkpoint still go through the dedupe set, so resumed runs stay consistent
+                if (!seen.add(key(title, author))) {
+                    countIfNew(counters, 0, lineNumber, resumeAfter);
+                    continue;
+                }
+                if (lineNumber <= resumeAfter) {
+                    continue;
+                }
+                rows.add(new String[] { title, author });
+                if (rows.size() == chunkSize) {
+                    queue.put(new Chunk(rows, lineNumber, counting.count));
+                    rows = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!rows.isEmpty()) {
+                queue.put(new Chunk(rows, lineNumber, counting.count));
+            }
+        }
+    }
+
+    private static void countIfNew(long[] counters, int which, long lineNumber, long resumeAfter) {
+        if (lineNumber > resumeAfter) {
+            counters[which]++;
+        }
+    }
+
+    private static boolean isHeader(List<String> fields) {
+        return fields.size() >= 2
+            && fields.get(0).trim().equalsIgnoreCase("title")
+            && fields.get(1).trim().equalsIgnoreCase("author");
+    }
+
+    private static String key(String title, String author) {
+        return title.trim().toLowerCase() + '\u0000' + author.trim().toLowerCase();
+    }
+
+    /**
+     * Splits one CSV line, honouring double-quoted fields with "" escapes.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Counts bytes pulled from the file, for progress reporting.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private volatile long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
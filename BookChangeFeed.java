@@ -0,0 +1,101 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A change feed for the books table, shared by every terminal on the database.
+ *
+ * Each write to a book appends its id to 'books_changes' in the same
+ * transaction, under a monotonic sequence number. Terminals remember the last
+ * sequence they applied and poll for anything newer, so they converge without
+ * reloading the catalog. A row with book id {@link #CATALOG_RELOAD} asks every
+ * terminal to reload from scratch, for bulk changes.
+ */
+class BookChangeFeed {
+
+    static final int CATALOG_RELOAD = 0;
+    private static final long RETENTION_MILLIS = 24L * 60 * 60 * 1000;
+
+    /**
+     * Creates the 'books_changes' table if it doesn't exist and drops
+     * entries older than the retention window.
+     */
+    static void createTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            String sql = "CREATE TABLE IF NOT EXISTS books_changes (" +
+                         "seq BIGINT PRIMARY KEY AUTO_INCREMENT, " +
+                         "book_id INT NOT NULL, " +
+                         "changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)";
+            stmt.executeUpdate(sql);
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM books_changes WHERE changed_at < ?")) {
+            pstmt.setTimestamp(1, new Timestamp(System.currentTimeMillis() - RETENTION_MILLIS));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Records that a book changed. Call inside the transaction making the change.
+     */
+    static void record(Connection conn, int bookId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO books_changes (book_id) VALUES (?)")) {
+            pstmt.setInt(1, bookId);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Records a change too broad to describe row by row.
+     */
+    static void recordCatalogReload(Connection conn) throws SQLException {
+        record(conn, CATALOG_RELOAD);
+    }
+
+    /**
+     * Returns the newest sequence number, or 0 if the feed is empty.
+     */
+    static long latestSequence(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(seq), 0) FROM books_changes")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Returns the ids of books changed after {@code since} up to and including
+     * {@code until}, each with the sequence of its latest change, also reading
+     * the {@code lookback} entries up to {@code since} again. Returns null if
+     * entries after {@code since} have already been pruned, in which case the
+     * caller has to reload; pruned entries in the lookback don't matter.
+     */
+    static Map<Integer, Long> changedSince(Connection conn, long since, int lookback, long until) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT MIN(seq) FROM books_changes")) {
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                long oldest = rs.getLong(1);
+                if (!rs.wasNull() && oldest > since + 1) {
+                    return null;
+                }
+            }
+        }
+
+        Map<Integer, Long> changed = new HashMap<>();
+        String sql = "SELECT book_id, MAX(seq) FROM books_changes WHERE seq > ? AND seq <= ? GROUP BY book_id";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, Math.max(0, since - lookback));
+            pstmt.setLong(2, until);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    changed.put(rs.getInt(1), rs.getLong(2));
+                }
+            }
+        }
+        return changed;
+    }
+}
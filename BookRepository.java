@@ -0,0 +1,116 @@
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Storage for the library catalog, its loans and its change feed.
+ *
+ * Books are ordered by (title, id) wherever order matters. Every write
+ * appends to the change feed so other terminals can catch up; see
+ * {@link BookChangeFeed} for the sequence semantics.
+ */
+interface BookRepository {
+
+    /**
+     * Picks the implementation named by {@code -Dlibrary.storage}:
+     * {@code mysql} (the default), {@code embedded} or {@code memory}.
+     */
+    static BookRepository fromSystemProperties() {
+        String storage = System.getProperty("library.storage", "mysql");
+        switch (storage) {
+            case "mysql":
+                return new JdbcBookRepository();
+            case "embedded":
+                return new EmbeddedBookRepository(System.getProperty("library.embedded.path", "./library"));
+            case "memory":
+                return new InMemoryBookRepository();
+            default:
+                throw new IllegalArgumentException("Unknown library.storage: " + storage);
+        }
+    }
+
+    /**
+     * Creates missing tables and indexes. Safe to call on every start.
+     */
+    void initialize() throws SQLException;
+
+    int count() throws SQLException;
+
+    /**
+     * Returns the highest book id, or 0 for an empty catalog. Ids only grow,
+     * so a higher id means a book added since.
+     */
+    int maxId() throws SQLException;
+
+    /**
+     * Reads up to {@code limit} books in (title, id) order, starting right
+     * after {@code after}, or at {@code offset} when {@code after} is null.
+     */
+    List<Book> page(Book after, int offset, int limit) throws SQLException;
+
+    /**
+     * Returns how many books sort before {@code book}.
+     */
+    int positionOf(Book book) throws SQLException;
+
+    /**
+     * Reads the given books in (title, id) order. Unknown ids are skipped.
+     */
+    List<Book> findByIds(Collection<Integer> ids) throws SQLException;
+
+    /**
+     * Streams every book, in no particular order.
+     */
+    void forEach(Consumer<Book> action) throws SQLException;
+
+    /**
+     * Adds a book and returns it with its new id.
+     */
+    Book add(String title, String author) throws SQLException;
+
+    /**
+     * Adds many (title, author) rows in one transaction. Not recorded in the
+     * change feed; call {@link #recordCatalogReload} once the bulk change is
+     * done, so other terminals reload once rather than per batch.
+     */
+    void addAll(List<String[]> rows) throws SQLException;
+
+    /**
+     * Asks every terminal to reload the catalog, for changes made with
+     * {@link #addAll}.
+     */
+    void recordCatalogReload() throws SQLException;
+
+    /**
+     * Issues a book to a member. Completes with false if the book was
+     * already issued, once the change is durable.
+     */
+    CompletableFuture<Boolean> issue(int bookId, String memberId, LocalDate dueDate);
+
+    /**
+     * Returns a book. Completes with false if it was not issued, once the
+     * change is durable.
+     */
+    CompletableFuture<Boolean> returnBook(int bookId);
+
+    List<LoanLedger.OverdueLoan> findOverdue(LocalDate today) throws SQLException;
+
+    /**
+     * Returns the newest change feed sequence, or 0 if there is none.
+     */
+    long latestChange() throws SQLException;
+
+    /**
+     * Returns the ids of books changed after {@code since} up to and
+     * including {@code until}, each with the sequence of its latest change.
+     * The last {@code lookback} entries up to {@code since} are read again,
+     * for changes that committed after a later sequence had been seen.
+     * The id {@link BookChangeFeed#CATALOG_RELOAD} stands for a bulk change.
+     * Returns null if the feed no longer reaches back to {@code since}.
+     */
+    Map<Integer, Long> changedSince(long since, int lookback, long until) throws SQLException;
+}
@@ -0,0 +1,235 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the same checks against every {@link BookRepository}, so the GUI can
+ * rely on one behaviour whichever backend it is given: (title, id) order
+ * with titles compared ignoring case, keyset and offset paging, positions,
+ * loans and the change feed.
+ *
+ * The in-memory repository is always checked. The embedded one is checked
+ * when the H2 driver is on the class path, in a fresh temporary directory.
+ * MySQL is checked when given a URL, which must point at an empty scratch
+ * database:
+ *
+ *     javac *.java && java -cp .:h2.jar:mysql-connector-j.jar BookRepositoryContractCheck \
+ *         [jdbc:mysql://localhost:3306/scratch_library user password]
+ *
+ * Exits with status 1 if a check fails.
+ */
+class BookRepositoryContractCheck {
+
+    private static final Comparator<Book> ORDER =
+        Comparator.comparing(Book::getTitle, String.CASE_INSENSITIVE_ORDER).thenComparingInt(Book::getId);
+    private static final int BULK_ROWS = 2_500;
+    private static final int PAGE = 100;
+
+    private final String backend;
+    private final List<String> failures = new ArrayList<>();
+
+    private BookRepositoryContractCheck(String backend) {
+        this.backend = backend;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> failures = new ArrayList<>();
+        failures.addAll(run("memory", new InMemoryBookRepository()));
+
+        if (driverAvailable("org.h2.Driver")) {
+            Path directory = Files.createTempDirectory("library-contract");
+            failures.addAll(run("embedded", new EmbeddedBookRepository(directory.resolve("library").toString())));
+        } else {
+            System.out.println("embedded: skipped, no H2 driver on the class path");
+        }
+
+        if (args.length > 0) {
+            failures.addAll(run("mysql", new JdbcBookRepository(args[0], args.length > 1 ? args[1] : "",
+                args.length > 2 ? args[2] : "")));
+        } else {
+            System.out.println("mysql: skipped, no URL given");
+        }
+
+        if (!failures.isEmpty()) {
+            failures.forEach(failure -> System.out.println("FAILED: " + failure));
+            System.exit(1);
+        }
+        System.out.println("OK");
+        System.exit(0); // The JDBC repositories leave pool threads behind
+    }
+
+    private static boolean driverAvailable(String className) {
+        try {
+            Class.forName(className);
+            return true;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        }
+    }
+
+    private static List<String> run(String backend, BookRepository repository) {
+        BookRepositoryContractCheck check = new BookRepositoryContractCheck(backend);
+        long start = System.nanoTime();
+        try {
+            check.checkAll(repository);
+        } catch (Exception ex) {
+            check.failures.add(backend + ": " + ex);
+        }
+        System.out.printf("%s: %s in %d ms%n", backend, check.failures.isEmpty() ? "passed" : "FAILED",
+            (System.nanoTime() - start) / 1_000_000);
+        return check.failures;
+    }
+
+    private void checkAll(BookRepository repository) throws Exception {
+        repository.initialize();
+        repository.initialize(); // Safe to call on every start
+        if (repository.count() != 0) {
+            throw new IllegalStateException("the catalog is not empty; point the check at a scratch database");
+        }
+        expect(repository.maxId() == 0, "maxId of an empty catalog is " + repository.maxId());
+        long feedStart = repository.latestChange();
+
+        // Titles that only sort right when case is ignored, with ties broken by id
+        List<Book> books = new ArrayList<>();
+        for (String title : new String[] {"banana", "Apple", "cherry", "apple", "Banana", "APPLE pie", "Zebra", "aardvark"}) {
+            Book book = repository.add(title, "Author of " + title);
+            expect(book.getId() > 0 && book.getTitle().equals(title), "add returned " + book.getId() + " " + book.getTitle());
+            books.add(book);
+        }
+        expectOrder(repository, books, "after single adds");
+        checkPositions(repository, books);
+        checkIds(repository, books);
+
+        long afterAdds = repository.latestChange();
+        Map<Integer, Long> changed = repository.changedSince(feedStart, 0, afterAdds);
+        expect(changed != null && changed.size() == books.size(), "feed after single adds: " + changed);
+        for (Book book : books) {
+            expect(changed != null && changed.containsKey(book.getId()), "feed is missing book " + book.getId());
+        }
+
+        // A bulk load, in shuffled, mixed-case order; the feed records nothing until asked to
+        Random random = new Random(42);
+        List<String[]> rows = new ArrayList<>();
+        for (int i = 0; i < BULK_ROWS; i++) {
+            String title = String.format("%s %05d", random.nextBoolean() ? "volume" : "Volume", random.nextInt(BULK_ROWS));
+            rows.add(new String[] {title, "Bulk author " + i});
+        }
+        repository.addAll(rows.subList(0, BULK_ROWS / 2));
+        repository.addAll(rows.subList(BULK_ROWS / 2, BULK_ROWS));
+        expect(repository.latestChange() == afterAdds, "addAll wrote to the change feed");
+        repository.recordCatalogReload();
+        Map<Integer, Long> reload = repository.changedSince(afterAdds, 0, repository.latestChange());
+        expect(reload != null && reload.keySet().equals(Collections.singleton(BookChangeFeed.CATALOG_RELOAD)),
+            "feed after recordCatalogReload: " + reload);
+
+        List<Book> all = new ArrayList<>();
+        AtomicInteger streamed = new AtomicInteger();
+        repository.forEach(book -> {
+            streamed.incrementAndGet();
+            all.add(book);
+        });
+        expect(streamed.get() == books.size() + BULK_ROWS, "forEach streamed " + streamed.get() + " books");
+        expect(repository.count() == books.size() + BULK_ROWS, "count is " + repository.count());
+        int maxId = all.stream().mapToInt(Book::getId).max().orElse(0);
+        expect(repository.maxId() == maxId, "maxId is " + repository.maxId() + ", highest id streamed " + maxId);
+        expectOrder(repository, all, "after addAll");
+
+        // Jumping in by offset lands where keyset paging does
+        all.sort(ORDER);
+        List<Book> jumped = repository.page(null, 1_000, 5);
+        expect(ids(jumped).equals(ids(all.subList(1_000, 1_005))), "page at offset 1000: " + ids(jumped));
+        checkPositions(repository, all.subList(995, 1_005));
+        expect(repository.page(all.get(all.size() - 1), 0, PAGE).isEmpty(), "page after the last book is not empty");
+
+        checkLoans(repository, books.get(1));
+    }
+
+    /**
+     * Walks the whole catalog by keyset paging and compares it with {@code expected}, sorted.
+     */
+    private void expectOrder(BookRepository repository, List<Book> expected, String when) throws Exception {
+        List<Book> sorted = new ArrayList<>(expected);
+        sorted.sort(ORDER);
+        List<Book> walked = new ArrayList<>();
+        Book after = null;
+        while (true) {
+            List<Book> page = repository.page(after, 0, PAGE);
+            walked.addAll(page);
+            if (page.size() < PAGE) {
+                break;
+            }
+            after = page.get(page.size() - 1);
+        }
+        if (!ids(walked).equals(ids(sorted))) {
+            int i = 0;
+            while (i < walked.size() && i < sorted.size() && walked.get(i).getId() == sorted.get(i).getId()) {
+                i++;
+            }
+            expect(false, when + ": paging order differs at row " + i + ": got "
+                + (i < walked.size() ? walked.get(i).getTitle() : "the end") + ", expected "
+                + (i < sorted.size() ? sorted.get(i).getTitle() : "the end"));
+        }
+    }
+
+    private void checkPositions(BookRepository repository, List<Book> books) throws Exception {
+        List<Book> sorted = new ArrayList<>(books);
+        sorted.sort(ORDER);
+        int first = repository.positionOf(sorted.get(0));
+        for (int i = 0; i < sorted.size(); i++) {
+            int position = repository.positionOf(sorted.get(i));
+            expect(position == first + i, "positionOf " + sorted.get(i).getTitle() + " is " + position
+                + ", expected " + (first + i));
+        }
+    }
+
+    private void checkIds(BookRepository repository, List<Book> books) throws Exception {
+        List<Integer> ids = ids(books);
+        Collections.reverse(ids);
+        ids.add(Integer.MAX_VALUE); // Unknown ids are skipped
+        List<Book> found = repository.findByIds(ids);
+        List<Book> sorted = new ArrayList<>(books);
+        sorted.sort(ORDER);
+        expect(ids(found).equals(ids(sorted)), "findByIds returned " + ids(found) + ", expected " + ids(sorted));
+    }
+
+    private void checkLoans(BookRepository repository, Book book) throws Exception {
+        LocalDate today = LocalDate.now();
+        long before = repository.latestChange();
+        expect(repository.issue(book.getId(), "M-1", today.minusDays(3)).get(), "issue of a free book failed");
+        expect(!repository.issue(book.getId(), "M-2", today).get(), "a book was issued twice");
+        expect(repository.findByIds(List.of(book.getId())).get(0).isIssued(), "an issued book reads as free");
+
+        List<LoanLedger.OverdueLoan> overdue = repository.findOverdue(today);
+        expect(overdue.size() == 1 && overdue.get(0).title.equals(book.getTitle()) && overdue.get(0).memberId.equals("M-1")
+            && overdue.get(0).daysOverdue == 3, "findOverdue after issue: " + overdue.size() + " loans");
+
+        Map<Integer, Long> changed = repository.changedSince(before, 0, repository.latestChange());
+        expect(changed != null && changed.containsKey(book.getId()), "feed is missing the issue: " + changed);
+
+        expect(repository.returnBook(book.getId()).get(), "return of an issued book failed");
+        expect(!repository.returnBook(book.getId()).get(), "a book was returned twice");
+        expect(!repository.findByIds(List.of(book.getId())).get(0).isIssued(), "a returned book reads as issued");
+        expect(repository.findOverdue(today).isEmpty(), "findOverdue after return is not empty");
+    }
+
+    private static List<Integer> ids(List<Book> books) {
+        List<Integer> ids = new ArrayList<>(books.size());
+        for (Book book : books) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+
+    private void expect(boolean condition, String message) {
+        if (!condition) {
+            failures.add(backend + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Indexes half a million made-up books in the search box's
+ * {@link LibraryManagementSystemGUI.BookSearchIndex} and times queries as
+ * they are typed, one letter at a time, from the first letter to two
+ * whole words. Then some books are changed, and a sample of the answers
+ * is checked against a scan of every book. Needs no database or display:
+ *
+ *     javac *.java && java BookSearchBenchmark [books] [queries]
+ *
+ * Exits with status 1 if an answer differs from the scan.
+ */
+class BookSearchBenchmark {
+
+    private static final int MAX_RESULTS = 1000;
+    private static final int CHECKED_QUERIES = 200;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        Random random = new Random(5);
+        String[] words = words(random, 20_000);
+        String[] firstNames = words(random, 2_000);
+        List<Book> books = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            StringBuilder title = new StringBuilder();
+            for (int w = 2 + random.nextInt(4); w > 0; w--) {
+                title.append(title.length() == 0 ? "" : " ").append(capitalize(zipf(words, random)));
+            }
+            String author = capitalize(firstNames[random.nextInt(firstNames.length)]) + " "
+                + capitalize(words[random.nextInt(words.length)]);
+            books.add(new Book(id, title.toString(), author, random.nextInt(10) == 0));
+        }
+
+        long start = System.nanoTime();
+        LibraryManagementSystemGUI.BookSearchIndex index = new LibraryManagementSystemGUI.BookSearchIndex();
+        for (Book book : books) {
+            index.put(book);
+        }
+        System.out.printf("%,d books indexed in %,d ms%n", count, (System.nanoTime() - start) / 1_000_000);
+
+        // What a user types: each prefix of a title word, then a second word after it
+        List<String> typed = new ArrayList<>();
+        while (typed.size() < queries) {
+            Book book = books.get(random.nextInt(count));
+            String[] titleWords = book.getTitle().toLowerCase(Locale.ROOT).split(" ");
+            String first = titleWords[0];
+            for (int length = 1; length <= first.length(); length++) {
+                typed.add(first.substring(0, length));
+            }
+            String second = titleWords[1];
+            for (int length = 1; length <= second.length(); length++) {
+                typed.add(first + " " + second.substring(0, length));
+            }
+        }
+
+        for (int i = 0; i < Math.min(typed.size(), 5_000); i++) {
+            index.search(typed.get(i)); // Warm the JIT
+        }
+        int[] lengths = {1, 2, 3, 5, Integer.MAX_VALUE};
+        List<List<Long>> byLength = new ArrayList<>();
+        for (int i = 0; i < lengths.length; i++) {
+            byLength.add(new ArrayList<>());
+        }
+        List<Long> all = new ArrayList<>();
+        for (String query : typed) {
+            long t = System.nanoTime();
+            index.search(query);
+            long nanos = System.nanoTime() - t;
+            all.add(nanos);
+            int bucket = 0;
+            while (query.length() > lengths[bucket]) {
+                bucket++;
+            }
+            byLength.get(bucket).add(nanos);
+        }
+        report("all queries", all);
+        String[] labels = {"1 letter", "2 letters", "3 letters", "4-5 letters", "longer"};
+        for (int i = 0; i < lengths.length; i++) {
+            report(labels[i], byLength.get(i));
+        }
+
+        // Refreshed rows replace their indexed copies: some issued or returned, some retitled
+        for (int i = 0; i < 2_000; i++) {
+            int at = random.nextInt(count);
+            Book book = books.get(at);
+            Book changed = i % 2 == 0
+                ? new Book(book.getId(), book.getTitle(), book.getAuthor(), !book.isIssued())
+                : new Book(book.getId(), capitalize(zipf(words, random)) + " " + book.getTitle(), book.getAuthor(), book.isIssued());
+            index.put(changed);
+            books.set(at, changed);
+        }
+
+        Comparator<Book> order = Comparator.comparing(Book::getTitle, String.CASE_INSENSITIVE_ORDER).thenComparingInt(Book::getId);
+        for (int i = 0; i < CHECKED_QUERIES; i++) {
+            String query = typed.get(random.nextInt(typed.size()));
+            String[] terms = query.split(" ");
+            List<Book> expected = new ArrayList<>();
+            for (Book book : books) {
+                if (matches(book, terms)) {
+                    expected.add(book);
+                }
+            }
+            expected.sort(order);
+            List<Book> found = index.search(query);
+            if (!found.equals(expected.subList(0, Math.min(MAX_RESULTS, expected.size())))) {
+                System.out.println("FAILED: \"" + query + "\" found " + found.size() + " books, a scan finds " + expected.size());
+                System.exit(1);
+            }
+        }
+        System.out.println(CHECKED_QUERIES + " answers match a scan of every book");
+        System.out.println("OK");
+    }
+
+    private static boolean matches(Book book, String[] terms) {
+        String[] tokens = (book.getTitle() + " " + book.getAuthor()).toLowerCase(Locale.ROOT).split(" ");
+        for (String term : terms) {
+            boolean found = false;
+            for (String token : tokens) {
+                found |= token.startsWith(term);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Pronounceable made-up words, three to ten letters long.
+     */
+    private static String[] words(Random random, int count) {
+        String consonants = "bcdfghjklmnprstvwz";
+        String vowels = "aeiouy";
+        String[] words = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder word = new StringBuilder();
+            int letters = 3 + random.nextInt(8);
+            for (int j = 0; j < letters; j++) {
+                String from = j % 2 == 0 ? consonants : vowels;
+                word.append(from.charAt(random.nextInt(from.length())));
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+
+    /**
+     * A word picked with a skew towards the start of the list, as common
+     * words are in real titles.
+     */
+    private static String zipf(String[] words, Random random) {
+        double u = random.nextDouble();
+        return words[(int) (words.length * u * u * u)];
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static void report(String label, List<Long> nanos) {
+        if (nanos.isEmpty()) {
+            return;
+        }
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf("%-12s %,7d queries  p50 %,8.3f ms  p99 %,8.3f ms  max %,8.3f ms%n", label, sorted.length,
+            sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.99)] / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+}
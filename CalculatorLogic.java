@@ -0,0 +1,229 @@
+import java.util.Arrays;
+
+/**
+ * Turns button presses into an expression and evaluates it on '='.
+ *
+ * The display shows the expression as typed, so operators chain with the
+ * usual precedence and parentheses. After '=', the result stays on the
+ * display: an operator continues from it, a digit starts over. In exact
+ * mode the arithmetic is decimal (see {@link PreciseEvaluator}).
+ *
+ * The expression is edited in place in a char array, tracking where the
+ * number being typed starts, so a key costs no scanning and no allocation
+ * until '=' hands the text to the parser.
+ */
+class CalculatorLogic {
+    private char[] expression = new char[64]; // Grown by doubling, never shrunk
+    private int length = 0;
+    private int numberStart = -1; // Where the number being typed starts, or -1 if the expression doesn't end in one
+    private boolean numberHasPoint = false;
+    private boolean showingResult = false;
+    private int openParentheses = 0;
+    private String message; // "Error" or "0.0" shown in place of the expression until the next key
+    private PreciseEvaluator precise; // Null in double mode
+
+    /**
+     * The display text, read straight from the expression buffer.
+     */
+    private final CharSequence display = new CharSequence() {
+        @Override
+        public int length() {
+            return message != null ? message.length() : Math.max(length, 1);
+        }
+
+        @Override
+        public char charAt(int index) {
+            return message != null ? message.charAt(index) : length == 0 ? '0' : expression[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return message != null ? message : length == 0 ? "0" : new String(expression, 0, length);
+        }
+    };
+
+    /**
+     * Switches between double and exact decimal arithmetic.
+     */
+    public void setExact(boolean exact) {
+        precise = exact ? PreciseEvaluator.fromSystemProperties() : null;
+    }
+
+    public String handleInput(String command) {
+        if (command.equals("C")) {
+            return press('C').toString();
+        }
+        if (command.equals("=")) {
+            return press('=').toString();
+        }
+        input(command.charAt(0));
+        return display.toString();
+    }
+
+    /**
+     * Applies one key and returns the display. Typing allocates nothing;
+     * the returned text is a view that changes with the next key, so copy
+     * it to keep it. Used to replay recorded key logs.
+     */
+    CharSequence press(char key) {
+        if (key == 'C') {
+            clear();
+        } else if (key == '=') {
+            if (length == 0) {
+                message = precise != null ? "0" : "0.0";
+            } else {
+                evaluate();
+            }
+        } else {
+            input(key);
+        }
+        return display;
+    }
+
+    private void input(char cmdChar) {
+        message = null;
+        if (Character.isDigit(cmdChar) || cmdChar == '.') {
+            if (showingResult) {
+                clear();
+            }
+            appendDigit(cmdChar);
+        } else if (cmdChar == '(' || cmdChar == '√') {
+            if (showingResult) {
+                clear();
+            }
+            if (endsWithOperand()) {
+                append('*'); // 2(3) and 2√9 multiply
+            }
+            append(cmdChar);
+            if (cmdChar == '(') {
+                openParentheses++;
+            }
+        } else if (cmdChar == ')') {
+            if (openParentheses > 0 && endsWithOperand()) {
+                append(')');
+                openParentheses--;
+                showingResult = false;
+            }
+        } else {
+            appendOperator(cmdChar);
+        }
+    }
+
+    private void evaluate() {
+        message = null;
+        for (; openParentheses > 0; openParentheses--) {
+            append(')'); // Close what the user left open
+        }
+        String text = new String(expression, 0, length);
+        String result;
+        try {
+            if (precise != null) {
+                result = PreciseEvaluator.format(precise.evaluate(ExpressionParser.parse(text)));
+            } else {
+                double value = CompiledExpression.compile(text).evaluate();
+                if (Double.isNaN(value)) {
+                    throw new ArithmeticException("Not a number");
+                }
+                result = DoubleFormatter.format(value);
+            }
+        } catch (ArithmeticException | IllegalArgumentException ex) {
+            clear();
+            message = "Error";
+            return;
+        }
+        length = 0;
+        for (int i = 0; i < result.length(); i++) {
+            append(result.charAt(i));
+        }
+        showingResult = true; // A digit now starts over rather than typing onto the result
+    }
+
+    private void appendDigit(char digit) {
+        if (numberStart < 0) {
+            if (length > 0 && expression[length - 1] == ')') {
+                append('*'); // (2)3 multiplies
+            }
+            numberStart = length;
+            numberHasPoint = false;
+        }
+        if (digit == '.') {
+            if (numberHasPoint) {
+                return; // One point per number
+            }
+            numberHasPoint = true;
+        } else if (length - numberStart == 1 && expression[numberStart] == '0') {
+            length = numberStart; // No leading zeros
+        }
+        ensureRoom();
+        expression[length++] = digit;
+    }
+
+    private void appendOperator(char operator) {
+        showingResult = false;
+        char last = length > 0 ? expression[length - 1] : '(';
+        if (last == '(' || last == '√') {
+            if (operator == '-') {
+                append('-'); // Unary minus
+            }
+            return;
+        }
+        if (isOperator(last)) {
+            if (operator == '-' && (last == '*' || last == '/')) {
+                append('-'); // 3*-2
+                return;
+            }
+            // Replace the trailing operator, and a unary minus before it
+            length--;
+            if (length > 0 && isOperator(expression[length - 1])) {
+                length--;
+            }
+            if (length == 0 || expression[length - 1] == '(') {
+                if (operator == '-') {
+                    append('-');
+                }
+                return;
+            }
+        }
+        append(operator);
+    }
+
+    /**
+     * Appends anything but a digit or point, which ends the number being typed.
+     */
+    private void append(char c) {
+        ensureRoom();
+        expression[length++] = c;
+        numberStart = -1;
+    }
+
+    private void ensureRoom() {
+        if (length == expression.length) {
+            expression = Arrays.copyOf(expression, length * 2);
+        }
+    }
+
+    private boolean endsWithOperand() {
+        if (length == 0) {
+            return false;
+        }
+        char last = expression[length - 1];
+        return Character.isLetterOrDigit(last) || last == '.' || last == ')';
+    }
+
+    private static boolean isOperator(char c) {
+        return c == '+' || c == '-' || c == '*' || c == '/';
+    }
+
+    private void clear() {
+        length = 0;
+        numberStart = -1;
+        openParentheses = 0;
+        showingResult = false;
+        message = null;
+    }
+}
@@ -0,0 +1,309 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Replays a recorded-style key log of a million button presses through
+ * {@link CalculatorLogic}, as the audit replays do, and reports events per
+ * second, bytes allocated an event and garbage collections for three
+ * ways: the StringBuilder input path the calculator had before it edited
+ * a char array in place, kept here as it was; today's
+ * {@link CalculatorLogic#handleInput} with the button's command string;
+ * and {@link CalculatorLogic#press}. Each runs once over the log with '='
+ * pressed now and then and once over typing alone. Needs no database or
+ * display:
+ *
+ *     javac *.java && java CalculatorReplayBenchmark [seconds-per-way]
+ *
+ * Every display in both modes is compared with the old path's. Exits with
+ * status 1 if one differs, or if typing through press allocates.
+ */
+class CalculatorReplayBenchmark {
+
+    private static final int EVENTS = 1_000_000;
+    private static final String KEYS = "0123456789.+-*/()√=C";
+
+    private static volatile long sink; // Where the displays' checksums go, so replay isn't optimized away
+
+    private interface Way {
+        CharSequence press(int event);
+    }
+
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 2;
+
+        Random random = new Random(25);
+        char[] keys = new char[EVENTS];
+        char[] typing = new char[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            keys[i] = key(random, true);
+            typing[i] = key(random, false);
+        }
+
+        String failure = null;
+        for (boolean exact : new boolean[] {false, true}) {
+            CalculatorLogic logic = new CalculatorLogic();
+            logic.setExact(exact);
+            StringBuilderLogic before = new StringBuilderLogic(exact ? PreciseEvaluator.fromSystemProperties() : null);
+            for (int i = 0; i < EVENTS && failure == null; i++) {
+                String expected = before.handleInput(String.valueOf(keys[i]));
+                CharSequence pressed = logic.press(keys[i]);
+                if (!expected.contentEquals(pressed)) {
+                    failure = "key " + i + " '" + keys[i] + "' shows " + pressed + " in " + (exact ? "exact" : "double")
+                        + " mode, it showed " + expected;
+                }
+            }
+        }
+        if (failure != null) {
+            System.out.println("FAILED: " + failure);
+            System.exit(1);
+        }
+
+        String[] labels = {"StringBuilder, before", "handleInput", "press"};
+        String[] logs = {"with '='", "typing only"};
+        double[][] results = new double[labels.length * logs.length][];
+        for (int round = 0; round < 2; round++) { // The first round warms the JIT
+            for (int l = 0; l < logs.length; l++) {
+                char[] log = l == 0 ? keys : typing;
+                String[] commands = new String[EVENTS]; // The buttons' own strings, as the action events carry them
+                for (int i = 0; i < EVENTS; i++) {
+                    commands[i] = KEYS.substring(KEYS.indexOf(log[i]), KEYS.indexOf(log[i]) + 1).intern();
+                }
+                StringBuilderLogic before = new StringBuilderLogic(null);
+                CalculatorLogic logic = new CalculatorLogic();
+                Way[] ways = {i -> before.handleInput(commands[i]), i -> logic.handleInput(commands[i]),
+                    i -> logic.press(log[i])};
+                for (int w = 0; w < ways.length; w++) {
+                    results[l * labels.length + w] = run(ways[w], round == 0 ? seconds / 4 : seconds);
+                }
+            }
+        }
+
+        System.out.printf("%,d events a log; keys as %s%n", EVENTS, new String(keys, 0, 40));
+        for (int l = 0; l < logs.length; l++) {
+            for (int w = 0; w < labels.length; w++) {
+                double[] result = results[l * labels.length + w];
+                System.out.printf("%-12s %-22s %,12.0f events/s  %,8.1f bytes an event  %,5d GCs, %,5d ms%n",
+                    logs[l], labels[w], result[0], result[1], (long) result[2], (long) result[3]);
+            }
+        }
+        double typingBytes = results[logs.length * labels.length - 1][1];
+        if (typingBytes >= 1) {
+            System.out.println("FAILED: typing through press allocates " + typingBytes + " bytes an event");
+            System.exit(1);
+        }
+        System.out.println("Every display matches the old input path's, in double and exact mode");
+        System.out.println("OK");
+    }
+
+    /**
+     * A random button, mostly digits, as typed sums are. Some presses are
+     * ones the calculator ignores or corrects, such as a second point or
+     * two operators in a row.
+     */
+    private static char key(Random random, boolean equals) {
+        int roll = random.nextInt(100);
+        if (roll < 55) {
+            return (char) ('0' + random.nextInt(10));
+        }
+        if (roll < 60) {
+            return '.';
+        }
+        if (roll < 80) {
+            return "+-*/".charAt(random.nextInt(4));
+        }
+        if (roll < 92) {
+            return "()√".charAt(random.nextInt(3));
+        }
+        return equals && roll < 98 ? '=' : 'C';
+    }
+
+    /**
+     * Replays the log through {@code way} for {@code seconds}.
+     *
+     * @return events per second, bytes allocated an event, and collections
+     *         and milliseconds spent in them
+     */
+    private static double[] run(Way way, double seconds) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long collections = -collections(false);
+        long collecting = -collections(true);
+        long allocated = -threads.getThreadAllocatedBytes(thread);
+        long events = 0;
+        long checksum = 0;
+        long start = System.nanoTime();
+        long deadline = start + (long) (seconds * 1e9);
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < EVENTS; i++) {
+                CharSequence display = way.press(i);
+                checksum += display.charAt(display.length() - 1);
+            }
+            events += EVENTS;
+        }
+        long nanos = System.nanoTime() - start;
+        allocated += threads.getThreadAllocatedBytes(thread);
+        collections += collections(false);
+        collecting += collections(true);
+        sink = checksum;
+        return new double[] {events / (nanos / 1e9), (double) allocated / events, collections, collecting};
+    }
+
+    /**
+     * Collections so far by every collector, or milliseconds spent in them.
+     */
+    private static long collections(boolean millis) {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, millis ? collector.getCollectionTime() : collector.getCollectionCount());
+        }
+        return total;
+    }
+
+    /**
+     * The calculator's input path before it edited a char array in place:
+     * the expression in a StringBuilder, the number being typed found by
+     * scanning back, and a new String for every display.
+     */
+    private static final class StringBuilderLogic {
+        private final StringBuilder expression = new StringBuilder();
+        private final PreciseEvaluator precise;
+        private boolean showingResult = false;
+        private int openParentheses = 0;
+
+        StringBuilderLogic(PreciseEvaluator precise) {
+            this.precise = precise;
+        }
+
+        String handleInput(String command) {
+            if (command.equals("C")) {
+                clear();
+                return "0";
+            }
+
+            char cmdChar = command.charAt(0);
+
+            if (command.equals("=")) {
+                if (expression.length() == 0) return precise != null ? "0" : "0.0";
+                return evaluate();
+            }
+
+            if (Character.isDigit(cmdChar) || cmdChar == '.') {
+                if (showingResult) {
+                    clear();
+                }
+                appendDigit(cmdChar);
+            } else if (cmdChar == '(' || cmdChar == '√') {
+                if (showingResult) {
+                    clear();
+                }
+                if (endsWithOperand()) {
+                    expression.append('*');
+                }
+                expression.append(cmdChar);
+                if (cmdChar == '(') {
+                    openParentheses++;
+                }
+            } else if (cmdChar == ')') {
+                if (openParentheses > 0 && endsWithOperand()) {
+                    expression.append(')');
+                    openParentheses--;
+                    showingResult = false;
+                }
+            } else {
+                appendOperator(cmdChar);
+            }
+            return expression.length() == 0 ? "0" : expression.toString();
+        }
+
+        private String evaluate() {
+            for (; openParentheses > 0; openParentheses--) {
+                expression.append(')');
+            }
+            String result;
+            try {
+                if (precise != null) {
+                    result = PreciseEvaluator.format(precise.evaluate(ExpressionParser.parse(expression.toString())));
+                } else {
+                    double value = CompiledExpression.compile(expression.toString()).evaluate();
+                    if (Double.isNaN(value)) {
+                        throw new ArithmeticException("Not a number");
+                    }
+                    result = DoubleFormatter.format(value);
+                }
+            } catch (ArithmeticException | IllegalArgumentException ex) {
+                clear();
+                return "Error";
+            }
+            expression.setLength(0);
+            expression.append(result);
+            showingResult = true;
+            return expression.toString();
+        }
+
+        private void appendDigit(char digit) {
+            int numberStart = expression.length();
+            while (numberStart > 0 && (Character.isDigit(expression.charAt(numberStart - 1))
+                    || expression.charAt(numberStart - 1) == '.')) {
+                numberStart--;
+            }
+            if (numberStart > 0 && expression.charAt(numberStart - 1) == ')') {
+                expression.append('*');
+                numberStart = expression.length();
+            }
+            if (digit == '.' && expression.indexOf(".", numberStart) >= 0) {
+                return;
+            }
+            if (expression.length() - numberStart == 1 && expression.charAt(numberStart) == '0' && digit != '.') {
+                expression.setLength(numberStart);
+            }
+            expression.append(digit);
+        }
+
+        private void appendOperator(char operator) {
+            showingResult = false;
+            char last = expression.length() > 0 ? expression.charAt(expression.length() - 1) : '(';
+            if (last == '(' || last == '√') {
+                if (operator == '-') {
+                    expression.append('-');
+                }
+                return;
+            }
+            if (isOperator(last)) {
+                if (operator == '-' && (last == '*' || last == '/')) {
+                    expression.append('-');
+                    return;
+                }
+                expression.setLength(expression.length() - 1);
+                if (expression.length() > 0 && isOperator(expression.charAt(expression.length() - 1))) {
+                    expression.setLength(expression.length() - 1);
+                }
+                if (expression.length() == 0 || expression.charAt(expression.length() - 1) == '(') {
+                    if (operator == '-') {
+                        expression.append('-');
+                    }
+                    return;
+                }
+            }
+            expression.append(operator);
+        }
+
+        private boolean endsWithOperand() {
+            if (expression.length() == 0) {
+                return false;
+            }
+            char last = expression.charAt(expression.length() - 1);
+            return Character.isLetterOrDigit(last) || last == '.' || last == ')';
+        }
+
+        private static boolean isOperator(char c) {
+            return c == '+' || c == '-' || c == '*' || c == '/';
+        }
+
+        private void clear() {
+            expression.setLength(0);
+            openParentheses = 0;
+            showingResult = false;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link Expression} flattened into postfix code, for evaluating the same
+ * formula many times with different variable values.
+ *
+ * Each instruction is one int: the opcode in the low byte and an operand
+ * (constant, variable or function index) above it. Evaluation runs the code
+ * in one loop over a {@code double[]} stack, with no tree walking and no
+ * boxing. Parts of the tree without variables are folded into constants at
+ * compile time. Compiled forms are immutable and safe to share; {@link
+ * #compile} keeps recently used ones in an LRU cache keyed by the text.
+ */
+final class CompiledExpression {
+
+    private static final int CONSTANT = 0;
+    private static final int LOAD = 1;
+    private static final int NEGATE = 2;
+    private static final int ADD = 3;
+    private static final int SUBTRACT = 4;
+    private static final int MULTIPLY = 5;
+    private static final int DIVIDE = 6;
+    private static final int POWER = 7;
+    private static final int CALL = 8;
+
+    private static final int CACHE_SIZE = 256;
+    private static final Map<String, CompiledExpression> CACHE =
+        new LinkedHashMap<String, CompiledExpression>(CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+    private static final Expression.Function[] FUNCTIONS = Expression.Function.values();
+
+    private final int[] code;
+    private final double[] constants;
+    private final String[] variables;
+    private final int maxStack;
+
+    private CompiledExpression(int[] code, double[] constants, String[] variables, int maxStack) {
+        this.code = code;
+        this.constants = constants;
+        this.variables = variables;
+        this.maxStack = maxStack;
+    }
+
+    /**
+     * Parses and compiles {@code text}, or returns the cached form.
+     *
+     * @throws IllegalArgumentException if the text is not a well-formed expression
+     */
+    static CompiledExpression compile(String text) {
+        synchronized (CACHE) {
+            CompiledExpression cached = CACHE.get(text);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        CompiledExpression compiled = compile(ExpressionParser.parse(text)); // Outside the lock; a duplicate is harmless
+        synchronized (CACHE) {
+            CACHE.put(text, compiled);
+        }
+        return compiled;
+    }
+
+    static CompiledExpression compile(Expression expression) {
+        Compiler compiler = new Compiler();
+        compiler.emit(expression);
+        return new CompiledExpression(
+            Arrays.copyOf(compiler.code, compiler.length),
+            compiler.constants.stream().mapToDouble(Double::doubleValue).toArray(),
+            compiler.variables.toArray(new String[0]),
+            compiler.maxDepth);
+    }
+
+    /**
+     * Names of the variables, in the order {@link #evaluate} takes their values.
+     */
+    String[] variables() {
+        return variables.clone();
+    }
+
+    /**
+     * Index of a variable in the values passed to {@link #evaluate}, or -1.
+     */
+    int indexOf(String variable) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].equals(variable)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the value with {@code values[i]} bound to {@code variables()[i]}.
+     *
+     * @throws ArithmeticException on division by zero
+     */
+    double evaluate(double... values) {
+        if (values.length < variables.length) {
+            throw new IllegalArgumentException("Expected values for " + Arrays.toString(variables));
+        }
+        double[] stack = new double[maxStack];
+        int top = -1;
+        for (int instruction : code) {
+            int operand = instruction >>> 8;
+            switch (instruction & 0xFF) {
+                case CONSTANT:
+                    stack[++top] = constants[operand];
+                    break;
+                case LOAD:
+                    stack[++top] = values[operand];
+                    break;
+                case NEGATE:
+                    stack[top] = -stack[top];
+                    break;
+                case ADD:
+                    stack[top - 1] += stack[top];
+                    top--;
+                    break;
+                case SUBTRACT:
+                    stack[top - 1] -= stack[top];
+                    top--;
+                    break;
+                case MULTIPLY:
+                    stack[top - 1] *= stack[top];
+                    top--;
+                    break;
+                case DIVIDE:
+                    if (stack[top] == 0) {
+                        throw new ArithmeticException("Division by zero");
+                    }
+                    stack[top - 1] /= stack[top];
+                    top--;
+                    break;
+                case POWER:
+                    stack[top - 1] = Math.pow(stack[top - 1], stack[top]);
+                    top--;
+                    break;
+                case CALL: {
+                    Expression.Function function = FUNCTIONS[operand];
+                    if (function.arity == 2) {
+                        stack[top - 1] = function.apply(stack[top - 1], stack[top]);
+                        top--;
+                    } else {
+                        stack[top] = function.apply(stack[top], 0);
+                    }
+                    break;
+                }
+                default:
+                    throw new AssertionError(instruction);
+            }
+        }
+        return stack[0];
+    }
+
+    int maxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Evaluates rows {@code from} (inclusive) to {@code to} of the columns
+     * into {@code out}, one instruction at a time across the whole block.
+     * Each instruction is then a plain loop over arrays, which the JIT
+     * compiles to SIMD code. Rows that divide by zero or come out NaN,
+     * such as the square root of a negative, get NaN and are flagged in
+     * {@code errors}. {@code stack} is scratch space of at least
+     * {@link #maxStack()} rows of {@code to - from} values.
+     */
+    void evaluateBlock(double[][] columns, int from, int to, double[][] stack, double[] out, boolean[] errors) {
+        int n = to - from;
+        int top = -1;
+        for (int instruction : code) {
+            int operand = instruction >>> 8;
+            int opcode = instruction & 0xFF;
+            if (opcode == CONSTANT) {
+                Arrays.fill(stack[++top], 0, n, constants[operand]);
+                continue;
+            }
+            if (opcode == LOAD) {
+                System.arraycopy(columns[operand], from, stack[++top], 0, n);
+                continue;
+            }
+            if (opcode == NEGATE) {
+                double[] a = stack[top];
+                for (int i = 0; i < n; i++) {
+                    a[i] = -a[i];
+                }
+                continue;
+            }
+            if (opcode == CALL && FUNCTIONS[operand].arity == 1) {
+                double[] a = stack[top];
+                Expression.Function function = FUNCTIONS[operand];
+                for (int i = 0; i < n; i++) {
+                    a[i] = function.apply(a[i], 0);
+                }
+                continue;
+            }
+
+            double[] a = stack[top - 1];
+            double[] b = stack[top];
+            top--;
+            switch (opcode) {
+                case ADD:
+                    for (int i = 0; i < n; i++) {
+                        a[i] += b[i];
+                    }
+                    break;
+                case SUBTRACT:
+                    for (int i = 0; i < n; i++) {
+                        a[i] -= b[i];
+                    }
+                    break;
+                case MULTIPLY:
+                    for (int i = 0; i < n; i++) {
+                        a[i] *= b[i];
+                    }
+                    break;
+                case DIVIDE:
+                    for (int i = 0; i < n; i++) {
+                        if (b[i] == 0) {
+                            errors[from + i] = true;
+                        }
+                    }
+                    for (int i = 0; i < n; i++) {
+                        a[i] /= b[i];
+                    }
+                    break;
+                case POWER:
+                    for (int i = 0; i < n; i++) {
+                        a[i] = Math.pow(a[i], b[i]);
+                    }
+                    break;
+                case CALL: {
+                    Expression.Function function = FUNCTIONS[operand];
+                    for (int i = 0; i < n; i++) {
+                        a[i] = function.apply(a[i], b[i]);
+                    }
+                    break;
+                }
+                default:
+                    throw new AssertionError(instruction);
+            }
+        }
+
+        double[] result = stack[0];
+        for (int i = 0; i < n; i++) {
+            boolean error = errors[from + i] || Double.isNaN(result[i]); // The calculator shows NaN as "Error" too
+            errors[from + i] = error;
+            out[from + i] = error ? Double.NaN : result[i];
+        }
+    }
+
+    /**
+     * Walks the tree once, emitting postfix code and tracking stack depth.
+     * Operations whose operands all came out as constants are folded.
+     */
+    private static final class Compiler {
+        int[] code = new int[16];
+        int length;
+        final List<Double> constants = new ArrayList<>();
+        final List<String> variables = new ArrayList<>();
+        int depth;
+        int maxDepth;
+
+        /**
+         * Emits {@code node} and returns true if it came out as one constant.
+         */
+        boolean emit(Expression node) {
+            if (node instanceof Expression.Number) {
+                emitConstant(((Expression.Number) node).value);
+                return true;
+            }
+            if (node instanceof Expression.Variable) {
+                String name = ((Expression.Variable) node).name;
+                int index = variables.indexOf(name);
+                if (index < 0) {
+                    index = variables.size();
+                    variables.add(name);
+                }
+                instruction(LOAD, index, 1);
+                return false;
+            }
+
+            int opcode;
+            int operand = 0;
+            Expression[] operands;
+            if (node instanceof Expression.Negate) {
+                opcode = NEGATE;
+                operands = new Expression[] { ((Expression.Negate) node).operand };
+            } else if (node instanceof Expression.Binary) {
+                Expression.Binary binary = (Expression.Binary) node;
+                opcode = opcodeOf(binary.operator);
+                operands = new Expression[] { binary.left, binary.right };
+            } else {
+                Expression.Call call = (Expression.Call) node;
+                opcode = CALL;
+                operand = call.function.ordinal();
+                operands = call.arguments;
+            }
+
+            int start = length;
+            boolean constant = true;
+            for (Expression child : operands) {
+                constant &= emit(child);
+            }
+            if (constant) {
+                try {
+                    double a = constants.get(constants.size() - operands.length);
+                    double b = operands.length > 1 ? constants.get(constants.size() - 1) : 0;
+                    double value = opcode == NEGATE ? -a
+                        : opcode == CALL ? FUNCTIONS[operand].apply(a, b)
+                        : Expression.Binary.apply(((Expression.Binary) node).operator, a, b);
+                    length = start;
+                    constants.subList(constants.size() - operands.length, constants.size()).clear();
+                    depth -= operands.length;
+                    emitConstant(value);
+                    return true;
+                } catch (ArithmeticException ex) {
+                    // Leave it to fail when evaluated, as the tree would
+                }
+            }
+            instruction(opcode, operand, 1 - operands.length);
+            return false;
+        }
+
+        private void emitConstant(double value) {
+            constants.add(value);
+            instruction(CONSTANT, constants.size() - 1, 1);
+        }
+
+        private void instruction(int opcode, int operand, int stackEffect) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length * 2);
+            }
+            code[length++] = operand << 8 | opcode;
+            depth += stackEffect;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private static int opcodeOf(char operator) {
+            switch (operator) {
+                case '+': return ADD;
+                case '-': return SUBTRACT;
+                case '*': return MULTIPLY;
+                case '/': return DIVIDE;
+                case '^': return POWER;
+                default: throw new AssertionError(operator);
+            }
+        }
+    }
+}
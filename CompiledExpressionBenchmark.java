@@ -0,0 +1,106 @@
+import java.util.Random;
+
+/**
+ * Evaluates one formula over many sets of input values four ways and
+ * reports evaluations per second for each: typed key by key into
+ * {@link CalculatorLogic} with the values written in, as the calculator
+ * was used headlessly before; parsed from text with the values written in
+ * and evaluated as a tree; looked up by its text in
+ * {@link CompiledExpression#compile}'s cache and evaluated; and compiled
+ * once and evaluated. The formula only uses keys the calculator has, so
+ * all four can run it. Needs no database or display:
+ *
+ *     javac *.java && java CompiledExpressionBenchmark [seconds-per-way]
+ *
+ * Exits with status 1 if the four ways disagree on any value.
+ */
+class CompiledExpressionBenchmark {
+
+    private static final String FORMULA = "√(price*qty) * (1 + tax) - price / qty + (price - discount) * qty";
+    private static final String[] NAMES = {"price", "qty", "tax", "discount"};
+    private static final int INPUTS = 4_096;
+
+    private static volatile double sink; // Where the values go, so evaluation isn't optimized away
+
+    private interface Way {
+        double evaluate(int input);
+    }
+
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 2;
+
+        CompiledExpression compiled = CompiledExpression.compile(FORMULA);
+        Random random = new Random(18);
+        String[][] texts = new String[INPUTS][NAMES.length];
+        double[][] values = new double[INPUTS][compiled.variables().length];
+        String[] written = new String[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            String formula = FORMULA;
+            for (int v = 0; v < NAMES.length; v++) {
+                int cents = v == 1 ? 100 * (1 + random.nextInt(50)) : random.nextInt(100_000);
+                texts[i][v] = cents / 100 + "." + String.format("%02d", cents % 100);
+                values[i][compiled.indexOf(NAMES[v])] = Double.parseDouble(texts[i][v]);
+                formula = formula.replace(NAMES[v], texts[i][v]);
+            }
+            written[i] = formula;
+        }
+
+        CalculatorLogic logic = new CalculatorLogic();
+        Way keys = i -> {
+            String text = written[i];
+            logic.press('C');
+            for (int c = 0; c < text.length(); c++) {
+                if (text.charAt(c) != ' ') {
+                    logic.press(text.charAt(c));
+                }
+            }
+            return Double.parseDouble(logic.press('=').toString());
+        };
+        Way tree = i -> ExpressionParser.parse(written[i]).evaluate();
+        Way cached = i -> CompiledExpression.compile(FORMULA).evaluate(values[i]);
+        Way once = i -> compiled.evaluate(values[i]);
+
+        for (int i = 0; i < INPUTS; i++) {
+            double expected = compiled.evaluate(values[i]);
+            double typed = keys.evaluate(i);
+            // The display shows the shortest text that reads back as the same double, so it compares exactly
+            if (Double.compare(tree.evaluate(i), expected) != 0 || Double.compare(cached.evaluate(i), expected) != 0
+                    || Double.compare(typed, expected) != 0) {
+                System.out.println("FAILED: " + written[i] + " is " + expected + " compiled, " + tree.evaluate(i)
+                    + " as a tree, " + typed + " typed in");
+                System.exit(1);
+            }
+        }
+
+        System.out.println(FORMULA + ", " + INPUTS + " sets of values");
+        double[] rates = new double[4];
+        String[] labels = {"typed key by key", "parsed as a tree", "cached compiled form", "compiled once"};
+        Way[] ways = {keys, tree, cached, once};
+        for (int round = 0; round < 2; round++) { // The first round warms the JIT
+            for (int w = 0; w < ways.length; w++) {
+                rates[w] = run(ways[w], round == 0 ? seconds / 4 : seconds);
+            }
+        }
+        for (int w = 0; w < ways.length; w++) {
+            System.out.printf("%-22s %,14.0f evaluations/s  %,8.1fx typed%n", labels[w], rates[w], rates[w] / rates[0]);
+        }
+        System.out.println("All four agree on every value");
+        System.out.println("OK");
+    }
+
+    /**
+     * @return evaluations per second
+     */
+    private static double run(Way way, double seconds) {
+        long evaluations = 0;
+        long start = System.nanoTime();
+        long deadline = start + (long) (seconds * 1e9);
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < INPUTS; i++) {
+                sink = way.evaluate(i);
+            }
+            evaluations += INPUTS;
+        }
+        return evaluations / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,305 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small JDBC connection pool shared by the desktop apps.
+ *
+ * Connections handed out by {@link #getConnection()} are proxies: closing one
+ * returns the physical connection to the pool, and {@code prepareStatement(sql)}
+ * is served from a per-connection cache, so the fixed SQL strings the apps use
+ * are only prepared once per physical connection.
+ */
+class ConnectionPool {
+
+    private static final long BORROW_TIMEOUT_MILLIS = 30_000L;
+    private static final long VALIDATION_INTERVAL_MILLIS = 5_000L; // Skip isValid() for recently used connections
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final long idleTimeoutMillis;
+
+    private final Semaphore permits; // One permit per connection that may be checked out
+    private final Deque<PooledConnection> idle = new ArrayDeque<>(); // Most recently used first; guarded by this
+    private int openCount = 0; // Physical connections open; guarded by this
+    private final ScheduledExecutorService maintenance;
+
+    /**
+     * @param minSize connections kept open even when idle
+     * @param maxSize upper bound on physical connections
+     * @param idleTimeoutMillis idle time after which connections above {@code minSize} are closed
+     */
+    ConnectionPool(String url, String user, String password, int minSize, int maxSize, long idleTimeoutMillis) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1_000L, idleTimeoutMillis / 2);
+        maintenance.scheduleWithFixedDelay(this::maintain, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, opening a new one if none are idle.
+     * Close the returned connection to give it back to the pool.
+     */
+    Connection getConnection() throws SQLException {
+        try {
+            if (!permits.tryAcquire(BORROW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("Timed out waiting for a pooled connection");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", ex);
+        }
+
+        try {
+            while (true) {
+                PooledConnection pooled;
+                synchronized (this) {
+                    pooled = idle.pollFirst();
+                }
+                if (pooled == null) {
+                    pooled = open();
+                } else if (!pooled.validate()) {
+                    discard(pooled);
+                    continue;
+                }
+                pooled.checkedOut = true;
+                return pooled.proxy;
+            }
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops the maintenance thread.
+     * Connections currently checked out are closed when they are returned.
+     */
+    void shutdown() {
+        maintenance.shutdownNow();
+        List<PooledConnection> toClose;
+        synchronized (this) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+        }
+        toClose.forEach(this::discard);
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        synchronized (this) {
+            openCount++;
+        }
+        return new PooledConnection(physical);
+    }
+
+    private void discard(PooledConnection pooled) {
+        synchronized (this) {
+            openCount--;
+        }
+        pooled.closePhysical();
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            boolean reusable = !maintenance.isShutdown() && !pooled.physical.isClosed();
+            if (reusable && !pooled.physical.getAutoCommit()) {
+                // Never hand out a connection with a half-finished transaction
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            if (reusable) {
+                pooled.lastUsed = System.currentTimeMillis();
+                synchronized (this) {
+                    idle.addFirst(pooled);
+                }
+            } else {
+                discard(pooled);
+            }
+        } catch (SQLException ex) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes connections idle for longer than the timeout while keeping
+     * {@code minSize} open, then tops the pool back up to {@code minSize}.
+     */
+    private void maintain() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        List<PooledConnection> expired = new ArrayList<>();
+        int missing;
+        synchronized (this) {
+            // The oldest connections sit at the tail of the deque
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && openCount - expired.size() > minSize) {
+                PooledConnection pooled = it.next();
+                if (pooled.lastUsed >= cutoff) {
+                    break;
+                }
+                it.remove();
+                expired.add(pooled);
+            }
+            missing = minSize - (openCount - expired.size());
+        }
+        expired.forEach(this::discard);
+
+        for (int i = 0; i < missing; i++) {
+            try {
+                PooledConnection pooled = open();
+                pooled.lastUsed = System.currentTimeMillis();
+                synchronized (this) {
+                    idle.addLast(pooled);
+                }
+            } catch (SQLException ex) {
+                return; // Database unreachable; try again on the next run
+            }
+        }
+    }
+
+    /**
+     * A physical connection plus its prepared-statement cache.
+     */
+    private final class PooledConnection implements InvocationHandler {
+        private final Connection physical;
+        private final Connection proxy;
+        private final Map<String, PreparedStatement> statementCache;
+        private volatile boolean checkedOut = false;
+        private long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.proxy = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, this);
+            this.statementCache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > STATEMENT_CACHE_SIZE) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        boolean validate() {
+            if (System.currentTimeMillis() - lastUsed < VALIDATION_INTERVAL_MILLIS) {
+                return true;
+            }
+            try {
+                return physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException ex) {
+                return false;
+            }
+        }
+
+        void closePhysical() {
+            statementCache.values().forEach(this::closeQuietly);
+            statementCache.clear();
+            try {
+                physical.close();
+            } catch (SQLException ignored) {
+                // Already broken; nothing more to do
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                if (checkedOut) {
+                    checkedOut = false;
+                    release(this);
+                }
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return !checkedOut || physical.isClosed();
+            }
+            if (!checkedOut) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            if (name.equals("prepareStatement") && args.length == 1) {
+                return cachedStatement((String) args[0]);
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+
+        private PreparedStatement cachedStatement(String sql) throws SQLException {
+            PreparedStatement statement = statementCache.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = physical.prepareStatement(sql);
+                statementCache.put(sql, statement);
+            }
+            PreparedStatement target = statement;
+            // Closing the handed-out statement only resets it; the cache owns the real one
+            return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class },
+                (stmtProxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            target.clearParameters();
+                            target.clearBatch();
+                            return null;
+                        case "getConnection":
+                            return proxy;
+                        default:
+                            try {
+                                return method.invoke(target, args);
+                            } catch (InvocationTargetException ex) {
+                                throw ex.getCause();
+                            }
+                    }
+                });
+        }
+
+        private void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // Connection is going away anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Issues and returns books the way {@link LoanLedger} does, first opening a
+ * connection for every statement as the apps used to, then borrowing one
+ * from a {@link ConnectionPool}, and reports operations per second for
+ * each. Runs against an in-memory H2 database by default, standing in for
+ * MySQL; give it a URL to measure a real server, where the handshake the
+ * pool saves is far dearer:
+ *
+ *     javac *.java && java -cp .:h2.jar ConnectionPoolBenchmark [threads] [seconds] [url user password]
+ *
+ * Works in its own table, pool_bench_books, which it creates and fills.
+ */
+class ConnectionPoolBenchmark {
+
+    private static final int BOOKS = 10_000;
+    private static final String ISSUE_SQL = "UPDATE pool_bench_books SET is_issued = TRUE WHERE id = ? AND is_issued = FALSE";
+    private static final String RETURN_SQL = "UPDATE pool_bench_books SET is_issued = FALSE WHERE id = ? AND is_issued = TRUE";
+
+    private interface Connector {
+        Connection get() throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        String url = args.length > 2 ? args[2] : "jdbc:h2:mem:pool_bench;DB_CLOSE_DELAY=-1";
+        String user = args.length > 3 ? args[3] : "";
+        String password = args.length > 4 ? args[4] : "";
+
+        try {
+            DriverManager.getDriver(url);
+        } catch (SQLException ex) {
+            System.out.println("No JDBC driver for " + url + "; put h2.jar (or the MySQL connector) on the class path");
+            System.exit(2);
+        }
+
+        Connection keeper = DriverManager.getConnection(url, user, password); // Keeps an in-memory database alive
+        try (Statement stmt = keeper.createStatement()) {
+            stmt.executeUpdate("DROP TABLE IF EXISTS pool_bench_books");
+            stmt.executeUpdate("CREATE TABLE pool_bench_books (id INT PRIMARY KEY, is_issued BOOLEAN DEFAULT FALSE)");
+        }
+        try (PreparedStatement pstmt = keeper.prepareStatement("INSERT INTO pool_bench_books (id) VALUES (?)")) {
+            for (int id = 1; id <= BOOKS; id++) {
+                pstmt.setInt(1, id);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+
+        run("warm-up", () -> DriverManager.getConnection(url, user, password), threads, 1);
+        double perCall = run("connect per call", () -> DriverManager.getConnection(url, user, password), threads, seconds);
+        ConnectionPool pool = new ConnectionPool(url, user, password, 0, threads, 60_000L);
+        double pooled = run("pooled", pool::getConnection, threads, seconds);
+        pool.shutdown();
+        System.out.printf("pooled is %.1fx connect per call%n", pooled / perCall);
+
+        try (Statement stmt = keeper.createStatement()) {
+            stmt.executeUpdate("DROP TABLE pool_bench_books");
+        }
+        keeper.close();
+        System.out.println("OK");
+    }
+
+    /**
+     * Has {@code threads} threads issue or return a random book, each in its
+     * own borrowed connection, for {@code seconds}.
+     *
+     * @return operations per second
+     */
+    private static double run(String label, Connector connector, int threads, long seconds) throws Exception {
+        LongAdder operations = new LongAdder();
+        AtomicReference<SQLException> failure = new AtomicReference<>();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline && failure.get() == null) {
+                    try (Connection conn = connector.get();
+                         PreparedStatement pstmt = conn.prepareStatement(random.nextBoolean() ? ISSUE_SQL : RETURN_SQL)) {
+                        pstmt.setInt(1, 1 + random.nextInt(BOOKS));
+                        pstmt.executeUpdate();
+                        operations.increment();
+                    } catch (SQLException ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                }
+            }, "bench-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        double perSecond = operations.sum() / (double) seconds;
+        System.out.printf("%-17s %,10.0f ops/s  %,8.1f us an operation%n", label, perSecond, threads * 1e6 / perSecond);
+        return perSecond;
+    }
+}
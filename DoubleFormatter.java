@@ -0,0 +1,116 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Formats a double with the fewest significant digits that still parse back
+ * to the same double, in the layout of {@link Double#toString(double)}:
+ * plain for magnitudes from 10^-3 up to 10^7 ({@code 0.001}, {@code 5.0}),
+ * scientific otherwise ({@code 1.0E20}).
+ *
+ * Double.toString before JDK 19 sometimes prints more digits than needed:
+ * 2e23 comes out as {@code 1.9999999999999998E23}, where this gives
+ * {@code 2.0E23}. Only a normal double printed with 16 or 17 digits, or a
+ * subnormal one, can be one of those, so anything else is taken from
+ * Double.toString as it is, and only the rest are searched for their
+ * shortest digits in BigDecimal.
+ */
+final class DoubleFormatter {
+
+    private static final MathContext[] PRECISIONS = new MathContext[18];
+
+    static {
+        for (int digits = 1; digits < PRECISIONS.length; digits++) {
+            PRECISIONS[digits] = new MathContext(digits, RoundingMode.HALF_EVEN);
+        }
+    }
+
+    private DoubleFormatter() {
+    }
+
+    static String format(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || value == 0) {
+            return Double.toString(value); // "NaN", "Infinity", "0.0", "-0.0"
+        }
+        if (Math.abs(value) >= Double.MIN_NORMAL) {
+            String text = Double.toString(value);
+            if (significantDigits(text) <= 15) {
+                // No two decimals of 15 digits or fewer read as the same normal double, so none shorter exists
+                return text;
+            }
+        }
+
+        // If rounding to some number of digits reads back as the value, so does rounding to more
+        BigDecimal exact = new BigDecimal(value);
+        BigDecimal shortest = exact.round(PRECISIONS[PRECISIONS.length - 1]); // 17 digits always round-trip
+        int low = 1;
+        int high = PRECISIONS.length - 1;
+        while (low < high) {
+            int digits = (low + high) >>> 1;
+            BigDecimal candidate = exact.round(PRECISIONS[digits]);
+            if (candidate.doubleValue() == value) {
+                shortest = candidate;
+                high = digits;
+            } else {
+                low = digits + 1;
+            }
+        }
+        shortest = shortest.stripTrailingZeros();
+
+        StringBuilder text = new StringBuilder(26);
+        if (value < 0) {
+            text.append('-');
+        }
+        String digits = shortest.unscaledValue().abs().toString();
+        int exponent = digits.length() - 1 - shortest.scale(); // Power of ten of the first digit
+        double magnitude = Math.abs(value);
+        if (magnitude >= 1e-3 && magnitude < 1e7) {
+            if (exponent < 0) {
+                text.append("0.");
+                for (int i = exponent + 1; i < 0; i++) {
+                    text.append('0');
+                }
+                text.append(digits);
+            } else if (digits.length() > exponent + 1) {
+                text.append(digits, 0, exponent + 1).append('.').append(digits, exponent + 1, digits.length());
+            } else {
+                text.append(digits);
+                for (int i = digits.length(); i <= exponent; i++) {
+                    text.append('0');
+                }
+                text.append(".0");
+            }
+        } else {
+            text.append(digits.charAt(0)).append('.');
+            text.append(digits.length() > 1 ? digits.substring(1) : "0");
+            text.append('E').append(exponent);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Counts the digits of a {@link Double#toString} result from the first
+     * non-zero one to the last, ignoring the exponent.
+     */
+    private static int significantDigits(String text) {
+        int first = -1;
+        int last = -1;
+        int position = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == 'E') {
+                break;
+            }
+            if (c >= '1' && c <= '9') {
+                if (first < 0) {
+                    first = position;
+                }
+                last = position;
+            }
+            if (c >= '0' && c <= '9') {
+                position++;
+            }
+        }
+        return last - first + 1;
+    }
+}
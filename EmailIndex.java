@@ -0,0 +1,244 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Emails of registered students, for rejecting a duplicate registration
+ * without a database round trip.
+ *
+ * Emails are compared trimmed and lower-cased. A Bloom filter covers every
+ * email in 'students' plus those registered here since start-up, at ten
+ * bits an email instead of the hundred-odd bytes a String in a set costs.
+ * A filter miss proves the email is new, which is the answer for almost
+ * every submission. Only emails registered here are also kept exactly, so
+ * a filter hit on one of them is a certain duplicate; any other hit is an
+ * email from the table or a false positive, and is settled by a lookup on
+ * the unique key with {@link #isRegistered}.
+ *
+ * The filter is built by streaming the 'students' table on a background
+ * thread, sized from its row count, and swapped in when done; it is
+ * rebuilt the same way if registrations outgrow it. Until the first build
+ * finishes, a miss is not proof the email is new; such registrations are
+ * accepted, the unique key on 'students.email' keeps the duplicate out of
+ * the table, and the spool reports it as dropped.
+ */
+class EmailIndex {
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int BITS_PER_EMAIL = 10;
+    private static final int HASHES = 7; // Roughly 1% false positives at 10 bits per email
+    private static final long MIN_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    enum Match {
+        NEW, // Not in the table when loaded, nor registered here
+        DUPLICATE, // Registered here
+        MAYBE // Possibly in the table; ask isRegistered
+    }
+
+    /**
+     * Bits for a fixed number of emails. Not thread-safe; a filter is only
+     * written by the thread building it until it is installed.
+     */
+    private static final class Filter {
+        final long[] bits;
+        final int capacity;
+        int count;
+
+        Filter(int capacity) {
+            this.capacity = capacity;
+            bits = new long[Math.max(1, (int) ((long) capacity * BITS_PER_EMAIL / 64))];
+        }
+
+        boolean mightContain(long hash) {
+            long size = (long) bits.length * 64;
+            long h2 = (hash >>> 32) | 1;
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Long.remainderUnsigned(hash + i * h2, size);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void put(long hash) {
+            long size = (long) bits.length * 64;
+            long h2 = (hash >>> 32) | 1;
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Long.remainderUnsigned(hash + i * h2, size);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            count++;
+        }
+    }
+
+    private final Set<String> registeredHere = new HashSet<>(); // Guarded by this
+    private Filter filter = new Filter(INITIAL_CAPACITY); // Guarded by this
+    private ConnectionPool pool;
+    private boolean rebuilding; // Guarded by this
+    private volatile boolean complete;
+
+    static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Builds the filter from every email in 'students' on a daemon thread,
+     * then marks the index complete. If the table can't be read it backs off
+     * and tries again.
+     */
+    void warmUp(ConnectionPool pool) {
+        synchronized (this) {
+            this.pool = pool;
+            rebuilding = true;
+        }
+        Thread loader = new Thread(() -> {
+            long backoff = MIN_BACKOFF_MILLIS;
+            while (true) {
+                try {
+                    install(load(pool));
+                    complete = true;
+                    return;
+                } catch (SQLException ex) {
+                    System.err.println("Could not load registered emails: " + ex.getMessage());
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }, "email-index-warmup");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Builds the filter from {@code emails} instead of the table, for
+     * {@link EmailIndexBenchmark}.
+     */
+    void warmUp(Iterable<String> emails, int expected) {
+        Filter loaded = new Filter(Math.max(INITIAL_CAPACITY, expected * 2));
+        for (String email : emails) {
+            loaded.put(hash(normalize(email)));
+        }
+        install(loaded);
+        complete = true;
+    }
+
+    /**
+     * True once every email in the table has been loaded, so a miss means
+     * the email is new.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Checks an email without a database round trip.
+     */
+    synchronized Match match(String email) {
+        String key = normalize(email);
+        if (!filter.mightContain(hash(key))) {
+            return Match.NEW;
+        }
+        return registeredHere.contains(key) ? Match.DUPLICATE : Match.MAYBE;
+    }
+
+    /**
+     * Looks the email up by the unique key on 'students.email', for a
+     * {@link Match#MAYBE}. Makes a database round trip, so keep it off the EDT.
+     */
+    boolean isRegistered(String email) throws SQLException {
+        ConnectionPool pool;
+        synchronized (this) {
+            pool = this.pool;
+        }
+        // The key's case-insensitive collation matches the normalized email
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM students WHERE email = ? LIMIT 1")) {
+            pstmt.setString(1, normalize(email));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Records an email as registered here.
+     *
+     * @return false if it already was
+     */
+    synchronized boolean add(String email) {
+        String key = normalize(email);
+        if (!registeredHere.add(key)) {
+            return false;
+        }
+        filter.put(hash(key));
+        if (filter.count > filter.capacity && complete && !rebuilding) {
+            warmUp(pool); // Rebuild bigger before false positives climb; the old filter serves meanwhile
+        }
+        return true;
+    }
+
+    /**
+     * Forgets an email whose registration failed. Its filter bits stay set,
+     * which only costs a lookup by key if it is registered again.
+     */
+    synchronized void remove(String email) {
+        registeredHere.remove(normalize(email));
+    }
+
+    private static Filter load(ConnectionPool pool) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            int rows;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM students")) {
+                rs.next();
+                rows = rs.getInt(1);
+            }
+            Filter loaded = new Filter(Math.max(INITIAL_CAPACITY, rows * 2)); // Room to grow before a rebuild
+            stmt.setFetchSize(Integer.MIN_VALUE); // MySQL: stream rows instead of buffering the table
+            try (ResultSet rs = stmt.executeQuery("SELECT email FROM students")) {
+                while (rs.next()) {
+                    loaded.put(hash(normalize(rs.getString(1))));
+                }
+            }
+            return loaded;
+        }
+    }
+
+    /**
+     * Swaps in a filter built off the lock, adding the emails registered
+     * here meanwhile, which may not be in the table yet.
+     */
+    private synchronized void install(Filter loaded) {
+        for (String key : registeredHere) {
+            loaded.put(hash(key));
+        }
+        filter = loaded;
+        rebuilding = false;
+    }
+
+    /**
+     * 64-bit FNV-1a over the chars, with a final mix so both halves are usable.
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,112 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Loads an {@link EmailIndex} with five million made-up emails and reports
+ * its heap footprint, the latency of a lookup and the false positive rate.
+ * Needs no database:
+ *
+ *     javac *.java && java -Xmx1g EmailIndexBenchmark [emails] [set]
+ *
+ * With "set", also reports the footprint of the same emails in a
+ * HashSet, as the index used to keep them (give it -Xmx2g).
+ */
+class EmailIndexBenchmark {
+
+    private static final int LOOKUPS = 1_000_000;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        boolean compareSet = args.length > 1 && args[1].equals("set");
+
+        long before = usedHeap();
+        long start = System.nanoTime();
+        EmailIndex index = new EmailIndex();
+        index.warmUp(() -> emails(0, count), count);
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+        long indexBytes = usedHeap() - before;
+        System.out.printf("%,d emails loaded in %,d ms, index uses %,d KB (%.1f bytes an email)%n",
+            count, buildMillis, indexBytes / 1024, (double) indexBytes / count);
+
+        // Warm the JIT so the timings below are of compiled code
+        for (Iterator<String> it = emails(count, 200_000); it.hasNext(); ) {
+            index.match(it.next());
+        }
+
+        long[] newTimes = new long[LOOKUPS];
+        int falsePositives = 0;
+        Iterator<String> fresh = emails(2 * count, LOOKUPS);
+        for (int i = 0; i < LOOKUPS; i++) {
+            String email = fresh.next();
+            long t = System.nanoTime();
+            EmailIndex.Match match = index.match(email);
+            newTimes[i] = System.nanoTime() - t;
+            falsePositives += match == EmailIndex.Match.NEW ? 0 : 1;
+        }
+        report("new email", newTimes);
+        System.out.printf("false positives: %.2f%% of new emails go on to a lookup by key%n", 100.0 * falsePositives / LOOKUPS);
+
+        long[] knownTimes = new long[LOOKUPS];
+        int missed = 0;
+        Iterator<String> known = emails(0, LOOKUPS);
+        for (int i = 0; i < LOOKUPS; i++) {
+            String email = known.next();
+            long t = System.nanoTime();
+            EmailIndex.Match match = index.match(email);
+            knownTimes[i] = System.nanoTime() - t;
+            missed += match == EmailIndex.Match.NEW ? 1 : 0;
+        }
+        report("loaded email", knownTimes);
+        if (missed > 0) {
+            System.out.println("FAILED: " + missed + " loaded emails were reported as new");
+            System.exit(1);
+        }
+
+        if (compareSet) {
+            index = null;
+            before = usedHeap();
+            Set<String> set = new HashSet<>();
+            for (Iterator<String> it = emails(0, count); it.hasNext(); ) {
+                set.add(EmailIndex.normalize(it.next()));
+            }
+            long setBytes = usedHeap() - before;
+            System.out.printf("HashSet of the same emails uses %,d KB (%.1f bytes an email)%n",
+                setBytes / 1024, (double) setBytes / set.size());
+        }
+        System.out.println("OK");
+    }
+
+    private static Iterator<String> emails(int from, int count) {
+        return new Iterator<String>() {
+            private int next = from;
+
+            @Override
+            public boolean hasNext() {
+                return next < from + count;
+            }
+
+            @Override
+            public String next() {
+                return "student" + next++ + "@example.edu";
+            }
+        };
+    }
+
+    private static void report(String label, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-12s p50 %,d ns  p99 %,d ns  p99.9 %,d ns  max %,d ns%n", label,
+            sorted[sorted.length / 2], sorted[(int) (sorted.length * 0.99)], sorted[(int) (sorted.length * 0.999)],
+            sorted[sorted.length - 1]);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
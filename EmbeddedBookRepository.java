@@ -0,0 +1,18 @@
+/**
+ * {@link BookRepository} over an embedded H2 database file, for branch
+ * offices without a MySQL server. H2 runs in MySQL compatibility mode, so
+ * the SQL of {@link JdbcBookRepository} is reused as is; IGNORECASE makes
+ * titles sort like MySQL's default collation, and AUTO_SERVER lets several
+ * terminals on one machine share the file.
+ */
+class EmbeddedBookRepository extends JdbcBookRepository {
+
+    EmbeddedBookRepository(String path) {
+        super("jdbc:h2:file:" + path + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;IGNORECASE=TRUE;AUTO_SERVER=TRUE", "sa", "");
+    }
+
+    @Override
+    protected int streamingFetchSize() {
+        return 1000; // H2 rejects MySQL's negative streaming hint and streams large results itself
+    }
+}
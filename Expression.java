@@ -0,0 +1,160 @@
+/**
+ * Parsed arithmetic expression, as a tree. Build one with
+ * {@link ExpressionParser#parse}.
+ */
+abstract class Expression {
+
+    /**
+     * Computes the value.
+     *
+     * @throws ArithmeticException on division by zero
+     * @throws IllegalArgumentException if the expression has variables;
+     *         compile it with {@link CompiledExpression} to bind them
+     */
+    abstract double evaluate();
+
+    /**
+     * Functions callable by name, e.g. {@code sqrt(2)} or {@code max(1, 2)}.
+     */
+    enum Function {
+        SQRT("sqrt", 1),
+        ABS("abs", 1),
+        LN("ln", 1),
+        LOG("log", 1),
+        EXP("exp", 1),
+        SIN("sin", 1),
+        COS("cos", 1),
+        TAN("tan", 1),
+        POW("pow", 2),
+        MIN("min", 2),
+        MAX("max", 2);
+
+        final String name;
+        final int arity;
+
+        Function(String name, int arity) {
+            this.name = name;
+            this.arity = arity;
+        }
+
+        static Function named(String name) {
+            for (Function function : values()) {
+                if (function.name.equals(name)) {
+                    return function;
+                }
+            }
+            return null;
+        }
+
+        double apply(double a, double b) {
+            switch (this) {
+                case SQRT: return Math.sqrt(a);
+                case ABS: return Math.abs(a);
+                case LN: return Math.log(a);
+                case LOG: return Math.log10(a);
+                case EXP: return Math.exp(a);
+                case SIN: return Math.sin(a);
+                case COS: return Math.cos(a);
+                case TAN: return Math.tan(a);
+                case POW: return Math.pow(a, b);
+                case MIN: return Math.min(a, b);
+                case MAX: return Math.max(a, b);
+                default: throw new AssertionError(this);
+            }
+        }
+    }
+
+    static final class Number extends Expression {
+        final double value;
+        final String text; // As written, for exact evaluation; null for named constants
+
+        Number(double value) {
+            this(value, null);
+        }
+
+        Number(double value, String text) {
+            this.value = value;
+            this.text = text;
+        }
+
+        @Override
+        double evaluate() {
+            return value;
+        }
+    }
+
+    static final class Variable extends Expression {
+        final String name;
+
+        Variable(String name) {
+            this.name = name;
+        }
+
+        @Override
+        double evaluate() {
+            throw new IllegalArgumentException("No value for variable '" + name + "'");
+        }
+    }
+
+    static final class Negate extends Expression {
+        final Expression operand;
+
+        Negate(Expression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        double evaluate() {
+            return -operand.evaluate();
+        }
+    }
+
+    static final class Binary extends Expression {
+        final char operator;
+        final Expression left;
+        final Expression right;
+
+        Binary(char operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double evaluate() {
+            return apply(operator, left.evaluate(), right.evaluate());
+        }
+
+        static double apply(char operator, double a, double b) {
+            switch (operator) {
+                case '+': return a + b;
+                case '-': return a - b;
+                case '*': return a * b;
+                case '/':
+                    if (b == 0) {
+                        throw new ArithmeticException("Division by zero");
+                    }
+                    return a / b;
+                case '^': return Math.pow(a, b);
+                default: throw new AssertionError(operator);
+            }
+        }
+    }
+
+    static final class Call extends Expression {
+        final Function function;
+        final Expression[] arguments;
+
+        Call(Function function, Expression... arguments) {
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        @Override
+        double evaluate() {
+            double a = arguments[0].evaluate();
+            double b = arguments.length > 1 ? arguments[1].evaluate() : 0;
+            return function.apply(a, b);
+        }
+    }
+}
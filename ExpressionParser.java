@@ -0,0 +1,193 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses calculator input such as {@code 2+3*(4-1)/-2} or
+ * {@code √16 + max(2, 3)^2} into an {@link Expression}.
+ *
+ * A Pratt parser: each operator has a binding power, and an operand is
+ * pulled into whichever neighbouring operator binds tighter. From loosest
+ * to tightest: {@code + -}, {@code * /}, prefix {@code - + √}, and
+ * {@code ^}, which groups to the right. So {@code -2^2} is -4.
+ * Numbers may have an exponent ({@code 1.5E-3}); {@code pi}, {@code e} and
+ * {@code Infinity} are constants. Any other name not followed by '(' is a
+ * variable, bound when a {@link CompiledExpression} is evaluated.
+ */
+final class ExpressionParser {
+
+    private static final int ADDITIVE = 10;
+    private static final int MULTIPLICATIVE = 20;
+    private static final int PREFIX = 30;
+    private static final int POWER = 40;
+
+    private final String text;
+    private int position;
+
+    private ExpressionParser(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text is not a well-formed expression
+     */
+    static Expression parse(String text) {
+        ExpressionParser parser = new ExpressionParser(text);
+        Expression expression = parser.parseExpression(0);
+        parser.skipSpaces();
+        if (parser.position < text.length()) {
+            throw parser.error("Unexpected '" + text.charAt(parser.position) + "'");
+        }
+        return expression;
+    }
+
+    private Expression parseExpression(int minimumBindingPower) {
+        Expression left = parsePrefix();
+        while (true) {
+            skipSpaces();
+            if (position == text.length()) {
+                return left;
+            }
+            char operator = text.charAt(position);
+            int bindingPower = infixBindingPower(operator);
+            if (bindingPower <= minimumBindingPower) {
+                return left; // Not an operator, or it binds looser than the caller's
+            }
+            position++;
+            // Right-associative '^' lets an equal operator on its right bind first
+            Expression right = parseExpression(operator == '^' ? bindingPower - 1 : bindingPower);
+            left = new Expression.Binary(operator, left, right);
+        }
+    }
+
+    private Expression parsePrefix() {
+        skipSpaces();
+        if (position == text.length()) {
+            throw error("Expression ends too early");
+        }
+        char c = text.charAt(position);
+        if (c == '-' || c == '+' || c == '√') {
+            position++;
+            Expression operand = parseExpression(PREFIX);
+            if (c == '-') {
+                return new Expression.Negate(operand);
+            }
+            return c == '√' ? new Expression.Call(Expression.Function.SQRT, operand) : operand;
+        }
+        if (c == '(') {
+            position++;
+            Expression inner = parseExpression(0);
+            expect(')');
+            return inner;
+        }
+        if (Character.isDigit(c) || c == '.') {
+            int start = position;
+            double value = parseNumber();
+            return new Expression.Number(value, text.substring(start, position));
+        }
+        if (Character.isLetter(c)) {
+            return parseName();
+        }
+        throw error("Unexpected '" + c + "'");
+    }
+
+    private double parseNumber() {
+        int start = position;
+        while (position < text.length() && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')) {
+            position++;
+        }
+        // Only an exponent if digits follow the e
+        if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+            int exponent = position + 1;
+            if (exponent < text.length() && (text.charAt(exponent) == '-' || text.charAt(exponent) == '+')) {
+                exponent++;
+            }
+            if (exponent < text.length() && Character.isDigit(text.charAt(exponent))) {
+                position = exponent;
+                while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                    position++;
+                }
+            }
+        }
+        try {
+            return Double.parseDouble(text.substring(start, position));
+        } catch (NumberFormatException ex) {
+            throw error("Bad number '" + text.substring(start, position) + "'");
+        }
+    }
+
+    private Expression parseName() {
+        int start = position;
+        while (position < text.length()
+                && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) {
+            position++;
+        }
+        String name = text.substring(start, position);
+        switch (name) {
+            case "pi":
+                return new Expression.Number(Math.PI);
+            case "e":
+                return new Expression.Number(Math.E);
+            case "Infinity": // As printed by String.valueOf, so results can be chained
+                return new Expression.Number(Double.POSITIVE_INFINITY);
+            default:
+                break;
+        }
+
+        if (peek() != '(') {
+            return new Expression.Variable(name);
+        }
+        Expression.Function function = Expression.Function.named(name);
+        if (function == null) {
+            throw error("Unknown function '" + name + "'");
+        }
+        expect('(');
+        List<Expression> arguments = new ArrayList<>(function.arity);
+        arguments.add(parseExpression(0));
+        while (peek() == ',') {
+            position++;
+            arguments.add(parseExpression(0));
+        }
+        expect(')');
+        if (arguments.size() != function.arity) {
+            throw error(name + " takes " + function.arity + " argument(s)");
+        }
+        return new Expression.Call(function, arguments.toArray(new Expression[0]));
+    }
+
+    private static int infixBindingPower(char operator) {
+        switch (operator) {
+            case '+':
+            case '-':
+                return ADDITIVE;
+            case '*':
+            case '/':
+                return MULTIPLICATIVE;
+            case '^':
+                return POWER;
+            default:
+                return -1;
+        }
+    }
+
+    private char peek() {
+        skipSpaces();
+        return position < text.length() ? text.charAt(position) : 0;
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        position++;
+    }
+
+    private void skipSpaces() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " in \"" + text + "\"");
+    }
+}
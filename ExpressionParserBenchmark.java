@@ -0,0 +1,188 @@
+import java.util.Random;
+
+/**
+ * Generates long random expressions, from a line to a page and more, and
+ * times {@link ExpressionParser#parse} and the evaluation of the tree it
+ * builds, reporting expressions per second and nanoseconds a character.
+ * The expressions mix precedence levels, parentheses, unary minus, powers
+ * and function calls, and each one's value is worked out as it is
+ * generated, so every parse is also checked. Needs no database:
+ *
+ *     javac *.java && java ExpressionParserBenchmark [seconds-per-size]
+ *
+ * Exits with status 1 if an expression parses to a different value than
+ * the one it was generated with.
+ */
+class ExpressionParserBenchmark {
+
+    private static final int[] TERMS = {4, 40, 400, 4_000};
+    private static final int SAMPLES = 64;
+    private static final int MAX_DEPTH = 8;
+
+    private static volatile double sink; // Where the values go, so evaluation isn't optimized away
+
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 2;
+        Random random = new Random(17);
+
+        for (int round = 0; round < 2; round++) { // The first round warms the JIT
+            for (int terms : TERMS) {
+                String[] texts = new String[SAMPLES];
+                double[] values = new double[SAMPLES];
+                long chars = 0;
+                for (int i = 0; i < SAMPLES; i++) {
+                    Generator generator = new Generator(random);
+                    values[i] = generator.sum(terms, 0);
+                    texts[i] = generator.text.toString();
+                    chars += texts[i].length();
+                }
+
+                for (int i = 0; i < SAMPLES; i++) {
+                    double parsed = ExpressionParser.parse(texts[i]).evaluate();
+                    if (Double.compare(parsed, values[i]) != 0) {
+                        System.out.println("FAILED: " + shorten(texts[i]) + " evaluates to " + parsed
+                            + ", it was generated as " + values[i]);
+                        System.exit(1);
+                    }
+                }
+
+                long parseNanos = 0;
+                long evaluateNanos = 0;
+                long passes = 0;
+                long deadline = System.nanoTime() + (long) (seconds * (round == 0 ? 0.25 : 1) * 1e9);
+                while (System.nanoTime() < deadline) {
+                    for (String text : texts) {
+                        long start = System.nanoTime();
+                        Expression expression = ExpressionParser.parse(text);
+                        long parsed = System.nanoTime();
+                        sink = expression.evaluate();
+                        parseNanos += parsed - start;
+                        evaluateNanos += System.nanoTime() - parsed;
+                    }
+                    passes++;
+                }
+                if (round == 1) {
+                    long expressions = passes * SAMPLES;
+                    long characters = passes * chars;
+                    System.out.printf("%,6d chars on average  %,10.0f expressions/s  parse %6.1f ns a char  "
+                            + "evaluate %6.1f ns a char%n", chars / SAMPLES,
+                        expressions / ((parseNanos + evaluateNanos) / 1e9), (double) parseNanos / characters,
+                        (double) evaluateNanos / characters);
+                }
+            }
+        }
+        System.out.println("All " + TERMS.length * SAMPLES * 2 + " expressions evaluate to the values they were generated with");
+        System.out.println("OK");
+    }
+
+    private static String shorten(String text) {
+        return text.length() <= 80 ? text : text.substring(0, 77) + "...";
+    }
+
+    /**
+     * Writes a random expression and computes its value alongside, in the
+     * order the parser's precedence and associativity say it must be
+     * evaluated.
+     */
+    private static final class Generator {
+        final StringBuilder text = new StringBuilder();
+        private final Random random;
+
+        Generator(Random random) {
+            this.random = random;
+        }
+
+        /**
+         * Terms joined by + and -, evaluated left to right.
+         */
+        double sum(int terms, int depth) {
+            double value = product(depth);
+            for (int i = 1; i < terms; i++) {
+                boolean plus = random.nextBoolean();
+                text.append(plus ? " + " : " - ");
+                double term = product(depth);
+                value = plus ? value + term : value - term;
+            }
+            return value;
+        }
+
+        /**
+         * Factors joined by * and /, evaluated left to right. Divisors are
+         * plain numbers, which are never zero.
+         */
+        private double product(int depth) {
+            double value = factor(depth);
+            for (int i = random.nextInt(3); i > 0; i--) {
+                if (random.nextBoolean()) {
+                    text.append('*');
+                    value *= factor(depth);
+                } else {
+                    text.append('/');
+                    value /= number();
+                }
+            }
+            return value;
+        }
+
+        private double factor(int depth) {
+            int choice = random.nextInt(10);
+            if (choice >= 5 && (depth == MAX_DEPTH || random.nextInt(2 + 2 * depth) != 0)) {
+                choice = 0; // Nest less the deeper it gets, so the size stays near the terms asked for
+            }
+            if (choice < 3) {
+                return number();
+            }
+            if (choice == 3) {
+                text.append('-'); // Binds looser than ^, so -2^2 is -(2^2)
+                return -power();
+            }
+            if (choice == 4) {
+                return power();
+            }
+            if (choice < 7) {
+                text.append('(');
+                double value = sum(2 + random.nextInt(3), depth + 1);
+                text.append(')');
+                return value;
+            }
+            if (choice == 7) {
+                text.append("sqrt(abs(");
+                double value = Math.sqrt(Math.abs(sum(2, depth + 1)));
+                text.append("))");
+                return value;
+            }
+            if (choice == 8) {
+                text.append("abs(");
+                double value = Math.abs(sum(2, depth + 1));
+                text.append(')');
+                return value;
+            }
+            text.append("max(");
+            double a = sum(2, depth + 1);
+            text.append(", ");
+            double b = sum(2, depth + 1);
+            text.append(')');
+            return Math.max(a, b);
+        }
+
+        /**
+         * A number to a small power; {@code ^} groups to the right.
+         */
+        private double power() {
+            double base = number();
+            text.append('^');
+            int exponent = 1 + random.nextInt(3);
+            text.append(exponent);
+            if (random.nextInt(4) == 0) {
+                text.append("^1"); // 2^3^1 is 2^(3^1), not (2^3)^1
+            }
+            return Math.pow(base, exponent);
+        }
+
+        private double number() {
+            String number = (1 + random.nextInt(99)) + (random.nextBoolean() ? "." + random.nextInt(10) : "");
+            text.append(number);
+            return Double.parseDouble(number);
+        }
+    }
+}
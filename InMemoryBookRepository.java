@@ -0,0 +1,211 @@
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * {@link BookRepository} held entirely in memory, for running offline and for
+ * exercising the GUI logic at scale without a database.
+ *
+ * Ids are dense, so books, open loans and the change feed live in arrays
+ * indexed by id or sequence rather than boxed maps. A sorted list gives the
+ * (title, id) order for paging, with titles compared ignoring case as the
+ * databases' collations do. Nothing survives a restart.
+ */
+class InMemoryBookRepository implements BookRepository {
+
+    private static final Comparator<Book> ORDER =
+        Comparator.comparing(Book::getTitle, String.CASE_INSENSITIVE_ORDER).thenComparingInt(Book::getId);
+
+    // All fields guarded by this
+    private Book[] byId = new Book[1024]; // Slot 0 unused; ids start at 1
+    private int maxId = 0;
+    private List<Book> ordered = new ArrayList<>();
+    private String[] loanMembers = new String[1024]; // Open loan per book id, or null
+    private LocalDate[] loanDueDates = new LocalDate[1024];
+    private int[] changeLog = new int[1024]; // Book id changed at each sequence - 1
+    private int changeCount = 0;
+
+    @Override
+    public void initialize() {
+        // Nothing to create
+    }
+
+    @Override
+    public synchronized int count() {
+        return ordered.size();
+    }
+
+    @Override
+    public synchronized int maxId() {
+        return maxId;
+    }
+
+    @Override
+    public synchronized List<Book> page(Book after, int offset, int limit) {
+        int start = after != null ? insertionPoint(after) : offset;
+        if (after != null && start < ordered.size() && ordered.get(start).getId() == after.getId()) {
+            start++; // Seek past the key itself
+        }
+        int end = Math.min(ordered.size(), start + limit);
+        return start >= end ? new ArrayList<>() : new ArrayList<>(ordered.subList(start, end));
+    }
+
+    @Override
+    public synchronized int positionOf(Book book) {
+        return insertionPoint(book);
+    }
+
+    @Override
+    public synchronized List<Book> findByIds(Collection<Integer> ids) {
+        List<Book> books = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            if (id > 0 && id <= maxId && byId[id] != null) {
+                books.add(byId[id]);
+            }
+        }
+        books.sort(ORDER);
+        return books;
+    }
+
+    @Override
+    public void forEach(Consumer<Book> action) {
+        List<Book> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(ordered);
+        }
+        snapshot.forEach(action);
+    }
+
+    @Override
+    public synchronized Book add(String title, String author) {
+        Book book = insert(title, author);
+        ordered.add(insertionPoint(book), book);
+        recordChange(book.getId());
+        return book;
+    }
+
+    @Override
+    public synchronized void addAll(List<String[]> rows) {
+        List<Book> added = new ArrayList<>(rows.size());
+        for (String[] row : rows) {
+            added.add(insert(row[0], row[1]));
+        }
+        added.sort(ORDER);
+
+        // One pass copying the runs between insertion points, instead of shifting the list per row
+        List<Book> merged = new ArrayList<>(ordered.size() + added.size());
+        int from = 0;
+        for (Book book : added) {
+            int at = insertionPoint(book);
+            merged.addAll(ordered.subList(from, at));
+            merged.add(book);
+            from = at;
+        }
+        merged.addAll(ordered.subList(from, ordered.size()));
+        ordered = merged;
+    }
+
+    @Override
+    public synchronized void recordCatalogReload() {
+        recordChange(BookChangeFeed.CATALOG_RELOAD);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Boolean> issue(int bookId, String memberId, LocalDate dueDate) {
+        Book book = bookId > 0 && bookId <= maxId ? byId[bookId] : null;
+        if (book == null || book.isIssued()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        replace(book, new Book(bookId, book.getTitle(), book.getAuthor(), true));
+        loanMembers[bookId] = memberId;
+        loanDueDates[bookId] = dueDate;
+        recordChange(bookId);
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Boolean> returnBook(int bookId) {
+        Book book = bookId > 0 && bookId <= maxId ? byId[bookId] : null;
+        if (book == null || !book.isIssued()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        replace(book, new Book(bookId, book.getTitle(), book.getAuthor(), false));
+        loanMembers[bookId] = null;
+        loanDueDates[bookId] = null;
+        recordChange(bookId);
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public synchronized List<LoanLedger.OverdueLoan> findOverdue(LocalDate today) {
+        List<LoanLedger.OverdueLoan> overdue = new ArrayList<>();
+        for (int id = 1; id <= maxId; id++) {
+            LocalDate due = loanDueDates[id];
+            if (due != null && due.isBefore(today)) {
+                overdue.add(new LoanLedger.OverdueLoan(byId[id].getTitle(), loanMembers[id], due,
+                    ChronoUnit.DAYS.between(due, today)));
+            }
+        }
+        overdue.sort(Comparator.comparing(loan -> loan.dueDate));
+        return overdue;
+    }
+
+    @Override
+    public synchronized long latestChange() {
+        return changeCount;
+    }
+
+    @Override
+    public synchronized Map<Integer, Long> changedSince(long since, int lookback, long until) {
+        Map<Integer, Long> changed = new HashMap<>();
+        for (long seq = Math.max(since - lookback, 0) + 1; seq <= Math.min(until, changeCount); seq++) {
+            changed.put(changeLog[(int) seq - 1], seq); // Later sequences overwrite earlier ones
+        }
+        return changed;
+    }
+
+    /**
+     * Gives the book an id; the caller places it in the ordered list.
+     */
+    private Book insert(String title, String author) {
+        int id = ++maxId;
+        if (id >= byId.length) {
+            int capacity = byId.length * 2;
+            byId = Arrays.copyOf(byId, capacity);
+            loanMembers = Arrays.copyOf(loanMembers, capacity);
+            loanDueDates = Arrays.copyOf(loanDueDates, capacity);
+        }
+        Book book = new Book(id, title, author, false);
+        byId[id] = book;
+        return book;
+    }
+
+    private void replace(Book current, Book updated) {
+        byId[updated.getId()] = updated;
+        ordered.set(insertionPoint(current), updated);
+    }
+
+    private void recordChange(int bookId) {
+        if (changeCount == changeLog.length) {
+            changeLog = Arrays.copyOf(changeLog, changeCount * 2);
+        }
+        changeLog[changeCount++] = bookId;
+    }
+
+    /**
+     * Index of {@code book} in the ordered list, or where it would go.
+     */
+    private int insertionPoint(Book book) {
+        int index = Collections.binarySearch(ordered, book, ORDER);
+        return index >= 0 ? index : -index - 1;
+    }
+}
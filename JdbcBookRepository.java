@@ -0,0 +1,290 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * {@link BookRepository} over a MySQL database, through a {@link ConnectionPool}.
+ * Subclasses can point it at other SQL engines by overriding the
+ * dialect hooks.
+ */
+class JdbcBookRepository implements BookRepository {
+
+    private static final String DB_URL = "jdbc:mysql://localhost:3306/library_db?rewriteBatchedStatements=true";
+    private static final String USER = "root";
+    private static final String PASS = "password";
+
+    // Sized for the GUI's database threads, the loan ledger writer and a spare
+    private static final int MIN_CONNECTIONS = 1;
+    private static final int MAX_CONNECTIONS = 4;
+    private static final long IDLE_TIMEOUT_MILLIS = 60_000L;
+
+    private static final String BOOK_COLUMNS = "SELECT id, title, author, is_issued FROM books ";
+    private static final String INSERT_SQL = "INSERT INTO books (title, author) VALUES (?, ?)";
+
+    private final ConnectionPool pool;
+    private final LoanLedger loanLedger;
+
+    JdbcBookRepository() {
+        this(DB_URL, USER, PASS);
+    }
+
+    protected JdbcBookRepository(String url, String user, String password) {
+        pool = new ConnectionPool(url, user, password, MIN_CONNECTIONS, MAX_CONNECTIONS, IDLE_TIMEOUT_MILLIS);
+        loanLedger = new LoanLedger(pool);
+    }
+
+    // --- Dialect hooks ---
+
+    /**
+     * Creates the 'books' table if it doesn't exist, and adds the paging
+     * index to tables created by older versions.
+     */
+    protected void createBooksTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            String sql = "CREATE TABLE IF NOT EXISTS books (" +
+                         "id INT PRIMARY KEY AUTO_INCREMENT, " +
+                         "title VARCHAR(255) NOT NULL, " +
+                         "author VARCHAR(255) NOT NULL, " +
+                         "is_issued BOOLEAN DEFAULT FALSE, " +
+                         "INDEX idx_books_title (title))";
+            stmt.executeUpdate(sql);
+
+            // Keyset paging walks (title, id); InnoDB appends the primary key to the title index
+            boolean hasTitleIndex = false;
+            try (ResultSet indexes = conn.getMetaData().getIndexInfo(null, null, "books", false, false)) {
+                while (indexes.next()) {
+                    hasTitleIndex |= "idx_books_title".equalsIgnoreCase(indexes.getString("INDEX_NAME"));
+                }
+            }
+            if (!hasTitleIndex) {
+                stmt.executeUpdate("CREATE INDEX idx_books_title ON books (title)");
+            }
+        }
+    }
+
+    /**
+     * Fetch size that makes the driver stream a large result set instead of
+     * buffering it. MySQL's driver only streams on this magic value.
+     */
+    protected int streamingFetchSize() {
+        return Integer.MIN_VALUE;
+    }
+
+    // --- BookRepository ---
+
+    @Override
+    public void initialize() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            createBooksTable(conn);
+            LoanLedger.createTables(conn);
+            BookChangeFeed.createTables(conn);
+        }
+    }
+
+    @Override
+    public int count() throws SQLException {
+        return queryInt("SELECT COUNT(*) FROM books");
+    }
+
+    @Override
+    public int maxId() throws SQLException {
+        return queryInt("SELECT COALESCE(MAX(id), 0) FROM books");
+    }
+
+    /**
+     * Seeks past {@code after} when it is known, and falls back to an offset
+     * when jumping straight to a page further down.
+     */
+    @Override
+    public List<Book> page(Book after, int offset, int limit) throws SQLException {
+        String sql;
+        if (after != null) {
+            sql = BOOK_COLUMNS + "WHERE title > ? OR (title = ? AND id > ?) ORDER BY title, id LIMIT ?";
+        } else if (offset == 0) {
+            sql = BOOK_COLUMNS + "ORDER BY title, id LIMIT ?";
+        } else {
+            sql = BOOK_COLUMNS + "ORDER BY title, id LIMIT ? OFFSET ?";
+        }
+
+        List<Book> rows = new ArrayList<>(limit);
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (after != null) {
+                pstmt.setString(1, after.getTitle());
+                pstmt.setString(2, after.getTitle());
+                pstmt.setInt(3, after.getId());
+                pstmt.setInt(4, limit);
+            } else {
+                pstmt.setInt(1, limit);
+                if (offset > 0) {
+                    pstmt.setInt(2, offset);
+                }
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(readBook(rs));
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public int positionOf(Book book) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM books WHERE title < ? OR (title = ? AND id < ?)";
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, book.getTitle());
+            pstmt.setString(2, book.getTitle());
+            pstmt.setInt(3, book.getId());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    @Override
+    public List<Book> findByIds(Collection<Integer> ids) throws SQLException {
+        List<Book> books = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) {
+            return books;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        String sql = BOOK_COLUMNS + "WHERE id IN (" + placeholders + ") ORDER BY title, id";
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int parameter = 1;
+            for (Integer id : ids) {
+                pstmt.setInt(parameter++, id);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    books.add(readBook(rs));
+                }
+            }
+        }
+        return books;
+    }
+
+    @Override
+    public void forEach(Consumer<Book> action) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(streamingFetchSize());
+            try (ResultSet rs = stmt.executeQuery(BOOK_COLUMNS)) {
+                while (rs.next()) {
+                    action.accept(readBook(rs));
+                }
+            }
+        }
+    }
+
+    @Override
+    public Book add(String title, String author) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                pstmt.setString(1, title);
+                pstmt.setString(2, author);
+                pstmt.executeUpdate();
+                int id;
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    keys.next();
+                    id = keys.getInt(1);
+                }
+                BookChangeFeed.record(conn, id); // Tell the other terminals
+                conn.commit();
+                return new Book(id, title, author, false);
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            }
+        }
+    }
+
+    @Override
+    public void addAll(List<String[]> rows) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                for (String[] row : rows) {
+                    pstmt.setString(1, row[0]);
+                    pstmt.setString(2, row[1]);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            }
+        }
+    }
+
+    @Override
+    public void recordCatalogReload() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            BookChangeFeed.recordCatalogReload(conn);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> issue(int bookId, String memberId, LocalDate dueDate) {
+        return loanLedger.issue(bookId, memberId, dueDate);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> returnBook(int bookId) {
+        return loanLedger.returnBook(bookId);
+    }
+
+    @Override
+    public List<LoanLedger.OverdueLoan> findOverdue(LocalDate today) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            return LoanLedger.findOverdue(conn, today);
+        }
+    }
+
+    @Override
+    public long latestChange() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            return BookChangeFeed.latestSequence(conn);
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> changedSince(long since, int lookback, long until) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            return BookChangeFeed.changedSince(conn, since, lookback, until);
+        }
+    }
+
+    private int queryInt(String sql) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static Book readBook(ResultSet rs) throws SQLException {
+        return new Book(
+            rs.getInt("id"),
+            rs.getString("title"),
+            rs.getString("author"),
+            rs.getBoolean("is_issued")
+        );
+    }
+}
@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Measures the {@link TransactionJournal} three ways. First, threads make
+ * deposits and withdrawals that each wait until their record is on disk,
+ * as the bank app's do, and it reports records per second and the latency
+ * of each change. Then one thread appends records without waiting, to show
+ * what the segments take before any flush. Last, it copies the journal
+ * directory as a crash would leave it, recovers a fresh registry from the
+ * copy, and reports how long that took. Needs no database:
+ *
+ *     javac *.java && java JournalBenchmark [threads] [seconds] [appends] [journal-dir]
+ *
+ * The journal goes in a temporary directory unless one is given; put it on
+ * the disk you mean to measure. Exits with status 1 if a recovered balance
+ * differs from the one the bank held.
+ */
+class JournalBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final long OPENING_CENTS = 1_000_000L;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        int appends = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+        Path directory = args.length > 3 ? Paths.get(args[3]) : Files.createTempDirectory("journal-bench");
+        Path live = directory.resolve("live");
+        Path crashed = directory.resolve("crashed");
+
+        AccountRegistry registry = new AccountRegistry(ACCOUNTS);
+        String[] numbers = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            numbers[i] = String.format("J%06d", i);
+            registry.open(numbers[i], "Holder " + i, OPENING_CENTS); // Before the journal, so the first snapshot holds them
+        }
+        TransactionJournal journal = TransactionJournal.open(live, registry);
+
+        durable(registry, numbers, threads, 1, false); // Warm the JIT
+        durable(registry, numbers, threads, seconds, true);
+
+        long[] latencies = new long[appends];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long last = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < appends; i++) {
+            BankAccount account = registry.find(numbers[random.nextInt(ACCOUNTS)]);
+            long cents = 1 + random.nextInt(1_000);
+            long t = System.nanoTime();
+            last = journal.append(TransactionJournal.DEPOSIT, account.getAccountNumber(), cents, null);
+            account.credit(cents);
+            latencies[i] = System.nanoTime() - t;
+        }
+        long appended = System.nanoTime() - start;
+        journal.awaitDurable(last);
+        long flushed = System.nanoTime() - start;
+        report(String.format("appends, %,d records", appends), appends, appended, latencies);
+        System.out.printf("%-28s all durable after %,d ms%n", "", flushed / 1_000_000);
+
+        // What a crash leaves: the snapshot and the segments, not yet folded into a new snapshot
+        Files.createDirectories(crashed);
+        long segmentBytes = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(live, "{journal-*.log,snapshot.dat}")) {
+            for (Path file : files) {
+                Files.copy(file, crashed.resolve(file.getFileName()));
+                segmentBytes += file.getFileName().toString().startsWith("journal-") ? Files.size(file) : 0;
+            }
+        }
+        long[] balances = new long[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            balances[i] = registry.find(numbers[i]).getBalanceCents();
+        }
+        journal.close();
+
+        AccountRegistry recovered = new AccountRegistry(ACCOUNTS);
+        start = System.nanoTime();
+        TransactionJournal reopened = TransactionJournal.open(crashed, recovered);
+        long recovery = System.nanoTime() - start;
+        System.out.printf("recovery from %,d MB of segments: %,d ms%n", segmentBytes >> 20, recovery / 1_000_000);
+        reopened.close();
+
+        String failure = null;
+        for (int i = 0; i < ACCOUNTS && failure == null; i++) {
+            BankAccount account = recovered.find(numbers[i]);
+            long balance = account == null ? -1 : account.getBalanceCents();
+            if (balance != balances[i]) {
+                failure = numbers[i] + " recovers to " + balance + " cents, the bank held " + balances[i];
+            }
+        }
+        if (args.length <= 3) {
+            delete(directory);
+        }
+        if (failure != null) {
+            System.out.println("FAILED: " + failure);
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Has {@code threads} threads deposit and withdraw at random for
+     * {@code seconds}, each change durable before the next.
+     */
+    private static void durable(AccountRegistry registry, String[] numbers, int threads, long seconds, boolean report)
+            throws InterruptedException {
+        long[][] latencies = new long[threads][];
+        int[] counts = new int[threads];
+        CountDownLatch go = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long[] mine = new long[1 << 16];
+                int count = 0;
+                try {
+                    go.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                while (System.nanoTime() < deadline[0]) {
+                    BankAccount account = registry.find(numbers[random.nextInt(numbers.length)]);
+                    long cents = 1 + random.nextInt(1_000);
+                    long start = System.nanoTime();
+                    if (random.nextBoolean()) {
+                        account.deposit(cents);
+                    } else {
+                        account.withdraw(cents);
+                    }
+                    if (count == mine.length) {
+                        mine = Arrays.copyOf(mine, count * 2);
+                    }
+                    mine[count++] = System.nanoTime() - start;
+                }
+                latencies[worker] = mine;
+                counts[worker] = count;
+            }, "journal-bench-" + t);
+            workers.add(thread);
+            thread.start();
+        }
+        long start = System.nanoTime();
+        deadline[0] = start + seconds * 1_000_000_000L;
+        go.countDown();
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int at = 0;
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(latencies[t], 0, all, at, counts[t]);
+            at += counts[t];
+        }
+        if (report) {
+            report(String.format("durable changes, %d threads", threads), total, elapsed, all);
+        }
+    }
+
+    private static void report(String label, int records, long nanos, long[] latencies) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-28s %,10.0f records/s  p50 %,9.1f us  p99 %,9.1f us  max %,9.1f us%n", label,
+            records / (nanos / 1e9), sorted[sorted.length / 2] / 1e3, sorted[(int) (sorted.length * 0.99)] / 1e3,
+            sorted[sorted.length - 1] / 1e3);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.forEach(paths::add);
+        }
+        for (int i = paths.size() - 1; i >= 0; i--) {
+            Files.delete(paths.get(i)); // Children before their directory
+        }
+    }
+}
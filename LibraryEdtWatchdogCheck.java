@@ -0,0 +1,351 @@
+import javax.swing.*;
+import java.awt.*;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Clicks through the library window against a deliberately slow repository
+ * while a watchdog measures how late the Event Dispatch Thread runs a
+ * heartbeat posted every few milliseconds. Every repository call sleeps
+ * longer than the budget, so a single one made on the EDT fails the check.
+ *
+ * Refresh, search, scrolling (page loads), add, issue, return and the
+ * overdue report are driven; dialogs are answered as they appear. Needs a
+ * display, but no user; on a server run it under a virtual one:
+ *
+ *     javac *.java && xvfb-run java LibraryEdtWatchdogCheck [seconds] [delayMillis] [budgetMillis]
+ *
+ * Exits with status 1 if the EDT was ever blocked for longer than the budget.
+ */
+class LibraryEdtWatchdogCheck {
+
+    private static final int BOOKS = 5_000;
+    private static final long WARM_UP_MILLIS = 2_000; // Look and feel loading and the first layout
+
+    public static void main(String[] args) throws Exception {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 20;
+        long delayMillis = args.length > 1 ? Long.parseLong(args[1]) : 300;
+        long budgetMillis = args.length > 2 ? Long.parseLong(args[2]) : 100;
+        if (GraphicsEnvironment.isHeadless()) {
+            System.out.println("No display; run it under xvfb-run");
+            System.exit(2);
+        }
+
+        InMemoryBookRepository books = new InMemoryBookRepository();
+        List<String[]> rows = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            rows.add(new String[] {"Title " + i, "Author " + (i % 97)});
+        }
+        books.addAll(rows);
+        for (int id = 1; id <= 20; id++) {
+            books.issue(id, "M-" + id, LocalDate.now().minusDays(id)); // Something for the overdue report
+        }
+
+        LibraryManagementSystemGUI[] window = new LibraryManagementSystemGUI[1];
+        SwingUtilities.invokeAndWait(() -> {
+            window[0] = new LibraryManagementSystemGUI(new SlowRepository(books, delayMillis));
+            window[0].setVisible(true);
+        });
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Watchdog watchdog = new Watchdog(running);
+        watchdog.start();
+        Thread answerer = new Thread(() -> answerDialogs(running), "dialog-answerer");
+        answerer.setDaemon(true);
+        answerer.start();
+
+        JList<?> list = find(window[0], JList.class);
+        JTextField search = find(window[0], JTextField.class);
+        Random random = new Random(1);
+        long deadline = System.currentTimeMillis() + seconds * 1000;
+        int actions = 0;
+        while (System.currentTimeMillis() < deadline) {
+            int action = random.nextInt(7);
+            SwingUtilities.invokeAndWait(() -> {
+                switch (action) {
+                    case 0:
+                        click(window[0], "Refresh");
+                        break;
+                    case 1:
+                        search.setText("Title " + random.nextInt(BOOKS / 10));
+                        break;
+                    case 2:
+                        search.setText("");
+                        break;
+                    case 3:
+                    case 4:
+                        int row = random.nextInt(Math.max(1, list.getModel().getSize()));
+                        list.setSelectedIndex(row);
+                        list.ensureIndexIsVisible(row);
+                        break;
+                    case 5:
+                        click(window[0], random.nextBoolean() ? "Issue Book" : "Return Book");
+                        break;
+                    default:
+                        click(window[0], random.nextBoolean() ? "Overdue" : "Add Book");
+                        break;
+                }
+            });
+            actions++;
+            Thread.sleep(50 + random.nextInt(100));
+        }
+        running.set(false);
+        watchdog.join();
+
+        long[] lags = watchdog.lags();
+        Arrays.sort(lags);
+        long worst = lags.length == 0 ? 0 : lags[lags.length - 1];
+        System.out.printf("%d actions, %d heartbeats, EDT lag p50 %d ms, p99 %d ms, max %d ms (budget %d ms, each call %d ms)%n",
+            actions, lags.length, percentile(lags, 0.50), percentile(lags, 0.99), worst, budgetMillis, delayMillis);
+        if (lags.length == 0 || worst > budgetMillis) {
+            System.out.println("FAILED: the EDT was blocked for " + worst + " ms");
+            System.exit(1);
+        }
+        System.out.println("OK");
+        System.exit(0);
+    }
+
+    /**
+     * Posts a heartbeat to the EDT, waits for it to run and records how late
+     * it was, over and over.
+     */
+    private static final class Watchdog extends Thread {
+        private final AtomicBoolean running;
+        private final List<Long> lags = new ArrayList<>();
+
+        Watchdog(AtomicBoolean running) {
+            super("edt-watchdog");
+            this.running = running;
+        }
+
+        @Override
+        public void run() {
+            long start = System.currentTimeMillis();
+            try {
+                while (running.get()) {
+                    long posted = System.nanoTime();
+                    CountDownLatch ran = new CountDownLatch(1);
+                    long[] lag = new long[1];
+                    EventQueue.invokeLater(() -> {
+                        lag[0] = (System.nanoTime() - posted) / 1_000_000;
+                        ran.countDown();
+                    });
+                    ran.await();
+                    if (System.currentTimeMillis() - start > WARM_UP_MILLIS) {
+                        lags.add(lag[0]);
+                    }
+                    Thread.sleep(5);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        long[] lags() {
+            return lags.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    /**
+     * Fills in and confirms whatever dialog the last action opened: empty
+     * text fields get a value, then OK or Yes is pressed. A dialog without
+     * either is closed.
+     */
+    private static void answerDialogs(AtomicBoolean running) {
+        int answered = 0;
+        while (running.get()) {
+            int n = answered;
+            try {
+                SwingUtilities.invokeAndWait(() -> {
+                    for (Window window : Window.getWindows()) {
+                        if (window instanceof JDialog && window.isShowing()) {
+                            fill(window, "Watchdog " + n);
+                            if (!click((Container) window, "OK") && !click((Container) window, "Yes")) {
+                                window.dispose();
+                            }
+                        }
+                    }
+                });
+                answered++;
+                Thread.sleep(100);
+            } catch (Exception ex) {
+                return;
+            }
+        }
+    }
+
+    private static void fill(Container container, String text) {
+        for (Component component : container.getComponents()) {
+            if (component instanceof JTextField && ((JTextField) component).getText().isEmpty()) {
+                ((JTextField) component).setText(text);
+            } else if (component instanceof Container) {
+                fill((Container) component, text);
+            }
+        }
+    }
+
+    /**
+     * Presses the button labelled {@code text}, if there is one.
+     */
+    private static boolean click(Container container, String text) {
+        List<JButton> found = new ArrayList<>();
+        forEach(container, JButton.class, button -> {
+            if (text.equals(button.getText())) {
+                found.add(button);
+            }
+        });
+        found.forEach(JButton::doClick);
+        return !found.isEmpty();
+    }
+
+    private static <T extends Component> T find(Container container, Class<T> type) {
+        List<T> found = new ArrayList<>();
+        forEach(container, type, found::add);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    private static <T extends Component> void forEach(Container container, Class<T> type, Consumer<T> action) {
+        for (Component component : container.getComponents()) {
+            if (type.isInstance(component)) {
+                action.accept(type.cast(component));
+            }
+            if (component instanceof Container) {
+                forEach((Container) component, type, action);
+            }
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+
+    /**
+     * The in-memory repository, with every call taking {@code delayMillis}
+     * as a database round trip on a bad day would.
+     */
+    private static final class SlowRepository implements BookRepository {
+        private final BookRepository books;
+        private final long delayMillis;
+
+        SlowRepository(BookRepository books, long delayMillis) {
+            this.books = books;
+            this.delayMillis = delayMillis;
+        }
+
+        private void roundTrip() {
+            if (SwingUtilities.isEventDispatchThread()) {
+                System.out.println("Repository called on the EDT:");
+                Thread.dumpStack();
+            }
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt(); // A cancelled refresh
+            }
+        }
+
+        @Override
+        public void initialize() throws SQLException {
+            roundTrip();
+            books.initialize();
+        }
+
+        @Override
+        public int count() throws SQLException {
+            roundTrip();
+            return books.count();
+        }
+
+        @Override
+        public int maxId() throws SQLException {
+            roundTrip();
+            return books.maxId();
+        }
+
+        @Override
+        public List<Book> page(Book after, int offset, int limit) throws SQLException {
+            roundTrip();
+            return books.page(after, offset, limit);
+        }
+
+        @Override
+        public int positionOf(Book book) throws SQLException {
+            roundTrip();
+            return books.positionOf(book);
+        }
+
+        @Override
+        public List<Book> findByIds(Collection<Integer> ids) throws SQLException {
+            roundTrip();
+            return books.findByIds(ids);
+        }
+
+        @Override
+        public void forEach(Consumer<Book> action) throws SQLException {
+            roundTrip();
+            books.forEach(action);
+        }
+
+        @Override
+        public Book add(String title, String author) throws SQLException {
+            roundTrip();
+            return books.add(title, author);
+        }
+
+        @Override
+        public void addAll(List<String[]> rows) throws SQLException {
+            roundTrip();
+            books.addAll(rows);
+        }
+
+        @Override
+        public void recordCatalogReload() throws SQLException {
+            roundTrip();
+            books.recordCatalogReload();
+        }
+
+        @Override
+        public CompletableFuture<Boolean> issue(int bookId, String memberId, LocalDate dueDate) {
+            return CompletableFuture.supplyAsync(() -> {
+                roundTrip();
+                return books.issue(bookId, memberId, dueDate).join();
+            });
+        }
+
+        @Override
+        public CompletableFuture<Boolean> returnBook(int bookId) {
+            return CompletableFuture.supplyAsync(() -> {
+                roundTrip();
+                return books.returnBook(bookId).join();
+            });
+        }
+
+        @Override
+        public List<LoanLedger.OverdueLoan> findOverdue(LocalDate today) throws SQLException {
+            roundTrip();
+            return books.findOverdue(today);
+        }
+
+        @Override
+        public long latestChange() throws SQLException {
+            roundTrip();
+            return books.latestChange();
+        }
+
+        @Override
+        public Map<Integer, Long> changedSince(long since, int lookback, long until) throws SQLException {
+            roundTrip();
+            return books.changedSince(since, lookback, until);
+        }
+    }
+}
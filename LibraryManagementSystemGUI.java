@@ -1,411 +1,1352 @@
-import javax.swing.*;
-import javax.swing.border.Border;
-import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.JTableHeader;
-import java.awt.*;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
-import java.sql.*;
-
-public class LibraryManagementSystemGUI extends JFrame {
-
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/library_db";
-    private static final String USER = "root";
-    private static final String PASS = "password";
-    
-    // Replaced JTable/TableModel with JList/ListModel
-    private DefaultListModel<Book> listModel;
-    private JList<Book> bookList;
-
-    /**
-     * Data class to hold book information.
-     */
-    private static class Book {
-        private final int id;
-        private final String title;
-        private final String author;
-        private final boolean isIssued;
-
-        public Book(int id, String title, String author, boolean isIssued) {
-            this.id = id;
-            this.title = title;
-            this.author = author;
-            this.isIssued = isIssued;
-        }
-
-        public int getId() { return id; }
-        public String getTitle() { return title; }
-        public String getAuthor() { return author; }
-        public boolean isIssued() { return isIssued; }
-        
-        @Override
-        public String toString() {
-            return title + " by " + author;
-        }
-    }
-    
-    /**
-     * Custom renderer to display a Book object as an "icon" card.
-     */
-    private static class BookCellRenderer extends JPanel implements ListCellRenderer<Book> {
-        private final JLabel iconLabel;
-        private final JLabel titleLabel;
-        private final JLabel authorLabel;
-        private final JLabel statusLabel;
-        private final Border selectedBorder = BorderFactory.createLineBorder(UIManager.getColor("List.selectionBackground"), 2);
-
-        public BookCellRenderer() {
-            // Set up the card panel
-            setLayout(new BorderLayout(5, 5));
-            setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(Color.GRAY, 1),
-                new EmptyBorder(5, 5, 5, 5) // Internal padding
-            ));
-            setOpaque(true);
-
-            // Icon in the center (using a book emoji)
-            iconLabel = new JLabel("📖");
-            iconLabel.setFont(new Font("SansSerif", Font.PLAIN, 48));
-            iconLabel.setHorizontalAlignment(SwingConstants.CENTER);
-            add(iconLabel, BorderLayout.CENTER);
-
-            // Panel for text info at the bottom
-            JPanel textPanel = new JPanel(new GridLayout(3, 1));
-            textPanel.setOpaque(false); // Make it transparent
-            
-            titleLabel = new JLabel();
-            titleLabel.setFont(new Font("SansSerif", Font.BOLD, 12));
-            titleLabel.setHorizontalAlignment(SwingConstants.CENTER);
-            
-            authorLabel = new JLabel();
-            authorLabel.setFont(new Font("SansSerif", Font.ITALIC, 11));
-            authorLabel.setHorizontalAlignment(SwingConstants.CENTER);
-            
-            statusLabel = new JLabel();
-            statusLabel.setFont(new Font("SansSerif", Font.BOLD, 11));
-            statusLabel.setHorizontalAlignment(SwingConstants.CENTER);
-            
-            textPanel.add(titleLabel);
-            textPanel.add(authorLabel);
-            textPanel.add(statusLabel);
-            add(textPanel, BorderLayout.SOUTH);
-        }
-
-        @Override
-        public Component getListCellRendererComponent(JList<? extends Book> list, 
-                                                      Book book, 
-                                                      int index, 
-                                                      boolean isSelected, 
-                                                      boolean cellHasFocus) {
-            
-            // Use HTML to wrap long text within the card
-            titleLabel.setText("<html><div style='text-align: center; width: 100px;'>" + book.getTitle() + "</div></html>");
-            authorLabel.setText("<html><div style='text-align: center; width: 100px;'>" + book.getAuthor() + "</div></html>");
-
-            // Update status and colors
-            if (book.isIssued()) {
-                statusLabel.setText("Issued");
-                statusLabel.setForeground(Color.RED);
-                iconLabel.setForeground(Color.LIGHT_GRAY); // Dim the icon
-            } else {
-                statusLabel.setText("Available");
-                statusLabel.setForeground(new Color(0, 128, 0)); // Dark Green
-                iconLabel.setForeground(Color.BLACK);
-            }
-
-            // Update background and border based on selection
-            if (isSelected) {
-                setBackground(list.getSelectionBackground());
-                setForeground(list.getSelectionForeground());
-                setBorder(BorderFactory.createCompoundBorder(
-                    selectedBorder,
-                    new EmptyBorder(3, 3, 3, 3) // Inner padding when selected
-                ));
-            } else {
-                setBackground(list.getBackground());
-                setForeground(list.getForeground());
-                 setBorder(BorderFactory.createCompoundBorder(
-                    BorderFactory.createLineBorder(Color.GRAY, 1),
-                    new EmptyBorder(5, 5, 5, 5) // Default inner padding
-                ));
-            }
-            
-            return this;
-        }
-    }
-
-
-    public LibraryManagementSystemGUI() {
-        setTitle("Library Management System");
-        setSize(800, 600);
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setLocationRelativeTo(null);
-
-        // Set overall padding for the main window
-        ((JPanel) getContentPane()).setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-
-        // --- List Setup (Replaces Table Setup) ---
-        listModel = new DefaultListModel<>();
-        bookList = new JList<>(listModel);
-        bookList.setCellRenderer(new BookCellRenderer());
-        bookList.setLayoutOrientation(JList.HORIZONTAL_WRAP); // Arrange in a grid
-        bookList.setVisibleRowCount(-1); // Let it flow
-        bookList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        
-        // Set fixed cell sizes for a uniform grid
-        bookList.setFixedCellWidth(130);
-        bookList.setFixedCellHeight(160);
-        
-        // Style selection
-        bookList.setSelectionBackground(new Color(220, 235, 255)); // Light blue selection
-        bookList.setSelectionForeground(Color.BLACK);
-
-        // Add double-click listener to issue/return
-        bookList.addMouseListener(new MouseAdapter() {
-            public void mouseClicked(MouseEvent evt) {
-                // Check for double click
-                if (evt.getClickCount() == 2) {
-                    Book selectedBook = bookList.getSelectedValue();
-                    if (selectedBook != null) {
-                        // If book is issued, return it. Otherwise, issue it.
-                        if (selectedBook.isIssued()) {
-                            returnBook();
-                        } else {
-                            issueBook();
-                        }
-                    }
-                }
-            }
-        });
-
-
-        JScrollPane scrollPane = new JScrollPane(bookList);
-        scrollPane.setBorder(BorderFactory.createEmptyBorder()); 
-        scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER); // Only vertical scroll
-        add(scrollPane, BorderLayout.CENTER);
-
-        // --- Button Panel Setup ---
-        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
-        buttonPanel.setBorder(BorderFactory.createEmptyBorder(10, 0, 0, 0)); 
-
-        JButton addButton = createStyledButton("Add Book");
-        JButton issueButton = createStyledButton("Issue Book");
-        JButton returnButton = createStyledButton("Return Book");
-        JButton refreshButton = createStyledButton("Refresh");
-
-        buttonPanel.add(addButton);
-        buttonPanel.add(issueButton);
-        buttonPanel.add(returnButton);
-        buttonPanel.add(refreshButton);
-        add(buttonPanel, BorderLayout.SOUTH);
-
-        // --- Action Listeners ---
-        addButton.addActionListener(e -> addBook());
-        issueButton.addActionListener(e -> issueBook());
-        returnButton.addActionListener(e -> returnBook());
-        refreshButton.addActionListener(e -> refreshBookList()); // Renamed
-
-        // --- Database Initialization ---
-        try (Connection conn = DriverManager.getConnection(DB_URL, USER, PASS)) {
-            createTables(conn);
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "Database connection failed: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-        }
-
-        refreshBookList(); // Renamed
-    }
-
-    /**
-     * Helper method to create a consistently styled JButton.
-     * (Unchanged from previous version)
-     */
-    private JButton createStyledButton(String text) {
-        JButton button = new JButton(text);
-        Font buttonFont = new Font("SansSerif", Font.BOLD, 12);
-        button.setFont(buttonFont);
-        button.setCursor(new Cursor(Cursor.HAND_CURSOR)); // Show hand cursor on hover
-        button.setFocusPainted(false); // Remove distracting focus border
-        button.setMargin(new Insets(8, 20, 8, 20)); // Add internal padding
-        return button;
-    }
-    
-    // --- Database Methods ---
-
-    /**
-     * Creates the 'books' table if it doesn't exist.
-     * (Unchanged from previous version)
-     */
-    private void createTables(Connection conn) throws SQLException {
-        try (Statement stmt = conn.createStatement()) {
-            String sql = "CREATE TABLE IF NOT EXISTS books (" +
-                         "id INT PRIMARY KEY AUTO_INCREMENT, " +
-                         "title VARCHAR(255) NOT NULL, " +
-                         "author VARCHAR(255) NOT NULL, " +
-                         "is_issued BOOLEAN DEFAULT FALSE)";
-            stmt.executeUpdate(sql);
-        }
-    }
-
-    /**
-     * Refreshes the list of books from the database.
-     */
-    private void refreshBookList() {
-        // Store selected index to re-select after refresh
-        int selectedIndex = bookList.getSelectedIndex();
-        
-        listModel.clear(); // Clear existing items
-        String sql = "SELECT * FROM books ORDER BY title";
-        try (Connection conn = DriverManager.getConnection(DB_URL, USER, PASS);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                // Create Book objects and add them to the list model
-                listModel.addElement(new Book(
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getString("author"),
-                    rs.getBoolean("is_issued")
-                ));
-            }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "Error loading books: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-        }
-        
-        // Re-select the previously selected item if possible
-        if (selectedIndex >= 0 && selectedIndex < listModel.getSize()) {
-            bookList.setSelectedIndex(selectedIndex);
-        }
-    }
-
-    /**
-     * Shows a dialog to add a new book.
-     * (Unchanged, but calls refreshBookList)
-     */
-    private void addBook() {
-        JTextField titleField = new JTextField(20);
-        JTextField authorField = new JTextField(20);
-        
-        JPanel panel = new JPanel(new GridLayout(0, 1, 5, 5));
-        panel.add(new JLabel("Title:"));
-        panel.add(titleField);
-        panel.add(new JLabel("Author:"));
-        panel.add(authorField);
-
-        int result = JOptionPane.showConfirmDialog(this, panel, "Add New Book", 
-                                                 JOptionPane.OK_CANCEL_OPTION, 
-                                                 JOptionPane.PLAIN_MESSAGE);
-
-        if (result == JOptionPane.OK_OPTION) {
-            String title = titleField.getText();
-            String author = authorField.getText();
-            
-            if (title != null && !title.trim().isEmpty() && author != null && !author.trim().isEmpty()) {
-                String sql = "INSERT INTO books (title, author) VALUES (?, ?)";
-                try (Connection conn = DriverManager.getConnection(DB_URL, USER, PASS);
-                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                    pstmt.setString(1, title.trim());
-                    pstmt.setString(2, author.trim());
-                    pstmt.executeUpdate();
-                    refreshBookList(); // Refresh the grid
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(this, "Error adding book: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-                }
-            } else {
-                 JOptionPane.showMessageDialog(this, "Title and Author cannot be empty.", "Input Error", JOptionPane.ERROR_MESSAGE);
-            }
-        }
-    }
-
-    /**
-     * Issues the currently selected book.
-     */
-    private void issueBook() {
-        // Get the selected Book object from the list
-        Book selectedBook = bookList.getSelectedValue();
-
-        if (selectedBook == null) {
-            JOptionPane.showMessageDialog(this, "Please select a book to issue.", "No Book Selected", JOptionPane.WARNING_MESSAGE);
-            return;
-        }
-
-        // Check status before hitting the database
-        if (selectedBook.isIssued()) {
-            JOptionPane.showMessageDialog(this, "'" + selectedBook.getTitle() + "' is already issued.", "Book Not Available", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        String sql = "UPDATE books SET is_issued = TRUE WHERE id = ? AND is_issued = FALSE";
-        try (Connection conn = DriverManager.getConnection(DB_URL, USER, PASS);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, selectedBook.getId()); // Use the ID from the Book object
-            int rowsAffected = pstmt.executeUpdate();
-            
-            if (rowsAffected > 0) {
-                JOptionPane.showMessageDialog(this, "'" + selectedBook.getTitle() + "' issued successfully!");
-            } else {
-                // This might happen if two people try at the same time
-                JOptionPane.showMessageDialog(this, "Book could not be issued. It might be already issued by someone else.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
-            refreshBookList(); // Refresh the grid to show new status
-        } catch (SQLException ex) {
-             JOptionPane.showMessageDialog(this, "Database Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
-    }
-    
-    /**
-     * Returns the currently selected book.
-     */
-    private void returnBook() {
-        Book selectedBook = bookList.getSelectedValue();
-
-        if (selectedBook == null) {
-            JOptionPane.showMessageDialog(this, "Please select a book to return.", "No Book Selected", JOptionPane.WARNING_MESSAGE);
-            return;
-        }
-
-        if (!selectedBook.isIssued()) {
-            JOptionPane.showMessageDialog(this, "'" + selectedBook.getTitle() + "' is already available.", "Book Not Issued", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-        
-        String sql = "UPDATE books SET is_issued = FALSE WHERE id = ? AND is_issued = TRUE";
-         try (Connection conn = DriverManager.getConnection(DB_URL, USER, PASS);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, selectedBook.getId());
-            int rowsAffected = pstmt.executeUpdate();
-            
-            if (rowsAffected > 0) {
-                JOptionPane.showMessageDialog(this, "'" + selectedBook.getTitle() + "' returned successfully!");
-            } else {
-                JOptionPane.showMessageDialog(this, "Book could not be returned.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
-            refreshBookList(); // Refresh the grid
-        } catch (SQLException ex) {
-             JOptionPane.showMessageDialog(this, "Database Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
-    }
-
-    public static void main(String[] args) {
-        try {
-            // Set the native system Look and Feel for a modern appearance
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-        } catch (Exception e) {
-            // Fallback to the cross-platform "Metal" look if the system one fails
-             try {
-                UIManager.setLookAndFeel(UIManager.getCrossPlatformLookAndFeelClassName());
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
-        }
-
-        // Run the GUI creation on the Event Dispatch Thread
-        SwingUtilities.invokeLater(() -> new LibraryManagementSystemGUI().setVisible(true));
-    }
-}
-
-
-
+import javax.swing.*;
+import javax.swing.border.Border;
+import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.JTableHeader;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class LibraryManagementSystemGUI extends JFrame {
+
+    // Database work runs on a small bounded pool so a slow round trip never freezes the window
+    private static final int DB_THREADS = 2;
+    private static final int DB_QUEUE_CAPACITY = 32;
+    
+    // Replaced JTable/TableModel with JList/ListModel; rows are fetched a page at a time
+    private PagedBookListModel listModel;
+    private JList<Book> bookList;
+
+    private final ExecutorService dbExecutor;
+    private final BookRepository repository;
+    private static final int DEFAULT_LOAN_DAYS = 14;
+    private JProgressBar busyIndicator;
+    private int runningTasks = 0; // Only touched on the EDT
+    private Future<?> refreshTask; // Latest refresh, cancelled when a newer one starts
+
+    // Change tracking for incremental refreshes; only touched on the EDT
+    private static final int POLL_INTERVAL_MILLIS = 1000; // Terminals converge within about this long
+    private static final int SEQUENCE_LOOKBACK = 64; // Re-read recent feed entries in case they committed late
+    private static final int MAX_DELTA_ROWS = 500; // Beyond this a reload is cheaper than patching
+    private long lastSequence = -1; // Last change feed sequence applied, or -1 before the first load
+    private int maxKnownId; // Rows with a higher id are new since the last refresh
+    private boolean sequenceSettled; // The lookback before lastSequence was re-read after it stopped moving
+    private Future<?> indexTask; // Search index build in flight
+    private boolean indexStale = false; // The catalog was reloaded while the index was being built
+
+    // Paging: only a window of pages is kept in memory, whatever the catalog size
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 16;
+    private static final int MAX_RECENT_CHANGES = 1024;
+    private static final Book LOADING = new Book(-1, "Loading...", "", false);
+
+    // Search: the index is built in the background, then kept current on the EDT
+    private static final int SEARCH_DEBOUNCE_MILLIS = 250;
+    private BookSearchIndex searchIndex; // Null until warmed
+    private final List<Book> changesWhileIndexing = new ArrayList<>();
+    private JTextField searchField;
+    private Timer searchTimer;
+
+    // Rows per import transaction; override with -Dlibrary.import.chunkSize=N
+    private static final int IMPORT_CHUNK_SIZE = Integer.getInteger("library.import.chunkSize", 1000);
+
+    /**
+     * A unit of storage work to run off the Event Dispatch Thread.
+     */
+    @FunctionalInterface
+    private interface DatabaseTask<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * Result of a refresh: either the catalog size after a full reload, or
+     * the changed rows plus the model positions of newly added ones.
+     */
+    private static class BookChanges {
+        private final boolean fullReload;
+        private final int total;
+        private final int maxId;
+        private final long sequence;
+        private final List<Book> updated;
+        private final List<Book> added; // Ascending by position
+        private final List<Integer> addedPositions;
+
+        BookChanges(boolean fullReload, int total, int maxId, long sequence,
+                    List<Book> updated, List<Book> added, List<Integer> addedPositions) {
+            this.fullReload = fullReload;
+            this.total = total;
+            this.maxId = maxId;
+            this.sequence = sequence;
+            this.updated = updated;
+            this.added = added;
+            this.addedPositions = addedPositions;
+        }
+    }
+
+    /**
+     * Lazy list model over the books table, in (title, id) order.
+     *
+     * Only the row count is known up front. Pages of {@link #PAGE_SIZE} rows are
+     * fetched in the background the first time a cell on them is painted, using
+     * keyset pagination from the last row of the previous page when it is known.
+     * The next page is prefetched, and at most {@link #MAX_CACHED_PAGES} pages are
+     * kept, least recently used first out. Unloaded cells show {@link #LOADING}.
+     * Updates carry the change feed sequence they reflect, so an older state
+     * never overwrites a newer one, including a page that was read just before
+     * a change it missed. All state is confined to the EDT.
+     */
+    private class PagedBookListModel extends AbstractListModel<Book> {
+        private int size = 0;
+        private int generation = 0; // Bumped on reset so in-flight page loads are dropped
+        private final Map<Integer, List<Book>> pages = new LinkedHashMap<Integer, List<Book>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Book>> eldest) {
+                return size() > MAX_CACHED_PAGES;
+            }
+        };
+        private final Map<Integer, Book> lastKeys = new HashMap<>(); // Last row of each page seen, for keyset seeks
+        private final Set<Integer> pendingPages = new HashSet<>();
+        private final Map<Integer, Book> recentChanges = new LinkedHashMap<Integer, Book>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Book> eldest) {
+                return size() > MAX_RECENT_CHANGES;
+            }
+        };
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public Book getElementAt(int index) {
+            int page = index / PAGE_SIZE;
+            List<Book> rows = pages.get(page);
+            requestPage(page + 1); // Prefetch ahead of the scroll
+            if (rows == null) {
+                requestPage(page);
+                return LOADING;
+            }
+            int offset = index % PAGE_SIZE;
+            return offset < rows.size() ? rows.get(offset) : LOADING;
+        }
+
+        /**
+         * Drops every cached page and starts over with a new row count.
+         */
+        void reset(int newSize) {
+            generation++;
+            pages.clear();
+            lastKeys.clear();
+            pendingPages.clear();
+            recentChanges.clear();
+            int oldSize = size;
+            size = newSize;
+            if (oldSize > 0) {
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            }
+            if (newSize > 0) {
+                fireIntervalAdded(this, 0, newSize - 1);
+            }
+        }
+
+        /**
+         * Replaces a book in place if its page is cached. Books on pages that
+         * are not loaded need nothing: they are read fresh when scrolled to.
+         */
+        void update(Book book) {
+            Book recent = recentChanges.get(book.getId());
+            if (recent != null && recent.getVersion() > book.getVersion()) {
+                return; // Already showing a newer state
+            }
+            recentChanges.put(book.getId(), book);
+            for (Map.Entry<Integer, List<Book>> entry : pages.entrySet()) {
+                List<Book> rows = entry.getValue();
+                for (int i = 0; i < rows.size(); i++) {
+                    Book current = rows.get(i);
+                    if (current.getId() == book.getId()) {
+                        if (current.isIssued() != book.isIssued() || !current.getAuthor().equals(book.getAuthor())) {
+                            rows.set(i, book);
+                            int index = entry.getKey() * PAGE_SIZE + i;
+                            fireContentsChanged(this, index, index);
+                        }
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Records a new row at {@code index}. Cached pages from that point on
+         * have shifted, so they are dropped and refetched when painted.
+         */
+        void insert(int index) {
+            int firstStalePage = index / PAGE_SIZE;
+            pages.keySet().removeIf(page -> page >= firstStalePage);
+            lastKeys.keySet().removeIf(page -> page >= firstStalePage);
+            generation++;
+            pendingPages.clear();
+            size++;
+            fireIntervalAdded(this, index, index);
+        }
+
+        private void requestPage(int page) {
+            if (page * PAGE_SIZE >= size || pages.containsKey(page) || !pendingPages.add(page)) {
+                return;
+            }
+            int requestGeneration = generation;
+            long requestSequence = lastSequence;
+            Book after = page > 0 ? lastKeys.get(page - 1) : null;
+            try {
+                dbExecutor.execute(() -> {
+                    List<Book> rows = null;
+                    try {
+                        rows = repository.page(after, page * PAGE_SIZE, PAGE_SIZE);
+                    } catch (SQLException ex) {
+                        ex.printStackTrace(); // The page is requested again the next time it is painted
+                    }
+                    List<Book> loaded = rows;
+                    SwingUtilities.invokeLater(() -> pageLoaded(page, requestGeneration, requestSequence, loaded));
+                });
+            } catch (RejectedExecutionException ex) {
+                pendingPages.remove(page); // Pool is saturated; try again on the next paint
+            }
+        }
+
+        private void pageLoaded(int page, int requestGeneration, long requestSequence, List<Book> rows) {
+            if (requestGeneration != generation) {
+                return; // Model was reset or shifted while this page was loading
+            }
+            pendingPages.remove(page);
+            if (rows == null || rows.isEmpty()) {
+                return;
+            }
+            // The page may have been read before changes applied since it was requested
+            for (int i = 0; i < rows.size(); i++) {
+                Book recent = recentChanges.get(rows.get(i).getId());
+                if (recent != null && recent.getVersion() > requestSequence) {
+                    rows.set(i, recent);
+                }
+            }
+            pages.put(page, rows);
+            lastKeys.put(page, rows.get(rows.size() - 1));
+            int first = page * PAGE_SIZE;
+            fireContentsChanged(this, first, Math.min(size, first + rows.size()) - 1);
+        }
+    }
+
+    /**
+     * In-memory inverted index over book titles and authors.
+     *
+     * Every lower-cased word of a title or author maps to the books
+     * containing it, kept in (title, id) order. Words live in a sorted map,
+     * so a prefix lookup is a contiguous range scan. A query matches books
+     * that contain, for each of its words, some word starting with it. Not
+     * thread-safe.
+     *
+     * Only the query word with the fewest books is looked up. The book sets
+     * of the words it is a prefix of are merged in order, each book is
+     * checked against the other query words, and the merge stops at a page
+     * of results. A word in a large share of the catalog, such as a single
+     * typed letter, starts too many merges to pay off; then all books are
+     * walked in order instead, as a page of matches comes up soon.
+     */
+    static class BookSearchIndex {
+        private static final int MAX_RESULTS = 1000;
+
+        private final Map<Integer, Entry> entries = new HashMap<>();
+        private final TreeMap<String, TreeSet<Entry>> postings = new TreeMap<>();
+        private final TreeSet<Entry> ordered = new TreeSet<>();
+
+        /**
+         * A book with what searching it needs worked out once: its title
+         * case-folded so ordering is a plain string comparison, and its words
+         * as " word word ..." so a prefix is checked without the map.
+         */
+        private static final class Entry implements Comparable<Entry> {
+            final Book book;
+            final String sortKey;
+            final String words;
+
+            Entry(Book book, String words) {
+                this.book = book;
+                this.words = words;
+                // Folds each char as String.CASE_INSENSITIVE_ORDER compares it
+                char[] key = book.getTitle().toCharArray();
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = Character.toLowerCase(Character.toUpperCase(key[i]));
+                }
+                sortKey = new String(key);
+            }
+
+            @Override
+            public int compareTo(Entry other) {
+                int order = sortKey.compareTo(other.sortKey);
+                return order != 0 ? order : Integer.compare(book.getId(), other.book.getId());
+            }
+        }
+
+        /**
+         * Adds a book, or replaces the indexed copy after its state changed.
+         * Returns false if the index already held this exact state.
+         */
+        boolean put(Book book) {
+            Entry previous = entries.get(book.getId());
+            if (previous != null) {
+                Book old = previous.book;
+                if (old.getTitle().equals(book.getTitle()) && old.getAuthor().equals(book.getAuthor())
+                        && old.isIssued() == book.isIssued()) {
+                    return false;
+                }
+                for (String token : tokenize(old.getTitle() + " " + old.getAuthor())) {
+                    TreeSet<Entry> posting = postings.get(token);
+                    if (posting != null && posting.remove(previous) && posting.isEmpty()) {
+                        postings.remove(token);
+                    }
+                }
+            }
+            List<String> tokens = tokenize(book.getTitle() + " " + book.getAuthor());
+            StringBuilder words = new StringBuilder();
+            for (String token : tokens) {
+                words.append(' ').append(token);
+            }
+            Entry entry = new Entry(book, words.toString());
+            entries.put(book.getId(), entry);
+            if (previous != null) {
+                ordered.remove(previous);
+            }
+            ordered.add(entry);
+            for (String token : tokens) {
+                postings.computeIfAbsent(token, t -> new TreeSet<>()).add(entry);
+            }
+            return true;
+        }
+
+        /**
+         * Returns up to {@link #MAX_RESULTS} matching books in (title, id) order.
+         */
+        List<Book> search(String query) {
+            List<String> terms = tokenize(query);
+            if (terms.isEmpty()) {
+                return List.of();
+            }
+
+            // Start from the most selective term
+            String rarest = null;
+            int fewest = Integer.MAX_VALUE;
+            for (String term : terms) {
+                int count = 0;
+                for (TreeSet<Entry> posting : withPrefix(term)) {
+                    count += posting.size();
+                }
+                if (count == 0) {
+                    return List.of();
+                }
+                if (count < fewest) {
+                    rarest = term;
+                    fewest = count;
+                }
+            }
+            String[] prefixes = new String[terms.size()];
+            for (int i = 0; i < prefixes.length; i++) {
+                prefixes[i] = " " + terms.get(i);
+            }
+
+            List<Book> found = new ArrayList<>();
+            if (fewest > entries.size() / 4) {
+                for (Entry entry : ordered) {
+                    if (matches(entry.words, prefixes) && found.add(entry.book) && found.size() == MAX_RESULTS) {
+                        break;
+                    }
+                }
+                return found;
+            }
+
+            PriorityQueue<Cursor> cursors = new PriorityQueue<>();
+            for (TreeSet<Entry> posting : withPrefix(rarest)) {
+                cursors.add(new Cursor(posting.iterator()));
+            }
+            Entry last = null;
+            while (!cursors.isEmpty() && found.size() < MAX_RESULTS) {
+                Cursor cursor = cursors.poll();
+                Entry entry = cursor.head;
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+                // A book with two words starting with the term comes out twice in a row
+                if (entry != last && matches(entry.words, prefixes)) {
+                    found.add(entry.book);
+                }
+                last = entry;
+            }
+            return found;
+        }
+
+        /**
+         * Book sets of every word starting with {@code prefix}, which all
+         * sort between it and the prefix followed by the highest char.
+         */
+        private Collection<TreeSet<Entry>> withPrefix(String prefix) {
+            return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values();
+        }
+
+        private static boolean matches(String words, String[] prefixes) {
+            for (String prefix : prefixes) {
+                if (!words.contains(prefix)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * The next book of one word's set, for merging several in order.
+         */
+        private static final class Cursor implements Comparable<Cursor> {
+            private final Iterator<Entry> entries;
+            private Entry head;
+
+            Cursor(Iterator<Entry> entries) {
+                this.entries = entries;
+                head = entries.next(); // Empty sets are removed from the map
+            }
+
+            boolean advance() {
+                head = entries.hasNext() ? entries.next() : null;
+                return head != null;
+            }
+
+            @Override
+            public int compareTo(Cursor other) {
+                return head.compareTo(other.head);
+            }
+        }
+
+        private static List<String> tokenize(String text) {
+            List<String> tokens = new ArrayList<>();
+            int start = -1;
+            for (int i = 0; i <= text.length(); i++) {
+                boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+                if (wordChar && start < 0) {
+                    start = i;
+                } else if (!wordChar && start >= 0) {
+                    tokens.add(text.substring(start, i).toLowerCase());
+                    start = -1;
+                }
+            }
+            return tokens;
+        }
+    }
+
+    /**
+     * Custom renderer to display a Book object as an "icon" card.
+     * Painting a cell allocates nothing: borders and colors are shared, and
+     * wrapped title/author lines are laid out once per book and cached by id.
+     * As in DefaultListCellRenderer, the components skip property change
+     * events, since nothing listens to a renderer; the border is set once
+     * and the selected one only painted, so its insets are never compared.
+     */
+    static class BookCellRenderer extends JPanel implements ListCellRenderer<Book> {
+        private static final int TEXT_WIDTH = 100;
+        private static final int MAX_CACHED_LAYOUTS = 4096;
+        private static final Color AVAILABLE_COLOR = new Color(0, 128, 0); // Dark Green
+        private static final Border DEFAULT_BORDER = BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(Color.GRAY, 1),
+            new EmptyBorder(5, 5, 5, 5) // Default inner padding
+        );
+
+        private final JLabel iconLabel;
+        private final WrappedText titleText;
+        private final WrappedText authorText;
+        private final JLabel statusLabel;
+        private final Border selectedBorder = BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(UIManager.getColor("List.selectionBackground"), 2),
+            new EmptyBorder(3, 3, 3, 3) // Inner padding when selected
+        );
+
+        // Wrapped lines per book id, most recently painted last
+        private final Map<Integer, CardText> layoutCache = new LinkedHashMap<Integer, CardText>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CardText> eldest) {
+                return size() > MAX_CACHED_LAYOUTS;
+            }
+        };
+        private boolean selected;
+
+        public BookCellRenderer() {
+            // Set up the card panel
+            setLayout(new BorderLayout(5, 5));
+            setBorder(DEFAULT_BORDER);
+            setOpaque(true);
+
+            // Icon in the center (using a book emoji)
+            iconLabel = new QuietLabel("📖");
+            iconLabel.setFont(new Font("SansSerif", Font.PLAIN, 48));
+            iconLabel.setHorizontalAlignment(SwingConstants.CENTER);
+            add(iconLabel, BorderLayout.CENTER);
+
+            // Panel for text info at the bottom
+            JPanel textPanel = new JPanel();
+            textPanel.setLayout(new BoxLayout(textPanel, BoxLayout.Y_AXIS));
+            textPanel.setOpaque(false); // Make it transparent
+            
+            titleText = new WrappedText(new Font("SansSerif", Font.BOLD, 12));
+            authorText = new WrappedText(new Font("SansSerif", Font.ITALIC, 11));
+            
+            statusLabel = new QuietLabel("");
+            statusLabel.setFont(new Font("SansSerif", Font.BOLD, 11));
+            statusLabel.setHorizontalAlignment(SwingConstants.CENTER);
+            statusLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            
+            textPanel.add(titleText);
+            textPanel.add(authorText);
+            textPanel.add(statusLabel);
+            add(textPanel, BorderLayout.SOUTH);
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends Book> list, 
+                                                      Book book, 
+                                                      int index, 
+                                                      boolean isSelected, 
+                                                      boolean cellHasFocus) {
+            
+            // Wrap long text within the card without going through the HTML renderer
+            CardText text = layoutCache.get(book.getId());
+            if (text == null || !text.matches(book)) {
+                text = new CardText(book,
+                    titleText.wrap(book.getTitle(), TEXT_WIDTH),
+                    authorText.wrap(book.getAuthor(), TEXT_WIDTH));
+                layoutCache.put(book.getId(), text);
+            }
+            titleText.setLines(text.titleLines);
+            authorText.setLines(text.authorLines);
+
+            // Update status and colors
+            if (book == LOADING) {
+                statusLabel.setText("");
+                iconLabel.setForeground(Color.LIGHT_GRAY);
+            } else if (book.isIssued()) {
+                statusLabel.setText("Issued");
+                statusLabel.setForeground(Color.RED);
+                iconLabel.setForeground(Color.LIGHT_GRAY); // Dim the icon
+            } else {
+                statusLabel.setText("Available");
+                statusLabel.setForeground(AVAILABLE_COLOR);
+                iconLabel.setForeground(Color.BLACK);
+            }
+
+            // Update background and border based on selection
+            selected = isSelected;
+            if (isSelected) {
+                setBackground(list.getSelectionBackground());
+                setForeground(list.getSelectionForeground());
+            } else {
+                setBackground(list.getBackground());
+                setForeground(list.getForeground());
+            }
+            
+            return this;
+        }
+
+        @Override
+        protected void paintBorder(Graphics g) {
+            (selected ? selectedBorder : DEFAULT_BORDER).paintBorder(this, g, 0, 0, getWidth(), getHeight());
+        }
+
+        @Override
+        protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+            // Overridden for performance: each event is an allocation per card
+        }
+    }
+
+    /**
+     * A plain-text label for renderers, which fires no property change
+     * events. Only for text that is never HTML, as the label UI learns of
+     * HTML text through the "text" event.
+     */
+    private static class QuietLabel extends JLabel {
+        QuietLabel(String text) {
+            super(text);
+        }
+
+        @Override
+        protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+            // Overridden for performance: nothing listens to a renderer's labels
+        }
+    }
+
+    /**
+     * Wrapped title and author lines for one book.
+     */
+    private static class CardText {
+        private final String title;
+        private final String author;
+        private final String[] titleLines;
+        private final String[] authorLines;
+
+        CardText(Book book, String[] titleLines, String[] authorLines) {
+            this.title = book.getTitle();
+            this.author = book.getAuthor();
+            this.titleLines = titleLines;
+            this.authorLines = authorLines;
+        }
+
+        boolean matches(Book book) {
+            return title.equals(book.getTitle()) && author.equals(book.getAuthor());
+        }
+    }
+
+    /**
+     * Draws pre-wrapped, centered lines of plain text. A lightweight stand-in
+     * for an HTML JLabel: painting is a few drawString calls and no parsing.
+     */
+    private static class WrappedText extends JComponent {
+        private static final int MAX_LINES = 2;
+        private static final String ELLIPSIS = "...";
+        private static final Map<?, ?> DESKTOP_HINTS =
+            (Map<?, ?>) Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+
+        private String[] lines = new String[0];
+
+        WrappedText(Font font) {
+            setFont(font);
+            setAlignmentX(Component.CENTER_ALIGNMENT);
+            int height = getFontMetrics(font).getHeight() * MAX_LINES;
+            setPreferredSize(new Dimension(0, height));
+            setMaximumSize(new Dimension(Integer.MAX_VALUE, height));
+        }
+
+        void setLines(String[] lines) {
+            this.lines = lines;
+        }
+
+        /**
+         * Greedily breaks text into at most {@link #MAX_LINES} lines no wider
+         * than {@code width}, ending with an ellipsis if it does not fit.
+         */
+        String[] wrap(String text, int width) {
+            FontMetrics metrics = getFontMetrics(getFont());
+            List<String> result = new ArrayList<>(MAX_LINES);
+            String remaining = text.trim();
+            while (!remaining.isEmpty() && result.size() < MAX_LINES) {
+                int end = fittingLength(remaining, metrics, width);
+                if (end < remaining.length()) {
+                    int space = remaining.lastIndexOf(' ', end);
+                    if (space > 0) {
+                        end = space; // Break between words when possible
+                    }
+                }
+                String line = remaining.substring(0, end);
+                remaining = remaining.substring(end).trim();
+                if (result.size() == MAX_LINES - 1 && !remaining.isEmpty()) {
+                    line = ellipsize(line + " " + remaining, metrics, width);
+                    remaining = "";
+                }
+                result.add(line);
+            }
+            return result.toArray(new String[0]);
+        }
+
+        private static int fittingLength(String text, FontMetrics metrics, int width) {
+            int used = 0;
+            for (int i = 0; i < text.length(); i++) {
+                used += metrics.charWidth(text.charAt(i));
+                if (used > width) {
+                    return Math.max(1, i);
+                }
+            }
+            return text.length();
+        }
+
+        private static String ellipsize(String text, FontMetrics metrics, int width) {
+            if (metrics.stringWidth(text) <= width) {
+                return text;
+            }
+            int end = fittingLength(text, metrics, width - metrics.stringWidth(ELLIPSIS));
+            return text.substring(0, end).trim() + ELLIPSIS;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g;
+            if (DESKTOP_HINTS != null) {
+                g2.addRenderingHints(DESKTOP_HINTS);
+            }
+            g2.setFont(getFont());
+            g2.setColor(getForeground());
+            FontMetrics metrics = g2.getFontMetrics();
+            int lineHeight = metrics.getHeight();
+            int shown = Math.min(lines.length, Math.max(1, getHeight() / lineHeight));
+            int y = (getHeight() - shown * lineHeight) / 2 + metrics.getAscent();
+            for (int i = 0; i < shown; i++) {
+                int x = (getWidth() - metrics.stringWidth(lines[i])) / 2;
+                g2.drawString(lines[i], x, y);
+                y += lineHeight;
+            }
+        }
+    }
+
+
+    public LibraryManagementSystemGUI() {
+        this(BookRepository.fromSystemProperties());
+    }
+
+    LibraryManagementSystemGUI(BookRepository repository) {
+        this.repository = repository;
+        setTitle("Library Management System");
+        setSize(800, 600);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLocationRelativeTo(null);
+
+        dbExecutor = new ThreadPoolExecutor(DB_THREADS, DB_THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(DB_QUEUE_CAPACITY), r -> {
+                Thread thread = new Thread(r, "library-db");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        // Set overall padding for the main window
+        ((JPanel) getContentPane()).setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        // --- List Setup (Replaces Table Setup) ---
+        listModel = new PagedBookListModel();
+        bookList = new JList<>(listModel);
+        bookList.setCellRenderer(new BookCellRenderer());
+        bookList.setLayoutOrientation(JList.HORIZONTAL_WRAP); // Arrange in a grid
+        bookList.setVisibleRowCount(-1); // Let it flow
+        bookList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        
+        // Set fixed cell sizes for a uniform grid
+        bookList.setFixedCellWidth(130);
+        bookList.setFixedCellHeight(160);
+        
+        // Style selection
+        bookList.setSelectionBackground(new Color(220, 235, 255)); // Light blue selection
+        bookList.setSelectionForeground(Color.BLACK);
+
+        // Add double-click listener to issue/return
+        bookList.addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent evt) {
+                // Check for double click
+                if (evt.getClickCount() == 2) {
+                    Book selectedBook = bookList.getSelectedValue();
+                    if (selectedBook != null && selectedBook != LOADING) {
+                        // If book is issued, return it. Otherwise, issue it.
+                        if (selectedBook.isIssued()) {
+                            returnBook();
+                        } else {
+                            issueBook();
+                        }
+                    }
+                }
+            }
+        });
+
+
+        JScrollPane scrollPane = new JScrollPane(bookList);
+        scrollPane.setBorder(BorderFactory.createEmptyBorder()); 
+        scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER); // Only vertical scroll
+        add(scrollPane, BorderLayout.CENTER);
+
+        // --- Search Setup ---
+        JPanel searchPanel = new JPanel(new BorderLayout(5, 5));
+        searchPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 10, 0));
+        searchPanel.add(new JLabel("Search:"), BorderLayout.WEST);
+        searchField = new JTextField();
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        add(searchPanel, BorderLayout.NORTH);
+
+        // Filter once the user pauses typing rather than on every keystroke
+        searchTimer = new Timer(SEARCH_DEBOUNCE_MILLIS, e -> runSearch());
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { searchTimer.restart(); }
+            public void removeUpdate(DocumentEvent e) { searchTimer.restart(); }
+            public void changedUpdate(DocumentEvent e) { searchTimer.restart(); }
+        });
+
+        // --- Button Panel Setup ---
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
+        buttonPanel.setBorder(BorderFactory.createEmptyBorder(10, 0, 0, 0)); 
+
+        JButton addButton = createStyledButton("Add Book");
+        JButton issueButton = createStyledButton("Issue Book");
+        JButton returnButton = createStyledButton("Return Book");
+        JButton refreshButton = createStyledButton("Refresh");
+        JButton importButton = createStyledButton("Import...");
+        JButton overdueButton = createStyledButton("Overdue");
+
+        buttonPanel.add(addButton);
+        buttonPanel.add(issueButton);
+        buttonPanel.add(returnButton);
+        buttonPanel.add(refreshButton);
+        buttonPanel.add(importButton);
+        buttonPanel.add(overdueButton);
+
+        // Busy indicator shown while database work is in flight; the UI stays usable
+        busyIndicator = new JProgressBar();
+        busyIndicator.setIndeterminate(true);
+        busyIndicator.setPreferredSize(new Dimension(80, 12));
+        busyIndicator.setVisible(false);
+        buttonPanel.add(busyIndicator);
+        add(buttonPanel, BorderLayout.SOUTH);
+
+        // --- Action Listeners ---
+        addButton.addActionListener(e -> addBook());
+        issueButton.addActionListener(e -> issueBook());
+        returnButton.addActionListener(e -> returnBook());
+        refreshButton.addActionListener(e -> refreshBookList()); // Renamed
+        importButton.addActionListener(e -> importBooks());
+        overdueButton.addActionListener(e -> showOverdueLoans());
+
+        // --- Database Initialization ---
+        runInBackground(() -> {
+            repository.initialize();
+            return null;
+        }, ignored -> {
+            refreshBookList();
+
+            // Pick up changes made at other terminals
+            Timer pollTimer = new Timer(POLL_INTERVAL_MILLIS, e -> {
+                if (refreshTask == null || refreshTask.isDone()) {
+                    refreshBookList(true);
+                }
+            });
+            pollTimer.start();
+        }, "Database connection failed: ");
+    }
+
+    /**
+     * Helper method to create a consistently styled JButton.
+     * (Unchanged from previous version)
+     */
+    private JButton createStyledButton(String text) {
+        JButton button = new JButton(text);
+        Font buttonFont = new Font("SansSerif", Font.BOLD, 12);
+        button.setFont(buttonFont);
+        button.setCursor(new Cursor(Cursor.HAND_CURSOR)); // Show hand cursor on hover
+        button.setFocusPainted(false); // Remove distracting focus border
+        button.setMargin(new Insets(8, 20, 8, 20)); // Add internal padding
+        return button;
+    }
+    
+    // --- Background Execution ---
+
+    /**
+     * Runs a database task on the background pool and hands its result to
+     * {@code onSuccess} on the EDT. Failures are reported with a dialog.
+     * Must be called on the EDT.
+     */
+    private <T> Future<T> runInBackground(DatabaseTask<T> task, Consumer<T> onSuccess, String errorPrefix) {
+        return runInBackground(task, onSuccess, errorPrefix, false);
+    }
+
+    /**
+     * As above; a {@code quiet} task shows no busy indicator and logs failures
+     * instead of showing a dialog, for periodic work the user did not ask for.
+     */
+    private <T> Future<T> runInBackground(DatabaseTask<T> task, Consumer<T> onSuccess, String errorPrefix, boolean quiet) {
+        FutureTask<T> future = new FutureTask<T>(task::run) {
+            @Override
+            protected void done() {
+                // Called once, whether the task finished, failed or was cancelled
+                SwingUtilities.invokeLater(() -> {
+                    if (!quiet) {
+                        taskFinished();
+                    }
+                    if (isCancelled()) {
+                        return;
+                    }
+                    try {
+                        onSuccess.accept(get());
+                    } catch (ExecutionException ex) {
+                        if (quiet) {
+                            System.err.println(errorPrefix + ex.getCause().getMessage());
+                            return;
+                        }
+                        JOptionPane.showMessageDialog(LibraryManagementSystemGUI.this, errorPrefix + ex.getCause().getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+        };
+
+        if (!quiet) {
+            taskStarted();
+        }
+        try {
+            dbExecutor.execute(future);
+        } catch (RejectedExecutionException ex) {
+            if (!quiet) {
+                taskFinished();
+            }
+            future.cancel(false);
+            if (quiet) {
+                return future;
+            }
+            JOptionPane.showMessageDialog(this, "Too many pending database operations. Please try again.", "Database Busy", JOptionPane.WARNING_MESSAGE);
+        }
+        return future;
+    }
+
+    /**
+     * Like {@link #runInBackground}, for work already running elsewhere:
+     * shows the busy indicator until {@code future} completes, then hands its
+     * result to {@code onSuccess} on the EDT. Must be called on the EDT.
+     */
+    private <T> void awaitInBackground(CompletableFuture<T> future, Consumer<T> onSuccess, String errorPrefix) {
+        taskStarted();
+        future.whenComplete((result, failure) -> SwingUtilities.invokeLater(() -> {
+            taskFinished();
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                JOptionPane.showMessageDialog(this, errorPrefix + cause.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+            } else {
+                onSuccess.accept(result);
+            }
+        }));
+    }
+
+    private void taskStarted() {
+        runningTasks++;
+        busyIndicator.setVisible(true);
+    }
+
+    private void taskFinished() {
+        runningTasks--;
+        busyIndicator.setVisible(runningTasks > 0);
+    }
+
+    // --- Database Methods ---
+
+    /**
+     * Refreshes the list of books from the database.
+     * The first refresh only counts the catalog; pages are then loaded as they
+     * are scrolled into view. Later refreshes read the change feed and patch
+     * the books changed since the last one into the model in place.
+     * A refresh still in flight is cancelled so its stale result is never shown.
+     */
+    private void refreshBookList() {
+        refreshBookList(false);
+    }
+
+    private void refreshBookList(boolean quiet) {
+        if (refreshTask != null) {
+            refreshTask.cancel(true);
+        }
+        long since = lastSequence;
+        boolean settled = sequenceSettled;
+        int knownMaxId = maxKnownId;
+        refreshTask = runInBackground(() -> loadBooks(since, settled, knownMaxId), this::showBooks, "Error loading books: ", quiet);
+    }
+
+    /**
+     * Reads the catalog size, and the books changed after sequence
+     * {@code since} unless this is the first load. Returns null without
+     * reading anything else if the feed hasn't moved since a poll that
+     * already re-read the lookback, which is most polls of an idle catalog.
+     * Runs on the background pool.
+     */
+    private BookChanges loadBooks(long since, boolean settled, int knownMaxId) throws SQLException {
+        long latest = repository.latestChange(); // Read first so nothing committed later is skipped
+        if (since >= 0 && latest == since && settled) {
+            return null;
+        }
+        int total = repository.count();
+        int maxId = repository.maxId();
+
+        // A sequence can be handed out before an earlier one commits, so look back a little
+        Map<Integer, Long> changed = since < 0
+            ? null
+            : repository.changedSince(since, SEQUENCE_LOOKBACK, latest);
+        if (changed == null || changed.containsKey(BookChangeFeed.CATALOG_RELOAD) || changed.size() > MAX_DELTA_ROWS) {
+            return new BookChanges(true, total, maxId, latest, List.of(), List.of(), List.of());
+        }
+
+        List<Book> updated = new ArrayList<>();
+        List<Book> added = new ArrayList<>();
+        for (Book row : repository.findByIds(changed.keySet())) {
+            Book book = row.withVersion(changed.get(row.getId()));
+            (book.getId() > knownMaxId ? added : updated).add(book);
+        }
+
+        // Ids are auto-incremented, so anything above the last known id is a new row
+        List<Integer> positions = new ArrayList<>();
+        for (Book book : added) {
+            positions.add(repository.positionOf(book));
+        }
+        return new BookChanges(false, total, maxId, latest, updated, added, positions);
+    }
+
+    /**
+     * Applies a refresh result to the grid. Runs on the EDT.
+     */
+    private void showBooks(BookChanges changes) {
+        if (changes == null) {
+            return; // Nothing changed
+        }
+        // One more poll after the feed stops moving re-reads the lookback for late commits
+        sequenceSettled = changes.sequence == lastSequence;
+        lastSequence = changes.sequence;
+        maxKnownId = changes.maxId;
+
+        if (changes.fullReload) {
+            // Store selected index to re-select after refresh
+            int selectedIndex = bookList.getSelectedIndex();
+
+            listModel.reset(changes.total);
+            rebuildSearchIndex();
+
+            // Re-select the previously selected item if possible
+            if (selectedIndex >= 0 && selectedIndex < listModel.getSize()) {
+                bookList.setSelectedIndex(selectedIndex);
+            }
+        } else {
+            // Patch only the affected cells; the list keeps its selection across inserts
+            changes.updated.forEach(listModel::update);
+            for (int i = 0; i < changes.added.size(); i++) {
+                listModel.insert(changes.addedPositions.get(i));
+            }
+            if (listModel.getSize() != changes.total) {
+                // Rows vanished or were missed; fall back to a clean slate
+                listModel.reset(changes.total);
+            }
+        }
+
+        // Keep the search index current and the filtered view in step with it
+        if (searchIndex == null) {
+            changesWhileIndexing.addAll(changes.updated);
+            changesWhileIndexing.addAll(changes.added);
+        } else {
+            boolean indexChanged = false;
+            for (Book book : changes.updated) {
+                indexChanged |= searchIndex.put(book);
+            }
+            for (Book book : changes.added) {
+                indexChanged |= searchIndex.put(book);
+            }
+            if (indexChanged) {
+                runSearch();
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the search index in the background; searches wait for it.
+     */
+    private void rebuildSearchIndex() {
+        searchIndex = null;
+        changesWhileIndexing.clear();
+        if (indexTask != null && !indexTask.isDone()) {
+            indexStale = true; // Build again once the running one lands, rather than piling up scans
+            return;
+        }
+        indexStale = false;
+        indexTask = runInBackground(this::buildSearchIndex, this::installSearchIndex, "Error indexing books: ");
+    }
+
+    /**
+     * Streams every book into a fresh search index. Runs on the background pool.
+     */
+    private BookSearchIndex buildSearchIndex() throws SQLException {
+        BookSearchIndex index = new BookSearchIndex();
+        repository.forEach(index::put);
+        return index;
+    }
+
+    /**
+     * Makes a freshly built index live, replaying changes that arrived while
+     * it was being built. Runs on the EDT.
+     */
+    private void installSearchIndex(BookSearchIndex index) {
+        if (indexStale) {
+            rebuildSearchIndex();
+            return;
+        }
+        changesWhileIndexing.forEach(index::put);
+        changesWhileIndexing.clear();
+        searchIndex = index;
+        runSearch();
+    }
+
+    /**
+     * Shows the books matching the search box, or the full paged catalog when
+     * it is empty. Runs on the EDT.
+     */
+    private void runSearch() {
+        String query = searchField.getText().trim();
+        if (query.isEmpty()) {
+            if (bookList.getModel() != listModel) {
+                bookList.setModel(listModel);
+            }
+            return;
+        }
+        if (searchIndex == null) {
+            return; // Runs again once the index is installed
+        }
+
+        Book selected = bookList.getSelectedValue();
+        DefaultListModel<Book> results = new DefaultListModel<>();
+        results.addAll(searchIndex.search(query));
+        bookList.setModel(results);
+
+        // Keep the same book selected if it still matches
+        if (selected != null) {
+            for (int i = 0; i < results.getSize(); i++) {
+                if (results.get(i).getId() == selected.getId()) {
+                    bookList.setSelectedIndex(i);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops everything loaded so far and reloads the catalog and search index
+     * from scratch. Used after bulk changes, where patching row by row would
+     * cost more than starting over.
+     */
+    private void reloadCatalog() {
+        lastSequence = -1;
+        refreshBookList();
+    }
+
+    /**
+     * Imports books from a CSV or TSV file of title/author rows.
+     * The grid is refreshed once, when the import finishes or stops.
+     */
+    private void importBooks() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV or TSV files", "csv", "tsv", "txt"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        if (Files.exists(BookCatalogImporter.checkpointFile(file))) {
+            JOptionPane.showMessageDialog(this, "A previous import of this file was interrupted. It will resume where it stopped.", "Resuming Import", JOptionPane.INFORMATION_MESSAGE);
+        }
+
+        BookCatalogImporter importer = new BookCatalogImporter(IMPORT_CHUNK_SIZE);
+        ProgressMonitor monitor = new ProgressMonitor(this, "Importing " + file.getFileName(), "", 0, 1000);
+        runInBackground(() -> {
+            try {
+                return importer.importFile(repository, file, (bytesRead, totalBytes, imported) -> SwingUtilities.invokeLater(() -> {
+                    if (monitor.isCanceled()) {
+                        importer.cancel();
+                    }
+                    monitor.setProgress(totalBytes == 0 ? 1000 : (int) (bytesRead * 1000 / totalBytes));
+                    monitor.setNote(imported + " books imported");
+                }));
+            } catch (IOException ex) {
+                throw new SQLException("Could not read " + file.getFileName() + ": " + ex.getMessage(), ex);
+            } finally {
+                // Whatever happened, committed chunks are in the database now
+                SwingUtilities.invokeLater(() -> {
+                    monitor.close();
+                    reloadCatalog();
+                });
+            }
+        }, result -> {
+            String summary = result.imported + " books imported, " + result.duplicates + " duplicates skipped, "
+                + result.invalid + " invalid rows skipped.";
+            if (result.cancelled) {
+                summary += "\nImport stopped early; choose the same file again to resume.";
+            }
+            JOptionPane.showMessageDialog(this, summary, "Import Finished", JOptionPane.INFORMATION_MESSAGE);
+        }, "Import failed (choose the same file again to resume): ");
+    }
+
+    /**
+     * Shows a dialog to add a new book.
+     * (Unchanged, but calls refreshBookList)
+     */
+    private void addBook() {
+        JTextField titleField = new JTextField(20);
+        JTextField authorField = new JTextField(20);
+        
+        JPanel panel = new JPanel(new GridLayout(0, 1, 5, 5));
+        panel.add(new JLabel("Title:"));
+        panel.add(titleField);
+        panel.add(new JLabel("Author:"));
+        panel.add(authorField);
+
+        int result = JOptionPane.showConfirmDialog(this, panel, "Add New Book", 
+                                                 JOptionPane.OK_CANCEL_OPTION, 
+                                                 JOptionPane.PLAIN_MESSAGE);
+
+        if (result == JOptionPane.OK_OPTION) {
+            String title = titleField.getText();
+            String author = authorField.getText();
+            
+            if (title != null && !title.trim().isEmpty() && author != null && !author.trim().isEmpty()) {
+                runInBackground(() -> repository.add(title.trim(), author.trim()),
+                    book -> refreshBookList(), "Error adding book: "); // Refresh the grid
+            } else {
+                 JOptionPane.showMessageDialog(this, "Title and Author cannot be empty.", "Input Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    /**
+     * Issues the currently selected book.
+     */
+    private void issueBook() {
+        // Get the selected Book object from the list
+        Book selectedBook = bookList.getSelectedValue();
+
+        if (selectedBook == null || selectedBook == LOADING) {
+            JOptionPane.showMessageDialog(this, "Please select a book to issue.", "No Book Selected", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        // Check status before hitting the database
+        if (selectedBook.isIssued()) {
+            JOptionPane.showMessageDialog(this, "'" + selectedBook.getTitle() + "' is already issued.", "Book Not Available", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        // Ask who is borrowing it and for how long
+        JTextField memberField = new JTextField(20);
+        JSpinner daysSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_LOAN_DAYS, 1, 365, 1));
+        JPanel panel = new JPanel(new GridLayout(0, 1, 5, 5));
+        panel.add(new JLabel("Member ID:"));
+        panel.add(memberField);
+        panel.add(new JLabel("Loan period (days):"));
+        panel.add(daysSpinner);
+
+        int result = JOptionPane.showConfirmDialog(this, panel, "Issue '" + selectedBook.getTitle() + "'",
+                                                 JOptionPane.OK_CANCEL_OPTION,
+                                                 JOptionPane.PLAIN_MESSAGE);
+        if (result != JOptionPane.OK_OPTION) {
+            return;
+        }
+        String memberId = memberField.getText().trim();
+        if (memberId.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Member ID cannot be empty.", "Input Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (memberId.length() > LoanLedger.MAX_MEMBER_ID_LENGTH) {
+            JOptionPane.showMessageDialog(this, "Member ID cannot be longer than " + LoanLedger.MAX_MEMBER_ID_LENGTH + " characters.",
+                                          "Input Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        LocalDate dueDate = LocalDate.now().plusDays((Integer) daysSpinner.getValue());
+
+        awaitInBackground(repository.issue(selectedBook.getId(), memberId, dueDate), issued -> {
+            if (issued) {
+                JOptionPane.showMessageDialog(this, "'" + selectedBook.getTitle() + "' issued successfully! Due back " + dueDate + ".");
+            } else {
+                // This might happen if two people try at the same time
+                JOptionPane.showMessageDialog(this, "Book could not be issued. It might be already issued by someone else.", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+            refreshBookList(); // Refresh the grid to show new status
+        }, "Database Error: ");
+    }
+    
+    /**
+     * Returns the currently selected book.
+     */
+    private void returnBook() {
+        Book selectedBook = bookList.getSelectedValue();
+
+        if (selectedBook == null || selectedBook == LOADING) {
+            JOptionPane.showMessageDialog(this, "Please select a book to return.", "No Book Selected", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        if (!selectedBook.isIssued()) {
+            JOptionPane.showMessageDialog(this, "'" + selectedBook.getTitle() + "' is already available.", "Book Not Issued", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        awaitInBackground(repository.returnBook(selectedBook.getId()), returned -> {
+            if (returned) {
+                JOptionPane.showMessageDialog(this, "'" + selectedBook.getTitle() + "' returned successfully!");
+            } else {
+                JOptionPane.showMessageDialog(this, "Book could not be returned.", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+            refreshBookList(); // Refresh the grid
+        }, "Database Error: ");
+    }
+
+    /**
+     * Shows open loans that are past their due date.
+     */
+    private void showOverdueLoans() {
+        runInBackground(() -> repository.findOverdue(LocalDate.now()), overdue -> {
+            if (overdue.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No loans are overdue.", "Overdue Loans", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            DefaultTableModel model = new DefaultTableModel(new Object[] { "Title", "Member", "Due", "Days Overdue" }, 0) {
+                @Override
+                public boolean isCellEditable(int row, int column) {
+                    return false;
+                }
+            };
+            for (LoanLedger.OverdueLoan loan : overdue) {
+                model.addRow(new Object[] { loan.title, loan.memberId, loan.dueDate, loan.daysOverdue });
+            }
+            JTable table = new JTable(model);
+            JTableHeader header = table.getTableHeader();
+            header.setFont(new Font("SansSerif", Font.BOLD, 12));
+            JScrollPane scrollPane = new JScrollPane(table);
+            scrollPane.setPreferredSize(new Dimension(500, 300));
+            JOptionPane.showMessageDialog(this, scrollPane, "Overdue Loans (" + overdue.size() + ")", JOptionPane.PLAIN_MESSAGE);
+        }, "Error loading overdue loans: ");
+    }
+
+    public static void main(String[] args) {
+        try {
+            // Set the native system Look and Feel for a modern appearance
+            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+        } catch (Exception e) {
+            // Fallback to the cross-platform "Metal" look if the system one fails
+             try {
+                UIManager.setLookAndFeel(UIManager.getCrossPlatformLookAndFeelClassName());
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+
+        // Run the GUI creation on the Event Dispatch Thread
+        SwingUtilities.invokeLater(() -> new LibraryManagementSystemGUI().setVisible(true));
+    }
+}
+
+
+
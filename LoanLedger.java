@@ -0,0 +1,228 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Records who borrowed which book and when, in a 'loans' table.
+ *
+ * Issuing or returning a book flips {@code books.is_issued} with the usual
+ * conditional guard and writes the matching ledger row in the same
+ * transaction. Requests go through a queue drained by a single writer thread,
+ * which applies everything waiting in one transaction and one commit, so
+ * checkouts arriving together share a single log flush instead of queuing
+ * behind each other's. If a group's transaction fails, its requests are
+ * retried one transaction each, so one bad request fails only itself.
+ */
+class LoanLedger {
+
+    static final int MAX_MEMBER_ID_LENGTH = 64;
+    private static final int MAX_GROUP_SIZE = 64;
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private static final String ISSUE_SQL = "UPDATE books SET is_issued = TRUE WHERE id = ? AND is_issued = FALSE";
+    private static final String RETURN_SQL = "UPDATE books SET is_issued = FALSE WHERE id = ? AND is_issued = TRUE";
+    private static final String OPEN_LOAN_SQL = "INSERT INTO loans (book_id, member_id, due_date) VALUES (?, ?, ?)";
+    private static final String CLOSE_LOAN_SQL =
+        "UPDATE loans SET returned_at = CURRENT_TIMESTAMP WHERE book_id = ? AND returned_at IS NULL";
+
+    /**
+     * A loan past its due date.
+     */
+    static class OverdueLoan {
+        final String title;
+        final String memberId;
+        final LocalDate dueDate;
+        final long daysOverdue;
+
+        OverdueLoan(String title, String memberId, LocalDate dueDate, long daysOverdue) {
+            this.title = title;
+            this.memberId = memberId;
+            this.dueDate = dueDate;
+            this.daysOverdue = daysOverdue;
+        }
+    }
+
+    private static class Request {
+        final boolean issue;
+        final int bookId;
+        final String memberId;
+        final LocalDate dueDate;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Request(boolean issue, int bookId, String memberId, LocalDate dueDate) {
+            this.issue = issue;
+            this.bookId = bookId;
+            this.memberId = memberId;
+            this.dueDate = dueDate;
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+
+    LoanLedger(ConnectionPool pool) {
+        this.pool = pool;
+        Thread writer = new Thread(this::writeLoop, "loan-ledger-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Creates the 'loans' table if it doesn't exist. Needs the books table.
+     */
+    static void createTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            String sql = "CREATE TABLE IF NOT EXISTS loans (" +
+                         "id BIGINT PRIMARY KEY AUTO_INCREMENT, " +
+                         "book_id INT NOT NULL, " +
+                         "member_id VARCHAR(" + MAX_MEMBER_ID_LENGTH + ") NOT NULL, " +
+                         "issued_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                         "due_date DATE NOT NULL, " +
+                         "returned_at TIMESTAMP NULL, " +
+                         "INDEX idx_loans_book_open (book_id, returned_at), " +
+                         "INDEX idx_loans_open_due (returned_at, due_date), " +
+                         "FOREIGN KEY (book_id) REFERENCES books(id))";
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    /**
+     * Issues a book to a member. Completes with false if the book was
+     * already issued, once the change is committed.
+     */
+    CompletableFuture<Boolean> issue(int bookId, String memberId, LocalDate dueDate) {
+        Request request = new Request(true, bookId, memberId, dueDate);
+        if (memberId.length() > MAX_MEMBER_ID_LENGTH) {
+            request.result.completeExceptionally(
+                new SQLException("Member ID is longer than " + MAX_MEMBER_ID_LENGTH + " characters"));
+            return request.result;
+        }
+        return submit(request);
+    }
+
+    /**
+     * Returns a book. Completes with false if it was not issued, once the
+     * change is committed.
+     */
+    CompletableFuture<Boolean> returnBook(int bookId) {
+        return submit(new Request(false, bookId, null, null));
+    }
+
+    /**
+     * Lists open loans whose due date is before {@code today}, oldest first.
+     */
+    static List<OverdueLoan> findOverdue(Connection conn, LocalDate today) throws SQLException {
+        List<OverdueLoan> overdue = new ArrayList<>();
+        String sql = "SELECT b.title, l.member_id, l.due_date FROM loans l JOIN books b ON b.id = l.book_id " +
+                     "WHERE l.returned_at IS NULL AND l.due_date < ? ORDER BY l.due_date";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDate(1, Date.valueOf(today));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    LocalDate due = rs.getDate("due_date").toLocalDate();
+                    overdue.add(new OverdueLoan(rs.getString("title"), rs.getString("member_id"),
+                        due, ChronoUnit.DAYS.between(due, today)));
+                }
+            }
+        }
+        return overdue;
+    }
+
+    private CompletableFuture<Boolean> submit(Request request) {
+        if (!queue.offer(request)) {
+            request.result.completeExceptionally(new SQLException("Too many pending loan updates"));
+        }
+        return request.result;
+    }
+
+    private void writeLoop() {
+        List<Request> group = new ArrayList<>(MAX_GROUP_SIZE);
+        while (true) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException ex) {
+                return;
+            }
+            queue.drainTo(group, MAX_GROUP_SIZE - 1); // Everything that piled up meanwhile shares the commit
+            writeGroup(group);
+            group.clear();
+        }
+    }
+
+    /**
+     * Applies a group of requests in one transaction and completes their
+     * futures after the commit. If the transaction fails, none of it was
+     * applied, so each request is retried on its own and only the ones that
+     * fail again are failed.
+     */
+    private void writeGroup(List<Request> group) {
+        boolean[] applied;
+        try {
+            applied = write(group);
+        } catch (SQLException ex) {
+            if (group.size() == 1) {
+                group.get(0).result.completeExceptionally(ex);
+                return;
+            }
+            for (Request request : group) {
+                writeGroup(Collections.singletonList(request));
+            }
+            return;
+        }
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).result.complete(applied[i]);
+        }
+    }
+
+    /**
+     * Applies requests in one transaction. Returns which of them changed a
+     * book, or throws with everything rolled back.
+     */
+    private boolean[] write(List<Request> group) throws SQLException {
+        boolean[] applied = new boolean[group.size()];
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement issueStmt = conn.prepareStatement(ISSUE_SQL);
+                 PreparedStatement returnStmt = conn.prepareStatement(RETURN_SQL);
+                 PreparedStatement openLoan = conn.prepareStatement(OPEN_LOAN_SQL);
+                 PreparedStatement closeLoan = conn.prepareStatement(CLOSE_LOAN_SQL)) {
+                for (int i = 0; i < group.size(); i++) {
+                    Request request = group.get(i);
+                    PreparedStatement guard = request.issue ? issueStmt : returnStmt;
+                    guard.setInt(1, request.bookId);
+                    applied[i] = guard.executeUpdate() > 0;
+                    if (!applied[i]) {
+                        continue; // Someone else got there first; no ledger row
+                    }
+                    BookChangeFeed.record(conn, request.bookId);
+                    // Ledger rows are written in request order so an issue and return of the same book pair up
+                    if (request.issue) {
+                        openLoan.setInt(1, request.bookId);
+                        openLoan.setString(2, request.memberId);
+                        openLoan.setDate(3, Date.valueOf(request.dueDate));
+                        openLoan.executeUpdate();
+                    } else {
+                        closeLoan.setInt(1, request.bookId);
+                        closeLoan.executeUpdate();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            }
+        }
+        return applied;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Dollar amounts as whole cents in a {@code long}.
+ *
+ * Cents add and subtract exactly, where repeated {@code double} arithmetic
+ * drifts. Parsing and formatting work digit by digit on the characters,
+ * without going through {@code double} or {@code String.format}.
+ */
+final class Money {
+
+    private Money() {
+    }
+
+    /**
+     * Parses an amount such as {@code 12}, {@code 12.5}, {@code $12.50} or
+     * {@code -3.00} into cents. Surrounding whitespace is ignored. Digits
+     * past the cents must be zero, since they can't be represented.
+     *
+     * @throws NumberFormatException if the text is not an amount or is too large
+     */
+    static long parseCents(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        if (i < end && text.charAt(i) == '$') {
+            i++;
+        }
+
+        long cents = 0;
+        int digits = 0;
+        for (; i < end && text.charAt(i) != '.'; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalid(text);
+            }
+            if (cents > (Long.MAX_VALUE - digit) / 10) {
+                throw invalid(text);
+            }
+            cents = cents * 10 + digit;
+            digits++;
+        }
+
+        int fraction = 0;
+        if (i < end) {
+            i++; // Skip the point
+            for (int place = 0; i < end; i++, place++) {
+                int digit = text.charAt(i) - '0';
+                if (digit < 0 || digit > 9 || (place >= 2 && digit != 0)) {
+                    throw invalid(text);
+                }
+                if (place < 2) {
+                    fraction += place == 0 ? digit * 10 : digit;
+                }
+                digits++;
+            }
+        }
+        if (digits == 0 || cents > (Long.MAX_VALUE - fraction) / 100) {
+            throw invalid(text);
+        }
+        cents = cents * 100 + fraction;
+        return negative ? -cents : cents;
+    }
+
+    /**
+     * Formats cents the way {@code String.format("$%.2f", cents / 100.0)}
+     * does, e.g. {@code $1000.00} or {@code $-0.50}.
+     */
+    static String format(long cents) {
+        char[] buffer = new char[24];
+        int position = buffer.length;
+        // Work in negatives so Long.MIN_VALUE has no overflow
+        long value = cents < 0 ? cents : -cents;
+        for (int place = 0; place < 2; place++) {
+            buffer[--position] = (char) ('0' - value % 10);
+            value /= 10;
+        }
+        buffer[--position] = '.';
+        do {
+            buffer[--position] = (char) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+        if (cents < 0) {
+            buffer[--position] = '-';
+        }
+        buffer[--position] = '$';
+        return new String(buffer, position, buffer.length - position);
+    }
+
+    private static NumberFormatException invalid(CharSequence text) {
+        return new NumberFormatException("Not an amount: \"" + text + "\"");
+    }
+}
@@ -0,0 +1,114 @@
+import java.math.BigDecimal;
+import java.util.Random;
+
+/**
+ * Runs random deposits and withdrawals through a {@link BankAccount}, with
+ * each amount typed as text and read by {@link Money#parseCents}, and checks
+ * the balance against a {@link BigDecimal} kept alongside. The same amounts
+ * are also summed in a {@code double}, as the account used to, to show how
+ * far that drifts, and finally the same dime is deposited once per
+ * operation both ways. Needs no database:
+ *
+ *     javac *.java && java MoneyDriftCheck [operations] [seed]
+ *
+ * The balance and its label are compared every million operations and at
+ * the end. Exits with status 1 if the cents ever differ from the BigDecimal.
+ */
+class MoneyDriftCheck {
+
+    private static final long MAX_AMOUNT_CENTS = 1_000_000; // $10,000.00
+    private static final long CHECK_EVERY = 1_000_000;
+
+    public static void main(String[] args) {
+        long operations = args.length > 0 ? Long.parseLong(args[0]) : 100_000_000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+
+        Random random = new Random(seed);
+        BankAccount account = new BankAccount("DRIFT-1", "Drift Check", 0);
+        BigDecimal exact = BigDecimal.ZERO.setScale(2);
+        double approximate = 0;
+        double worstDrift = 0;
+        long doubleWrongAt = -1;
+        StringBuilder text = new StringBuilder();
+        long start = System.nanoTime();
+
+        for (long op = 1; op <= operations; op++) {
+            long amount = 1 + (long) (random.nextDouble() * MAX_AMOUNT_CENTS);
+            type(text, amount, random);
+            long cents = Money.parseCents(text);
+            BigDecimal typed = new BigDecimal(text.charAt(0) == '$' ? text.substring(1) : text.toString());
+
+            if (random.nextBoolean()) {
+                account.deposit(cents);
+                exact = exact.add(typed);
+                approximate += Double.parseDouble(typed.toString());
+            } else if (account.withdraw(cents)) {
+                exact = exact.subtract(typed);
+                approximate -= Double.parseDouble(typed.toString());
+            } else if (exact.compareTo(typed) >= 0) {
+                fail(op, "a withdrawal of " + typed + " was refused with " + exact + " in the account");
+            }
+
+            if (op % CHECK_EVERY == 0 || op == operations) {
+                String expected = "$" + exact.toPlainString();
+                if (account.getBalanceCents() != exact.movePointRight(2).longValueExact()
+                        || !Money.format(account.getBalanceCents()).equals(expected)) {
+                    fail(op, "the balance reads " + Money.format(account.getBalanceCents()) + ", expected " + expected);
+                }
+                worstDrift = Math.max(worstDrift, Math.abs(approximate - exact.doubleValue()));
+                if (doubleWrongAt < 0 && !String.format("$%.2f", approximate).equals(expected)) {
+                    doubleWrongAt = op;
+                }
+            }
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%,d operations in %,d ms, balance %s%n", operations, millis, Money.format(account.getBalanceCents()));
+        System.out.printf("cents: no drift; double: off by up to %.6f cents, reads %s at the end%n",
+            worstDrift * 100, String.format("$%.2f", approximate));
+        System.out.println(doubleWrongAt < 0
+            ? "double: its label still matched at every check"
+            : String.format("double: its label was first wrong after %,d operations", doubleWrongAt));
+
+        // Rounding errors in one direction don't cancel out: the same dime, deposited over and over
+        long dimes = 0;
+        double dollars = 0;
+        for (long op = 0; op < operations; op++) {
+            dimes += Money.parseCents("0.10");
+            dollars += 0.10;
+        }
+        System.out.printf("%,d deposits of $0.10: cents %s, double %s (%s)%n", operations, Money.format(dimes),
+            String.format("$%.2f", dollars), new BigDecimal(dollars).toPlainString());
+        if (dimes != operations * 10) {
+            fail(operations, "the dimes add up to " + Money.format(dimes));
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Writes {@code cents} the ways a teller might type it: "12", "12.5",
+     * "12.50" or "$12.50".
+     */
+    private static void type(StringBuilder text, long cents, Random random) {
+        text.setLength(0);
+        if (random.nextInt(4) == 0) {
+            text.append('$');
+        }
+        text.append(cents / 100);
+        long fraction = cents % 100;
+        if (fraction == 0 && random.nextBoolean()) {
+            return;
+        }
+        text.append('.');
+        if (fraction % 10 == 0 && random.nextBoolean()) {
+            text.append(fraction / 10);
+        } else {
+            text.append(fraction / 10).append(fraction % 10);
+        }
+    }
+
+    private static void fail(long op, String message) {
+        System.out.println("FAILED after " + op + " operations: " + message);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,234 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Evaluates an {@link Expression} in decimal, so {@code 0.1+0.2} is exactly
+ * {@code 0.3}.
+ *
+ * Values stay as a {@code long} scaled by a power of ten while they fit,
+ * which covers everyday input with plain long arithmetic. An operation
+ * that would overflow, or a division that doesn't come out even, moves
+ * to {@link BigDecimal} rounded to the {@link MathContext}. Functions other
+ * than sqrt, and powers with a fractional exponent, are computed in double.
+ */
+final class PreciseEvaluator {
+
+    private static final int MAX_FAST_SCALE = 18;
+    private static final long[] TEN_POWERS = new long[19];
+
+    static {
+        TEN_POWERS[0] = 1;
+        for (int i = 1; i < TEN_POWERS.length; i++) {
+            TEN_POWERS[i] = TEN_POWERS[i - 1] * 10;
+        }
+    }
+
+    private final MathContext context;
+
+    PreciseEvaluator(MathContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Uses {@code -Dcalculator.precision} significant digits, 34 by default.
+     */
+    static PreciseEvaluator fromSystemProperties() {
+        int digits = Integer.getInteger("calculator.precision", 34);
+        return new PreciseEvaluator(new MathContext(digits, RoundingMode.HALF_EVEN));
+    }
+
+    /**
+     * @throws ArithmeticException on division by zero or the square root of a negative
+     * @throws IllegalArgumentException if the expression has variables
+     */
+    BigDecimal evaluate(Expression expression) {
+        return value(expression).toBig().round(context);
+    }
+
+    /**
+     * Formats a result without an exponent unless it is very large or small,
+     * e.g. {@code 0.3}, {@code 42} or {@code 1E+40}. The text parses back to
+     * the same value.
+     */
+    static String format(BigDecimal value) {
+        if (value.signum() == 0) {
+            return "0";
+        }
+        BigDecimal stripped = value.stripTrailingZeros();
+        int scale = stripped.scale();
+        return scale < -20 || scale > 30 ? stripped.toString() : stripped.toPlainString();
+    }
+
+    /**
+     * {@code unscaled / 10^scale} while it fits in a long, otherwise {@code big}.
+     */
+    private static final class Decimal {
+        final long unscaled;
+        final int scale;
+        final BigDecimal big;
+
+        Decimal(long unscaled, int scale) {
+            this.unscaled = unscaled;
+            this.scale = scale;
+            this.big = null;
+        }
+
+        Decimal(BigDecimal big) {
+            this.unscaled = 0;
+            this.scale = 0;
+            this.big = big;
+        }
+
+        BigDecimal toBig() {
+            return big != null ? big : BigDecimal.valueOf(unscaled, scale);
+        }
+    }
+
+    private Decimal value(Expression node) {
+        if (node instanceof Expression.Number) {
+            return literal((Expression.Number) node);
+        }
+        if (node instanceof Expression.Negate) {
+            Decimal operand = value(((Expression.Negate) node).operand);
+            if (operand.big == null && operand.unscaled != Long.MIN_VALUE) {
+                return new Decimal(-operand.unscaled, operand.scale);
+            }
+            return new Decimal(operand.toBig().negate());
+        }
+        if (node instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) node;
+            Decimal left = value(binary.left);
+            Decimal right = value(binary.right);
+            switch (binary.operator) {
+                case '+': return add(left, right, false);
+                case '-': return add(left, right, true);
+                case '*': return multiply(left, right);
+                case '/': return divide(left, right);
+                default: return power(left, right);
+            }
+        }
+        if (node instanceof Expression.Call) {
+            return call((Expression.Call) node);
+        }
+        node.evaluate(); // Throws for a variable
+        throw new AssertionError(node);
+    }
+
+    private Decimal literal(Expression.Number number) {
+        String text = number.text;
+        if (text == null) {
+            return new Decimal(BigDecimal.valueOf(number.value)); // pi, e
+        }
+        // Plain digits with an optional point: read straight into a long
+        long unscaled = 0;
+        int scale = -1;
+        int digits = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '.' && scale < 0) {
+                scale = 0;
+            } else if (c >= '0' && c <= '9' && digits < 18) {
+                unscaled = unscaled * 10 + (c - '0');
+                digits += unscaled == 0 ? 0 : 1; // Leading zeros don't count
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else {
+                return new Decimal(new BigDecimal(text)); // Exponent, or too many digits
+            }
+        }
+        return new Decimal(unscaled, Math.max(scale, 0));
+    }
+
+    private Decimal add(Decimal a, Decimal b, boolean subtract) {
+        if (a.big == null && b.big == null) {
+            try {
+                int scale = Math.max(a.scale, b.scale);
+                long x = scaleUp(a.unscaled, scale - a.scale);
+                long y = scaleUp(b.unscaled, scale - b.scale);
+                return new Decimal(subtract ? Math.subtractExact(x, y) : Math.addExact(x, y), scale);
+            } catch (ArithmeticException overflow) {
+                // Fall through to BigDecimal
+            }
+        }
+        return new Decimal(subtract ? a.toBig().subtract(b.toBig(), context) : a.toBig().add(b.toBig(), context));
+    }
+
+    private Decimal multiply(Decimal a, Decimal b) {
+        if (a.big == null && b.big == null && a.scale + b.scale <= MAX_FAST_SCALE) {
+            try {
+                return new Decimal(Math.multiplyExact(a.unscaled, b.unscaled), a.scale + b.scale);
+            } catch (ArithmeticException overflow) {
+                // Fall through to BigDecimal
+            }
+        }
+        return new Decimal(a.toBig().multiply(b.toBig(), context));
+    }
+
+    private Decimal divide(Decimal a, Decimal b) {
+        if (b.big == null ? b.unscaled == 0 : b.big.signum() == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        if (a.big == null && b.big == null
+                && a.unscaled % b.unscaled == 0 && !(a.unscaled == Long.MIN_VALUE && b.unscaled == -1)) {
+            try {
+                long quotient = a.unscaled / b.unscaled;
+                int scale = a.scale - b.scale;
+                return scale >= 0 ? new Decimal(quotient, scale) : new Decimal(scaleUp(quotient, -scale), 0);
+            } catch (ArithmeticException overflow) {
+                // Fall through to BigDecimal
+            }
+        }
+        return new Decimal(a.toBig().divide(b.toBig(), context));
+    }
+
+    private Decimal power(Decimal base, Decimal exponent) {
+        BigDecimal n = exponent.toBig();
+        try {
+            int whole = n.intValueExact(); // Throws unless a whole number in range
+            if (Math.abs(whole) <= 999_999_999) {
+                return new Decimal(base.toBig().pow(whole, context));
+            }
+        } catch (ArithmeticException notWhole) {
+            // Fall through to double
+        }
+        return new Decimal(toDecimal(Math.pow(base.toBig().doubleValue(), n.doubleValue())));
+    }
+
+    private Decimal call(Expression.Call call) {
+        BigDecimal a = value(call.arguments[0]).toBig();
+        BigDecimal b = call.arguments.length > 1 ? value(call.arguments[1]).toBig() : null;
+        switch (call.function) {
+            case SQRT:
+                if (a.signum() < 0) {
+                    throw new ArithmeticException("Square root of a negative number");
+                }
+                return new Decimal(a.sqrt(context));
+            case ABS:
+                return new Decimal(a.abs());
+            case MIN:
+                return new Decimal(a.min(b));
+            case MAX:
+                return new Decimal(a.max(b));
+            case POW:
+                return power(new Decimal(a), new Decimal(b));
+            default:
+                return new Decimal(toDecimal(call.function.apply(a.doubleValue(), 0)));
+        }
+    }
+
+    private BigDecimal toDecimal(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new ArithmeticException("Result is not a finite number");
+        }
+        return new BigDecimal(DoubleFormatter.format(value)).round(context); // Shortest digits, not the binary expansion
+    }
+
+    private static long scaleUp(long value, int places) {
+        if (places >= TEN_POWERS.length) {
+            throw new ArithmeticException("Too many places");
+        }
+        return Math.multiplyExact(value, TEN_POWERS[places]);
+    }
+}
@@ -0,0 +1,155 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+/**
+ * Times what the calculator does on '=' in its two modes over the same
+ * everyday input, sums and products of numbers with up to two decimals:
+ * in double mode, compile and evaluate, then format with
+ * {@link DoubleFormatter}; in exact mode, parse and evaluate with
+ * {@link PreciseEvaluator}, whose long fast path covers all of it, then
+ * format. It also times evaluation and formatting apart, and exact mode
+ * on divisions that don't come out even, which move to BigDecimal. Needs
+ * no database or display:
+ *
+ *     javac *.java && java PreciseEvaluatorBenchmark [seconds-per-way]
+ *
+ * Every exact result is checked against BigDecimal arithmetic, and every
+ * double against its formatted text read back. Exits with status 1 if one
+ * differs.
+ */
+class PreciseEvaluatorBenchmark {
+
+    private static final int INPUTS = 4_096; // More than the compiled-form cache holds, as typed input would be
+    private static final MathContext CONTEXT = new MathContext(34, RoundingMode.HALF_EVEN);
+
+    private static volatile Object sink; // Where the results go, so the work isn't optimized away
+
+    private interface Way {
+        Object run(int input);
+    }
+
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 2;
+
+        Random random = new Random(20);
+        String[] texts = new String[INPUTS];
+        Expression[] trees = new Expression[INPUTS];
+        BigDecimal[] exact = new BigDecimal[INPUTS];
+        String[] dividing = new String[INPUTS];
+        double[] doubles = new double[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            StringBuilder text = new StringBuilder();
+            exact[i] = sum(random, text);
+            texts[i] = text.toString();
+            trees[i] = ExpressionParser.parse(texts[i]);
+            doubles[i] = trees[i].evaluate();
+            dividing[i] = number(random, new StringBuilder()) + "/" + (3 + 4 * random.nextInt(5)); // By 3, 7, 11, 15 or 19
+        }
+
+        PreciseEvaluator precise = new PreciseEvaluator(CONTEXT);
+        String failure = null;
+        if (!PreciseEvaluator.format(precise.evaluate(ExpressionParser.parse("0.1+0.2"))).equals("0.3")) {
+            failure = "0.1+0.2 is not 0.3 in exact mode";
+        }
+        for (int i = 0; i < INPUTS && failure == null; i++) {
+            BigDecimal result = precise.evaluate(trees[i]);
+            if (result.compareTo(exact[i]) != 0) {
+                failure = texts[i] + " is " + result + " in exact mode, " + exact[i] + " in BigDecimal";
+            }
+            BigDecimal divided = precise.evaluate(ExpressionParser.parse(dividing[i]));
+            String[] parts = dividing[i].split("/");
+            BigDecimal expected = new BigDecimal(parts[0]).divide(new BigDecimal(parts[1]), CONTEXT);
+            if (divided.compareTo(expected) != 0) {
+                failure = dividing[i] + " is " + divided + " in exact mode, " + expected + " in BigDecimal";
+            }
+            String shown = DoubleFormatter.format(doubles[i]);
+            if (Double.compare(Double.parseDouble(shown), doubles[i]) != 0
+                    || shown.length() > Double.toString(doubles[i]).length()) {
+                failure = doubles[i] + " is shown as " + shown;
+            }
+        }
+        if (failure != null) {
+            System.out.println("FAILED: " + failure);
+            System.exit(1);
+        }
+
+        String[] labels = {
+            "'=' in double mode", "'=' in exact mode", "'=' exact, dividing",
+            "evaluate double", "evaluate exact",
+            "String.valueOf", "DoubleFormatter", "exact format"};
+        Way[] ways = {
+            i -> DoubleFormatter.format(CompiledExpression.compile(texts[i]).evaluate()),
+            i -> PreciseEvaluator.format(precise.evaluate(ExpressionParser.parse(texts[i]))),
+            i -> PreciseEvaluator.format(precise.evaluate(ExpressionParser.parse(dividing[i]))),
+            i -> trees[i].evaluate(),
+            i -> precise.evaluate(trees[i]),
+            i -> String.valueOf(doubles[i]),
+            i -> DoubleFormatter.format(doubles[i]),
+            i -> PreciseEvaluator.format(exact[i])};
+        double[] nanos = new double[ways.length];
+        for (int round = 0; round < 2; round++) { // The first round warms the JIT
+            for (int w = 0; w < ways.length; w++) {
+                nanos[w] = run(ways[w], round == 0 ? seconds / 4 : seconds);
+            }
+        }
+        System.out.println(INPUTS + " inputs such as " + texts[0] + " and " + dividing[0]);
+        for (int w = 0; w < ways.length; w++) {
+            System.out.printf("%-22s %,9.1f ns%n", labels[w], nanos[w]);
+        }
+        System.out.printf("exact mode's '=' takes %.2fx double mode's%n", nanos[1] / nanos[0]);
+        System.out.println("All results match BigDecimal, and every double reads back from its text");
+        System.out.println("OK");
+    }
+
+    /**
+     * Two to six products joined by + and -, written into {@code text}.
+     *
+     * @return its exact value
+     */
+    private static BigDecimal sum(Random random, StringBuilder text) {
+        BigDecimal value = product(random, text);
+        for (int terms = 1 + random.nextInt(5); terms > 0; terms--) {
+            boolean plus = random.nextBoolean();
+            text.append(plus ? '+' : '-');
+            BigDecimal term = product(random, text);
+            value = plus ? value.add(term) : value.subtract(term);
+        }
+        return value;
+    }
+
+    private static BigDecimal product(Random random, StringBuilder text) {
+        BigDecimal value = number(random, text);
+        for (int factors = random.nextInt(3); factors > 0; factors--) {
+            text.append('*');
+            value = value.multiply(number(random, text));
+        }
+        return value;
+    }
+
+    /**
+     * A number of up to five digits with none, one or two decimals.
+     */
+    private static BigDecimal number(Random random, StringBuilder text) {
+        BigDecimal value = BigDecimal.valueOf(random.nextInt(100_000), random.nextInt(3));
+        text.append(value.toPlainString());
+        return value;
+    }
+
+    /**
+     * @return nanoseconds an input
+     */
+    private static double run(Way way, double seconds) {
+        long done = 0;
+        long start = System.nanoTime();
+        long deadline = start + (long) (seconds * 1e9);
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < INPUTS; i++) {
+                sink = way.run(i);
+            }
+            done += INPUTS;
+        }
+        return (System.nanoTime() - start) / (double) done;
+    }
+}
@@ -0,0 +1,566 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DataTruncation;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Durable local queue between the registration form and the database.
+ *
+ * {@link #submit} appends the registration to 'registrations.spool' and
+ * forces it to disk, then returns; the form never waits on the database.
+ * A flusher thread drains the spool into the 'students' table in batches,
+ * backing off and retrying while the database is unreachable. A batch
+ * that fails for any other reason is sent again one row at a time, and a
+ * row the database refuses outright (too long, say) is moved to
+ * 'registrations.rejected' so the rows behind it aren't held up. Each
+ * registration carries a client-generated id with a unique key, so a batch
+ * that is re-sent after a crash or a lost commit reply inserts nothing
+ * twice. A registration whose email turns out to be in the table already
+ * inserts nothing either; it and rejected ones are handed to a listener. 'registrations.offset' records how much of the spool has reached
+ * the database; the spool is emptied once all of it has.
+ */
+class RegistrationSpool {
+
+    private static final int BATCH_SIZE = 200;
+    private static final long MIN_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final int LATENCY_SAMPLES = 1024;
+    static final int MAX_NAME_LENGTH = 255;
+    static final int MAX_EMAIL_LENGTH = 255;
+    static final int MAX_PHONE_LENGTH = 50;
+    static final String REJECTED_FILE = "registrations.rejected";
+
+    private static final String INSERT_SQL =
+        "INSERT INTO students (client_id, name, email, phone, course) VALUES (?, ?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE client_id = client_id"; // Sent by an earlier attempt, or a duplicate email
+
+    /**
+     * Why a spooled registration never made it into the table.
+     */
+    enum Drop { DUPLICATE, REJECTED }
+
+    /**
+     * A spooled registration and where it ends in the spool file.
+     */
+    private static final class Pending {
+        final String clientId;
+        final Student student;
+        final long endOffset;
+
+        Pending(String clientId, Student student, long endOffset) {
+            this.clientId = clientId;
+            this.student = student;
+            this.endOffset = endOffset;
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final Path directory;
+    private final FileChannel spool;
+    private final FileChannel offsetFile;
+    private final Thread flusher;
+    private final BiConsumer<Student, Drop> dropped;
+    private boolean tablesReady; // Flusher thread only
+
+    // Guarded by this
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private long spoolEnd;
+    private final long[] ackLatencies = new long[LATENCY_SAMPLES]; // Ring of recent submit times, nanos
+    private long submitted;
+    private long flushedRows;
+    private long flushNanos;
+    private long rejectedRows;
+    private long duplicateRows;
+    private SQLException lastError;
+
+    /**
+     * @param dropped called on the flusher thread for each registration that
+     *        was not inserted, because its email was already registered or
+     *        the database refused it
+     */
+    RegistrationSpool(Path directory, ConnectionPool pool, BiConsumer<Student, Drop> dropped) throws IOException {
+        this.pool = pool;
+        this.directory = directory;
+        this.dropped = dropped;
+        Files.createDirectories(directory);
+        spool = FileChannel.open(directory.resolve("registrations.spool"),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        offsetFile = FileChannel.open(directory.resolve("registrations.offset"),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+
+        flusher = new Thread(this::flushLoop, "registration-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Creates the 'students' table if it doesn't exist, and adds the client
+     * id and email keys to tables created by older versions. A registration
+     * whose email is already in the table is dropped by the email key.
+     */
+    static void createTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            String sql = "CREATE TABLE IF NOT EXISTS students (" +
+                         "id INT PRIMARY KEY AUTO_INCREMENT, " +
+                         "client_id CHAR(36), " +
+                         "name VARCHAR(" + MAX_NAME_LENGTH + ") NOT NULL, " +
+                         "email VARCHAR(" + MAX_EMAIL_LENGTH + ") NOT NULL, " +
+                         "phone VARCHAR(" + MAX_PHONE_LENGTH + ") NOT NULL, " +
+                         "course VARCHAR(100) NOT NULL, " +
+                         "UNIQUE KEY uk_students_client_id (client_id), " +
+                         "UNIQUE KEY uk_students_email (email))";
+            stmt.executeUpdate(sql);
+
+            boolean hasClientId = false;
+            try (ResultSet columns = conn.getMetaData().getColumns(null, null, "students", "client_id")) {
+                hasClientId = columns.next();
+            }
+            if (!hasClientId) {
+                // Rows from before the spool keep a NULL id, which the unique key allows
+                stmt.executeUpdate("ALTER TABLE students ADD COLUMN client_id CHAR(36), " +
+                                   "ADD UNIQUE KEY uk_students_client_id (client_id)");
+            }
+
+            boolean hasEmailKey = false;
+            try (ResultSet indexes = conn.getMetaData().getIndexInfo(null, null, "students", true, false)) {
+                while (indexes.next()) {
+                    hasEmailKey |= "uk_students_email".equalsIgnoreCase(indexes.getString("INDEX_NAME"));
+                }
+            }
+            if (!hasEmailKey) {
+                try {
+                    stmt.executeUpdate("ALTER TABLE students ADD UNIQUE KEY uk_students_email (email)");
+                } catch (SQLException ex) {
+                    // Older data already has duplicates; the email index still stops new ones
+                    System.err.println("Could not add a unique key on students.email: " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Spools a registration durably. Once this returns it will reach the
+     * database exactly once, even across restarts.
+     */
+    void submit(Student student) throws IOException {
+        long start = System.nanoTime();
+        String clientId = UUID.randomUUID().toString();
+        byte[] record = encode(clientId, student);
+        synchronized (this) {
+            spool.write(ByteBuffer.wrap(record), spoolEnd);
+            spool.force(false);
+            spoolEnd += record.length;
+            pending.addLast(new Pending(clientId, student, spoolEnd));
+            ackLatencies[(int) (submitted++ % LATENCY_SAMPLES)] = System.nanoTime() - start;
+            notifyAll(); // Wake the flusher
+        }
+    }
+
+    /**
+     * Registrations spooled but not yet in the database.
+     */
+    synchronized void forEachPending(Consumer<Student> action) {
+        for (Pending entry : pending) {
+            action.accept(entry.student);
+        }
+    }
+
+    /**
+     * One-line summary for the form's status bar.
+     */
+    synchronized String status() {
+        int samples = (int) Math.min(submitted, LATENCY_SAMPLES);
+        StringBuilder text = new StringBuilder();
+        text.append("Queued: ").append(pending.size());
+        if (samples > 0) {
+            long[] sorted = Arrays.copyOf(ackLatencies, samples);
+            Arrays.sort(sorted);
+            text.append(String.format(" | Ack p50 %.1f ms, p99 %.1f ms",
+                sorted[(samples - 1) / 2] / 1e6, sorted[(int) Math.ceil(samples * 0.99) - 1] / 1e6));
+        }
+        if (flushedRows > 0) {
+            text.append(String.format(" | Saved %d (%.0f rows/s)", flushedRows, flushedRows / (flushNanos / 1e9)));
+        }
+        if (duplicateRows > 0) {
+            text.append(" | Already registered ").append(duplicateRows);
+        }
+        if (rejectedRows > 0) {
+            text.append(" | Rejected ").append(rejectedRows).append(", see ").append(REJECTED_FILE);
+        }
+        if (lastError != null) {
+            text.append(isTransient(lastError) ? " | Database unavailable, retrying"
+                                               : " | Database error, retrying: " + lastError.getMessage());
+        }
+        return text.toString();
+    }
+
+    private void flushLoop() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (true) {
+            List<Pending> batch = new ArrayList<>(BATCH_SIZE);
+            synchronized (this) {
+                while (pending.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                for (Pending entry : pending) {
+                    batch.add(entry);
+                    if (batch.size() == BATCH_SIZE) {
+                        break;
+                    }
+                }
+            }
+
+            SQLException failure = null;
+            try {
+                long start = System.nanoTime();
+                List<Pending> duplicates = insert(batch);
+                saved(batch, batch.size() - duplicates.size(), System.nanoTime() - start);
+                duplicates.forEach(this::duplicate);
+            } catch (SQLException ex) {
+                failure = ex;
+            }
+            if (failure != null && !isTransient(failure)) {
+                // Maybe one row the database will never take; send them singly to find it
+                try {
+                    insertEach(batch);
+                    failure = null;
+                } catch (SQLException ex) {
+                    failure = ex;
+                }
+            }
+            if (failure == null) {
+                backoff = MIN_BACKOFF_MILLIS;
+                continue;
+            }
+
+            synchronized (this) {
+                lastError = failure;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException interrupted) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * Inserts a batch in one transaction. Returns the rows that inserted
+     * nothing because their email was already registered.
+     */
+    private List<Pending> insert(List<Pending> batch) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            ensureTables(conn);
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                for (Pending entry : batch) {
+                    bind(pstmt, entry);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                // Update counts can't tell a no-op from an insert: Connector/J reports found rows, so both
+                // count 1, and a rewritten batch reports no per-row counts at all. Ask the table instead.
+                List<Pending> duplicates = missing(conn, batch);
+                conn.commit();
+                return duplicates;
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * The rows of a batch whose client id is not in the table.
+     */
+    private static List<Pending> missing(Connection conn, List<Pending> rows) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT client_id FROM students WHERE client_id IN (");
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        Set<String> present = new HashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.append(')').toString())) {
+            for (int i = 0; i < rows.size(); i++) {
+                pstmt.setString(i + 1, rows.get(i).clientId);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    present.add(rs.getString(1));
+                }
+            }
+        }
+        List<Pending> missing = new ArrayList<>();
+        for (Pending entry : rows) {
+            if (!present.contains(entry.clientId)) {
+                missing.add(entry);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Inserts a batch one row per transaction, moving rows the database
+     * rejects for their data to the rejected file. Any other failure is
+     * thrown; the rows before it are already saved.
+     */
+    private void insertEach(List<Pending> batch) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            ensureTables(conn);
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                for (Pending entry : batch) {
+                    long start = System.nanoTime();
+                    bind(pstmt, entry);
+                    try {
+                        pstmt.executeUpdate();
+                    } catch (SQLException ex) {
+                        if (!isRowError(ex)) {
+                            throw ex;
+                        }
+                        reject(entry, ex.getMessage());
+                        continue;
+                    }
+                    List<Pending> row = Collections.singletonList(entry);
+                    boolean duplicate = !missing(conn, row).isEmpty();
+                    saved(row, duplicate ? 0 : 1, System.nanoTime() - start);
+                    if (duplicate) {
+                        duplicate(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    private void ensureTables(Connection conn) throws SQLException {
+        if (!tablesReady) {
+            createTables(conn);
+            tablesReady = true;
+        }
+    }
+
+    private static void bind(PreparedStatement pstmt, Pending entry) throws SQLException {
+        pstmt.setString(1, entry.clientId);
+        pstmt.setString(2, entry.student.getName());
+        pstmt.setString(3, entry.student.getEmail());
+        pstmt.setString(4, entry.student.getPhone());
+        pstmt.setString(5, entry.student.getCourse());
+    }
+
+    /**
+     * Appends a registration the database refused to the rejected file, with
+     * the reason, and drops it from the spool.
+     */
+    private void reject(Pending entry, String reason) throws SQLException {
+        byte[] record = encode(entry.clientId, entry.student);
+        String line = new String(record, 0, record.length - 1, StandardCharsets.UTF_8) + '\t' + escape(String.valueOf(reason)) + '\n';
+        try (FileChannel rejected = FileChannel.open(directory.resolve(REJECTED_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            rejected.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+            rejected.force(false);
+        } catch (IOException ex) {
+            // Keep the row in the spool rather than lose it
+            throw new SQLException("Could not write " + REJECTED_FILE + ": " + ex.getMessage(), ex);
+        }
+        System.err.println("Rejected registration for " + entry.student.getEmail() + ": " + reason);
+        synchronized (this) {
+            rejectedRows++;
+        }
+        saved(Collections.singletonList(entry), 0, 0);
+        dropped.accept(entry.student, Drop.REJECTED);
+    }
+
+    private void duplicate(Pending entry) {
+        System.err.println("Registration for " + entry.student.getEmail() + " dropped: email already registered");
+        synchronized (this) {
+            duplicateRows++;
+        }
+        dropped.accept(entry.student, Drop.DUPLICATE);
+    }
+
+    /**
+     * Moves the spool past rows that are done with, {@code saved} of them inserted.
+     */
+    private void saved(List<Pending> rows, int saved, long elapsedNanos) {
+        try {
+            commitOffset(rows, saved, elapsedNanos);
+        } catch (IOException ex) {
+            // The rows are in; re-sending them after a restart is harmless
+            System.err.println("Could not record spool progress: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * True for a failure that says nothing about the rows, such as a lost
+     * connection or a lock timeout, so the same batch can simply be retried.
+     */
+    private static boolean isTransient(SQLException ex) {
+        for (Throwable cause = ex; cause != null; cause = next(cause)) {
+            if (cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if the database refused the row itself: a value too long or out
+     * of range (SQLState class 22), or a constraint it breaks (class 23).
+     */
+    private static boolean isRowError(SQLException ex) {
+        for (Throwable cause = ex; cause != null; cause = next(cause)) {
+            String state = cause instanceof SQLException ? ((SQLException) cause).getSQLState() : null;
+            if (cause instanceof SQLDataException || cause instanceof SQLIntegrityConstraintViolationException
+                    || cause instanceof DataTruncation
+                    || state != null && (state.startsWith("22") || state.startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Throwable next(Throwable cause) {
+        if (cause instanceof SQLException && ((SQLException) cause).getNextException() != null) {
+            return ((SQLException) cause).getNextException();
+        }
+        return cause.getCause();
+    }
+
+    private synchronized void commitOffset(List<Pending> done, int saved, long elapsedNanos) throws IOException {
+        for (int i = 0; i < done.size(); i++) {
+            pending.removeFirst(); // Only the flusher removes, so these are the rows done
+        }
+        flushedRows += saved;
+        flushNanos += elapsedNanos;
+        lastError = null;
+
+        if (pending.isEmpty()) {
+            // Everything is in the database; start the spool over
+            writeOffset(0);
+            spool.truncate(0);
+            spool.force(false);
+            spoolEnd = 0;
+        } else {
+            writeOffset(done.get(done.size() - 1).endOffset);
+        }
+    }
+
+    private void writeOffset(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, offset);
+        offsetFile.write(buffer, 0);
+        offsetFile.force(false);
+    }
+
+    /**
+     * Loads the registrations spooled after the recorded offset. A torn
+     * record at the end, from a crash mid-write, was never acknowledged and
+     * is cut off.
+     */
+    private void recover() throws IOException {
+        long offset = 0;
+        if (offsetFile.size() >= Long.BYTES) {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            offsetFile.read(buffer, 0);
+            offset = buffer.getLong(0);
+        }
+        long size = spool.size();
+        if (offset > size) {
+            offset = 0; // Spool was emptied after the offset was written; nothing is lost
+        }
+
+        byte[] bytes = new byte[(int) (size - offset)];
+        spool.read(ByteBuffer.wrap(bytes), offset);
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            Pending entry = decode(new String(bytes, start, i - start, StandardCharsets.UTF_8), offset + i + 1);
+            if (entry == null) {
+                break;
+            }
+            pending.addLast(entry);
+            start = i + 1;
+        }
+        spoolEnd = offset + start;
+        spool.truncate(spoolEnd);
+    }
+
+    /**
+     * Encodes a registration as one tab-separated line ending in its CRC32.
+     */
+    private static byte[] encode(String clientId, Student student) {
+        String fields = clientId + '\t' + escape(student.getName()) + '\t' + escape(student.getEmail()) + '\t'
+            + escape(student.getPhone()) + '\t' + escape(student.getCourse());
+        CRC32 crc = new CRC32();
+        byte[] body = fields.getBytes(StandardCharsets.UTF_8);
+        crc.update(body);
+        return (fields + '\t' + Long.toHexString(crc.getValue()) + '\n').getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Pending decode(String line, long endOffset) {
+        int lastTab = line.lastIndexOf('\t');
+        if (lastTab < 0) {
+            return null;
+        }
+        String fields = line.substring(0, lastTab);
+        CRC32 crc = new CRC32();
+        crc.update(fields.getBytes(StandardCharsets.UTF_8));
+        if (!Long.toHexString(crc.getValue()).equals(line.substring(lastTab + 1))) {
+            return null;
+        }
+        String[] parts = fields.split("\t", -1);
+        if (parts.length != 5) {
+            return null;
+        }
+        Student student = new Student(unescape(parts[1]), unescape(parts[2]), unescape(parts[3]), unescape(parts[4]));
+        return new Pending(parts[0], student, endOffset);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder text = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                text.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                text.append(c);
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Submits registrations to a {@link RegistrationSpool} from several threads,
+ * as a room of terminals would during the enrollment rush, and reports the
+ * p50 and p99 time from submit to acknowledgement, then how fast the
+ * flusher drains them into the database in rows per second. For
+ * comparison it first times registrations the way the form used to make
+ * them, with a connection and an INSERT for each. Runs against an
+ * in-memory H2 database in MySQL mode by default; give it a URL to measure
+ * a real server, but a scratch one, as it writes to the students table:
+ *
+ *     javac *.java && java -cp .:h2.jar RegistrationSpoolBenchmark [threads] [registrations] [url user password]
+ *
+ * The spool goes in a temporary directory unless -Dregistration.spool.dir
+ * names one; put it on the disk the terminals use, as every submit waits
+ * for it. Without a JDBC driver only the acknowledgements are measured,
+ * and the spool is reopened to check they were all kept. Exits with
+ * status 1 if a registration is lost or inserted twice.
+ */
+class RegistrationSpoolBenchmark {
+
+    private static final int DIRECT_REGISTRATIONS = 500;
+    private static final long DRAIN_TIMEOUT_MILLIS = 300_000;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        String url = args.length > 2 ? args[2] : "jdbc:h2:mem:spool_bench;MODE=MySQL;DB_CLOSE_DELAY=-1";
+        String user = args.length > 3 ? args[3] : "";
+        String password = args.length > 4 ? args[4] : "";
+        String spoolDir = System.getProperty("registration.spool.dir");
+        Path directory = spoolDir != null ? Paths.get(spoolDir) : Files.createTempDirectory("spool-bench");
+        String tag = "bench" + System.currentTimeMillis(); // Marks this run's rows in the table
+
+        boolean database = true;
+        try {
+            DriverManager.getDriver(url);
+        } catch (SQLException ex) {
+            System.out.println("No JDBC driver for " + url + "; measuring acknowledgements only");
+            database = false;
+        }
+
+        if (database) {
+            try (Connection conn = DriverManager.getConnection(url, user, password)) {
+                RegistrationSpool.createTables(conn);
+            }
+            long[] direct = new long[DIRECT_REGISTRATIONS];
+            for (int i = 0; i < DIRECT_REGISTRATIONS; i++) {
+                long start = System.nanoTime();
+                try (Connection conn = DriverManager.getConnection(url, user, password);
+                     PreparedStatement pstmt = conn.prepareStatement(
+                         "INSERT INTO students (name, email, phone, course) VALUES (?, ?, ?, ?)")) {
+                    Student student = student(tag + "direct", i); // Not matched by the check of the spooled rows
+                    pstmt.setString(1, student.getName());
+                    pstmt.setString(2, student.getEmail());
+                    pstmt.setString(3, student.getPhone());
+                    pstmt.setString(4, student.getCourse());
+                    pstmt.executeUpdate();
+                }
+                direct[i] = System.nanoTime() - start;
+            }
+            report("INSERT per click", direct);
+        }
+
+        ConnectionPool pool = new ConnectionPool(url, user, password, 0, 2, 60_000L);
+        RegistrationSpool spool = new RegistrationSpool(directory, pool, (student, drop) -> { });
+        long[] latencies = new long[count];
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> submitters = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            Thread submitter = new Thread(() -> {
+                try {
+                    go.await();
+                    for (int i = first; i < count; i += threads) {
+                        long start = System.nanoTime();
+                        spool.submit(student(tag, i));
+                        latencies[i] = System.nanoTime() - start;
+                    }
+                } catch (IOException ex) {
+                    failure.compareAndSet(null, ex);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "submitter-" + t);
+            submitters.add(submitter);
+            submitter.start();
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+        long submitNanos = System.nanoTime() - start;
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        report("spool submit", latencies);
+        System.out.printf("%-18s %,10.0f submits/s on %d threads%n", "", count / (submitNanos / 1e9), threads);
+
+        String lost;
+        if (database) {
+            long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+            while (pending(spool) > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            long drainNanos = System.nanoTime() - start;
+            System.out.printf("%-18s %,10.0f rows/s, all %,d in %,d ms from the first submit%n", "flushed",
+                count / (drainNanos / 1e9), count, drainNanos / 1_000_000);
+            System.out.println(spool.status());
+            lost = checkTable(url, user, password, tag, count);
+        } else {
+            // A second spool on the same files recovers what a restart would
+            RegistrationSpool reopened = new RegistrationSpool(directory, pool, (student, drop) -> { });
+            int kept = pending(reopened);
+            lost = kept == count ? null : kept + " registrations in the spool after reopening it, " + count + " submitted";
+            if (lost == null) {
+                System.out.println("All " + count + " registrations are in the spool; not flushed");
+            }
+        }
+        pool.shutdown();
+        if (spoolDir == null) {
+            deleteSpool(directory);
+        }
+        if (lost != null) {
+            System.out.println("FAILED: " + lost);
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private static Student student(String tag, int i) {
+        return new Student("Student " + i, tag + "-" + i + "@example.edu", "555-" + (1000 + i % 9000), "Course " + i % 12);
+    }
+
+    private static int pending(RegistrationSpool spool) {
+        int[] pending = new int[1];
+        spool.forEachPending(student -> pending[0]++);
+        return pending[0];
+    }
+
+    /**
+     * @return what is wrong with this run's rows in the table, or null
+     */
+    private static String checkTable(String url, String user, String password, String tag, int count)
+            throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             PreparedStatement pstmt = conn.prepareStatement(
+                 "SELECT COUNT(*), COUNT(DISTINCT client_id), COUNT(DISTINCT email) FROM students WHERE email LIKE ?")) {
+            pstmt.setString(1, tag + "-%@example.edu");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                long rows = rs.getLong(1);
+                if (rows != count || rs.getLong(2) != count || rs.getLong(3) != count) {
+                    return rows + " rows with " + rs.getLong(2) + " client ids and " + rs.getLong(3)
+                        + " emails in the table, " + count + " submitted";
+                }
+            }
+        }
+        System.out.println("Every registration is in the table exactly once");
+        return null;
+    }
+
+    private static void report(String label, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-18s p50 %,8.2f ms  p99 %,8.2f ms  max %,8.2f ms%n", label, sorted[(sorted.length - 1) / 2] / 1e6,
+            sorted[(int) Math.ceil(sorted.length * 0.99) - 1] / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static void deleteSpool(Path directory) throws IOException {
+        for (String name : new String[] {"registrations.spool", "registrations.offset", RegistrationSpool.REJECTED_FILE}) {
+            Files.deleteIfExists(directory.resolve(name));
+        }
+        Files.deleteIfExists(directory);
+    }
+}
@@ -0,0 +1,186 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Registrar's view of the students table, filtered by course and name.
+ *
+ * Rows arrive a page at a time: the first page when the filter is applied,
+ * and the next one whenever the table is scrolled near the last loaded row.
+ */
+class RosterBrowser extends JFrame {
+
+    private static final String ALL_COURSES = "All courses";
+
+    private final StudentRoster roster;
+    private final JComboBox<String> courseFilter;
+    private final JTextField nameFilter;
+    private final JLabel statusLabel;
+    private final RosterTableModel model = new RosterTableModel();
+    private final ExecutorService dbExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "roster-db");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    RosterBrowser(StudentRoster roster, String[] courses) {
+        this.roster = roster;
+        setTitle("Student Roster");
+        setSize(700, 500);
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        setLocationRelativeTo(null);
+
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        courseFilter = new JComboBox<>();
+        courseFilter.addItem(ALL_COURSES);
+        for (String course : courses) {
+            courseFilter.addItem(course);
+        }
+        nameFilter = new JTextField(15);
+        JButton searchButton = new JButton("Search");
+        filterPanel.add(new JLabel("Course:"));
+        filterPanel.add(courseFilter);
+        filterPanel.add(new JLabel("Name starts with:"));
+        filterPanel.add(nameFilter);
+        filterPanel.add(searchButton);
+        add(filterPanel, BorderLayout.NORTH);
+
+        JTable table = new JTable(model);
+        JScrollPane scrollPane = new JScrollPane(table);
+        add(scrollPane, BorderLayout.CENTER);
+
+        statusLabel = new JLabel(" ");
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(0, 10, 5, 10));
+        add(statusLabel, BorderLayout.SOUTH);
+
+        searchButton.addActionListener(e -> search());
+        nameFilter.addActionListener(e -> search());
+        courseFilter.addActionListener(e -> search());
+        scrollPane.getViewport().addChangeListener(e -> {
+            int lastVisible = table.rowAtPoint(new Point(0, scrollPane.getViewport().getViewRect().y
+                + scrollPane.getViewport().getExtentSize().height - 1));
+            if (lastVisible < 0 || lastVisible >= model.getRowCount() - StudentRoster.PAGE_SIZE / 2) {
+                model.requestNextPage(); // Near the bottom, or the loaded rows don't fill the view
+            }
+        });
+
+        search();
+    }
+
+    /**
+     * Lets the page loader thread end with the window; a page still loading
+     * finishes, and is dropped.
+     */
+    @Override
+    public void dispose() {
+        model.generation++;
+        dbExecutor.shutdown();
+        super.dispose();
+    }
+
+    private void search() {
+        String course = (String) courseFilter.getSelectedItem();
+        model.reset(ALL_COURSES.equals(course) ? null : course, nameFilter.getText().trim());
+    }
+
+    /**
+     * Rows loaded so far for the current filter. Confined to the EDT.
+     */
+    private class RosterTableModel extends AbstractTableModel {
+        private final String[] columns = { "Name", "Email", "Phone", "Course" };
+        private final List<StudentRoster.Entry> rows = new ArrayList<>();
+        private String course;
+        private String namePrefix = "";
+        private int generation = 0; // Bumped on reset so in-flight page loads are dropped
+        private boolean loading;
+        private boolean exhausted;
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            Student student = rows.get(rowIndex).student;
+            switch (columnIndex) {
+                case 0: return student.getName();
+                case 1: return student.getEmail();
+                case 2: return student.getPhone();
+                default: return student.getCourse();
+            }
+        }
+
+        void reset(String newCourse, String newNamePrefix) {
+            generation++;
+            course = newCourse;
+            namePrefix = newNamePrefix;
+            rows.clear();
+            loading = false;
+            exhausted = false;
+            fireTableDataChanged();
+            requestNextPage();
+        }
+
+        void requestNextPage() {
+            if (loading || exhausted || dbExecutor.isShutdown()) {
+                return;
+            }
+            loading = true;
+            int requestGeneration = generation;
+            String requestCourse = course;
+            String requestPrefix = namePrefix;
+            StudentRoster.Entry after = rows.isEmpty() ? null : rows.get(rows.size() - 1);
+            dbExecutor.execute(() -> {
+                long start = System.nanoTime();
+                List<StudentRoster.Entry> page = null;
+                String error = null;
+                try {
+                    page = roster.page(requestCourse, requestPrefix, after, StudentRoster.PAGE_SIZE);
+                } catch (SQLException ex) {
+                    error = ex.getMessage();
+                }
+                long micros = (System.nanoTime() - start) / 1_000;
+                boolean cached = roster.isCached(requestCourse);
+                List<StudentRoster.Entry> loaded = page;
+                String failure = error;
+                SwingUtilities.invokeLater(() -> pageLoaded(requestGeneration, loaded, failure, micros, cached));
+            });
+        }
+
+        private void pageLoaded(int requestGeneration, List<StudentRoster.Entry> page, String error, long micros,
+                                boolean cached) {
+            if (requestGeneration != generation) {
+                return; // Filter changed while this page was loading
+            }
+            loading = false;
+            if (page == null) {
+                statusLabel.setText("Could not load students: " + error);
+                return;
+            }
+            exhausted = page.size() < StudentRoster.PAGE_SIZE;
+            if (!page.isEmpty()) {
+                int first = rows.size();
+                rows.addAll(page);
+                fireTableRowsInserted(first, rows.size() - 1);
+            }
+            statusLabel.setText(String.format("%d students%s | Last page %.1f ms from %s", rows.size(),
+                exhausted ? "" : " loaded", micros / 1000.0, cached ? "memory" : "database"));
+        }
+    }
+}
@@ -0,0 +1,512 @@
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Seats per course, handed out without a database lock per click.
+ *
+ * 'course_seats' holds each course's capacity and the number of seats taken
+ * by all terminals together. A terminal claims seats from it in small blocks
+ * with a conditional update, so the table can never hand out more than the
+ * capacity, and sells from its claimed seats with a compare-and-set on a
+ * local counter. Claims, and seats given back, are sent in one batch a
+ * second, sized by the demand seen in the last second.
+ *
+ * A seat is first {@link #reserve reserved}, then {@link #confirm confirmed}
+ * once the registration is saved, or released. A student who finds a course
+ * full can join its waitlist; when a seat frees up it is held for the first
+ * waiting student and {@code offered} to them, and the hold expires if they
+ * do not take it in time. The waitlist lives in this terminal only.
+ *
+ * Seats a terminal claimed but never sold are given back when it closes.
+ * A terminal that dies takes a block or so per course with it, until
+ * 'taken' is set back to the number of students in the course.
+ */
+class SeatAllocator {
+
+    private static final long HOLD_MILLIS = 5 * 60_000L; // Time a waitlisted student has to take a seat
+    private static final long RECONCILE_MILLIS = 1_000L;
+    private static final long MAX_LOAD_BACKOFF_MILLIS = 30_000L;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+    private static final int CLAIM_BLOCK = 5; // Seats kept claimed per course when demand is low
+
+    enum State { HELD, CONFIRMED, RELEASED }
+
+    /**
+     * One seat in one course, from reservation until it is released.
+     */
+    static final class Reservation {
+        final String course;
+        final long expiresAt;
+        private final AtomicReference<State> state = new AtomicReference<>(State.HELD);
+
+        private Reservation(String course, long expiresAt) {
+            this.course = course;
+            this.expiresAt = expiresAt;
+        }
+
+        State state() {
+            return state.get();
+        }
+    }
+
+    private static final class Course {
+        final String name;
+        volatile int capacity;
+        volatile int unclaimed; // Seats no terminal has claimed, as of the last reconcile
+        final AtomicInteger free = new AtomicInteger(); // Claimed by this terminal and neither held nor sold
+        final AtomicInteger demand = new AtomicInteger(); // Reservations asked for since the last reconcile
+        final Queue<Student> waitlist = new ConcurrentLinkedQueue<>();
+
+        Course(String name, int capacity) {
+            this.name = name;
+            this.capacity = capacity;
+        }
+    }
+
+    private final Map<String, Course> courses = new LinkedHashMap<>(); // Fixed after construction
+    private final Map<Reservation, Boolean> held = new ConcurrentHashMap<>();
+    private final BiConsumer<Reservation, Student> offered;
+    private final ScheduledExecutorService scheduler;
+    private volatile ConnectionPool pool; // Null without a database
+    private volatile boolean ready;
+
+    /**
+     * @param defaultCapacity seats for a course with no row in 'course_seats'
+     * @param offered called with a held seat for each student taken off a
+     *        waitlist; it should confirm or release the seat before the hold
+     *        expires. May be called on any thread.
+     */
+    SeatAllocator(String[] courseNames, int defaultCapacity, BiConsumer<Reservation, Student> offered) {
+        for (String name : courseNames) {
+            courses.put(name, new Course(name, defaultCapacity));
+        }
+        this.offered = offered;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "seat-allocator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets up 'course_seats' and claims the first seats in the background,
+     * retrying until the database answers, then reconciles every second and
+     * expires holds.
+     */
+    void start(ConnectionPool pool) {
+        this.pool = pool;
+        scheduler.execute(new Runnable() {
+            private long backoff = 500;
+
+            @Override
+            public void run() {
+                try {
+                    load();
+                    reconcile();
+                } catch (SQLException ex) {
+                    System.err.println("Could not load course seats: " + ex.getMessage());
+                    scheduler.schedule(this, backoff, TimeUnit.MILLISECONDS);
+                    backoff = Math.min(backoff * 2, MAX_LOAD_BACKOFF_MILLIS);
+                    return;
+                }
+                ready = true;
+                scheduler.scheduleWithFixedDelay(SeatAllocator.this::reconcileQuietly, RECONCILE_MILLIS,
+                    RECONCILE_MILLIS, TimeUnit.MILLISECONDS);
+                scheduler.scheduleWithFixedDelay(SeatAllocator.this::expireHolds, 1, 1, TimeUnit.SECONDS);
+            }
+        });
+    }
+
+    /**
+     * Hands out seats at the default capacities, with none taken, without
+     * touching a database. For {@link SeatAllocatorStressCheck}.
+     */
+    void startWithoutDatabase() {
+        for (Course c : courses.values()) {
+            c.free.set(c.capacity);
+        }
+        ready = true;
+        scheduler.scheduleWithFixedDelay(this::expireHolds, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Gives the seats this terminal claimed but did not sell back to the
+     * table, waiting a few seconds at most. Seats still held are given back
+     * too; the students holding them are not registered.
+     */
+    void close() {
+        ready = false;
+        if (pool == null) {
+            scheduler.shutdownNow();
+            return;
+        }
+        try {
+            scheduler.submit(() -> {
+                giveBackAll();
+                return null;
+            }).get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ex) {
+            System.err.println("Could not give back unsold course seats: " + ex);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * False until the first seats have been claimed; no seats are handed out before then.
+     */
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Holds a seat, or returns null if this terminal has none free for the
+     * course. That does not mean the course is full: see {@link #seatsLeft}.
+     */
+    Reservation reserve(String course) {
+        Course c = course(course);
+        c.demand.incrementAndGet();
+        if (!ready || !c.waitlist.isEmpty()) {
+            return null; // Waiting students go first
+        }
+        return take(c, Long.MAX_VALUE);
+    }
+
+    /**
+     * Turns a hold into a confirmed seat. False if it has already expired or
+     * been released.
+     */
+    boolean confirm(Reservation reservation) {
+        if (!reservation.state.compareAndSet(State.HELD, State.CONFIRMED)) {
+            return false;
+        }
+        held.remove(reservation);
+        return true;
+    }
+
+    /**
+     * Gives the seat back, whether held or confirmed, and offers it to the
+     * waitlist.
+     */
+    void release(Reservation reservation) {
+        if (reservation.state.getAndSet(State.RELEASED) == State.RELEASED) {
+            return;
+        }
+        held.remove(reservation);
+        Course c = course(reservation.course);
+        c.free.incrementAndGet();
+        promote(c);
+    }
+
+    /**
+     * Gives back a confirmed seat whose registration never reached the
+     * database, and offers it to the waitlist. The seat is still counted in
+     * 'course_seats', so it becomes one of this terminal's free seats.
+     */
+    void vacate(String course) {
+        Course c = course(course);
+        c.free.incrementAndGet();
+        promote(c);
+    }
+
+    /**
+     * Queues a student for the next seat that frees up in the course.
+     *
+     * @return the student's position in the waitlist, from 1
+     */
+    int joinWaitlist(String course, Student student) {
+        Course c = course(course);
+        c.waitlist.add(student);
+        int position = c.waitlist.size();
+        promote(c); // A seat may have freed up since the student was turned away
+        return position;
+    }
+
+    int waitlistSize(String course) {
+        return course(course).waitlist.size();
+    }
+
+    /**
+     * Seats still to be had in the course: this terminal's free seats plus
+     * those no terminal has claimed, as of the last reconcile.
+     */
+    int seatsLeft(String course) {
+        Course c = course(course);
+        return c.free.get() + c.unclaimed;
+    }
+
+    private Course course(String name) {
+        Course c = courses.get(name);
+        if (c == null) {
+            throw new IllegalArgumentException("Unknown course: " + name);
+        }
+        return c;
+    }
+
+    private Reservation take(Course c, long holdMillis) {
+        while (true) {
+            int free = c.free.get();
+            if (free <= 0) {
+                return null;
+            }
+            if (c.free.compareAndSet(free, free - 1)) {
+                long now = System.currentTimeMillis();
+                Reservation reservation = new Reservation(c.name,
+                    holdMillis == Long.MAX_VALUE ? Long.MAX_VALUE : now + holdMillis);
+                held.put(reservation, Boolean.TRUE);
+                return reservation;
+            }
+        }
+    }
+
+    /**
+     * Takes up to {@code wanted} free seats out of the course, for giving back.
+     */
+    private static int takeFree(Course c, int wanted) {
+        while (true) {
+            int free = c.free.get();
+            int taken = Math.min(free, wanted);
+            if (taken <= 0 || c.free.compareAndSet(free, free - taken)) {
+                return Math.max(taken, 0);
+            }
+        }
+    }
+
+    private void promote(Course c) {
+        while (ready && !c.waitlist.isEmpty()) {
+            Reservation reservation = take(c, HOLD_MILLIS);
+            if (reservation == null) {
+                return;
+            }
+            Student student = c.waitlist.poll();
+            if (student == null) {
+                // Another thread promoted the last waiter; put the seat straight back
+                held.remove(reservation);
+                reservation.state.set(State.RELEASED);
+                c.free.incrementAndGet();
+                continue;
+            }
+            offered.accept(reservation, student);
+        }
+    }
+
+    private void expireHolds() {
+        long now = System.currentTimeMillis();
+        for (Reservation reservation : held.keySet()) {
+            if (reservation.expiresAt <= now && reservation.state() == State.HELD) {
+                release(reservation);
+            }
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (SQLException ex) {
+            // Seats already claimed keep selling; the next round catches up
+            System.err.println("Could not reconcile course seats: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Claims seats for courses running low and gives back seats piling up,
+     * each in one batch, then refreshes capacities and what is left.
+     */
+    private void reconcile() throws SQLException {
+        List<Course> claiming = new ArrayList<>();
+        List<Integer> claims = new ArrayList<>();
+        List<Course> returning = new ArrayList<>();
+        List<Integer> returns = new ArrayList<>();
+        for (Course c : courses.values()) {
+            int target = Math.max(CLAIM_BLOCK, c.demand.getAndSet(0) + c.waitlist.size());
+            int free = c.free.get();
+            if (free < target && c.unclaimed > 0) {
+                claiming.add(c);
+                claims.add(target - free);
+            } else if (free > 2 * target) {
+                int surplus = takeFree(c, free - target);
+                if (surplus > 0) {
+                    returning.add(c);
+                    returns.add(surplus);
+                }
+            }
+        }
+
+        try (Connection conn = pool.getConnection()) {
+            giveBack(conn, returning, returns);
+            int[] counts = claim(conn, claiming, claims);
+            refresh(conn);
+
+            // A block bigger than what is left fails whole; claim just the rest
+            for (int i = 0; i < claiming.size(); i++) {
+                Course c = claiming.get(i);
+                int rest = Math.min(claims.get(i), c.unclaimed);
+                if (counts[i] <= 0 && rest > 0 && claim(conn, List.of(c), List.of(rest))[0] > 0) {
+                    c.unclaimed -= rest;
+                }
+            }
+        }
+        for (Course c : courses.values()) {
+            promote(c);
+        }
+    }
+
+    /**
+     * @return the update count of each claim; seats are added for those above zero
+     */
+    private static int[] claim(Connection conn, List<Course> claiming, List<Integer> claims) throws SQLException {
+        if (claiming.isEmpty()) {
+            return new int[0];
+        }
+        String sql = "UPDATE course_seats SET taken = taken + ? WHERE course = ? AND taken + ? <= capacity";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < claiming.size(); i++) {
+                pstmt.setInt(1, claims.get(i));
+                pstmt.setString(2, claiming.get(i).name);
+                pstmt.setInt(3, claims.get(i));
+                pstmt.addBatch();
+            }
+            int[] counts;
+            try {
+                counts = pstmt.executeBatch();
+            } catch (BatchUpdateException ex) {
+                // Claims the driver did carry out still count against the capacity
+                addClaimed(claiming, claims, ex.getUpdateCounts());
+                throw ex;
+            }
+            addClaimed(claiming, claims, counts);
+            return counts;
+        }
+    }
+
+    private static void addClaimed(List<Course> claiming, List<Integer> claims, int[] counts) {
+        for (int i = 0; i < counts.length && i < claiming.size(); i++) {
+            if (counts[i] > 0) {
+                claiming.get(i).free.addAndGet(claims.get(i));
+            }
+        }
+    }
+
+    private static void giveBack(Connection conn, List<Course> returning, List<Integer> returns) throws SQLException {
+        if (returning.isEmpty()) {
+            return;
+        }
+        String sql = "UPDATE course_seats SET taken = GREATEST(taken - ?, 0) WHERE course = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < returning.size(); i++) {
+                pstmt.setInt(1, returns.get(i));
+                pstmt.setString(2, returning.get(i).name);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        } catch (SQLException ex) {
+            for (int i = 0; i < returning.size(); i++) {
+                returning.get(i).free.addAndGet(returns.get(i)); // Keep them; the next round tries again
+            }
+            throw ex;
+        }
+    }
+
+    private void giveBackAll() throws SQLException {
+        List<Course> returning = new ArrayList<>();
+        List<Integer> returns = new ArrayList<>();
+        for (Reservation reservation : held.keySet()) {
+            release(reservation);
+        }
+        for (Course c : courses.values()) {
+            int free = takeFree(c, Integer.MAX_VALUE);
+            if (free > 0) {
+                returning.add(c);
+                returns.add(free);
+            }
+        }
+        try (Connection conn = pool.getConnection()) {
+            giveBack(conn, returning, returns);
+        }
+    }
+
+    private void refresh(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT course, capacity, taken FROM course_seats")) {
+            while (rs.next()) {
+                Course c = courses.get(rs.getString(1));
+                if (c != null) {
+                    c.capacity = rs.getInt(2);
+                    c.unclaimed = Math.max(0, rs.getInt(2) - rs.getInt(3));
+                }
+            }
+        }
+    }
+
+    private void load() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            createTable(conn);
+            RegistrationSpool.createTables(conn);
+
+            // Give courses without a row one, so their capacity can be set in the table
+            String sql = "INSERT INTO course_seats (course, capacity, taken) VALUES (?, ?, 0) " +
+                         "ON DUPLICATE KEY UPDATE course = course";
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (Course c : courses.values()) {
+                    pstmt.setString(1, c.name);
+                    pstmt.setInt(2, c.capacity);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+
+            // Never count fewer seats than there are students, e.g. for rows added by hand
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE course_seats SET taken = GREATEST(taken, " +
+                    "(SELECT COUNT(*) FROM students WHERE students.course = course_seats.course))");
+            }
+            refresh(conn);
+        }
+    }
+
+    private static void createTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            String sql = "CREATE TABLE IF NOT EXISTS course_seats (" +
+                         "course VARCHAR(100) PRIMARY KEY, " +
+                         "capacity INT NOT NULL, " +
+                         "taken INT NOT NULL DEFAULT 0)";
+            stmt.executeUpdate(sql);
+
+            if (!hasColumn(conn, "taken")) {
+                // Tables from older versions; load() counts the students already registered
+                stmt.executeUpdate("ALTER TABLE course_seats ADD COLUMN taken INT NOT NULL DEFAULT 0");
+            }
+            if (hasColumn(conn, "confirmed")) {
+                // Written by older versions but never read back
+                stmt.executeUpdate("ALTER TABLE course_seats DROP COLUMN confirmed");
+            }
+        }
+    }
+
+    private static boolean hasColumn(Connection conn, String column) throws SQLException {
+        try (ResultSet columns = conn.getMetaData().getColumns(null, null, "course_seats", column)) {
+            return columns.next();
+        }
+    }
+}
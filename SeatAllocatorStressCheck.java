@@ -0,0 +1,173 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hammers a {@link SeatAllocator} from many threads and checks it never
+ * hands out more seats than a course has. Needs no database:
+ *
+ *     javac *.java && java SeatAllocatorStressCheck [threads] [seconds]
+ *
+ * Given a JDBC URL, runs two allocators against the same 'course_seats'
+ * table instead, as two terminals would, and checks they never sell more
+ * than the capacity between them. Its rows for the "Stress" courses are
+ * reset first, so point it at a scratch database:
+ *
+ *     java -cp .:mysql-connector-j.jar SeatAllocatorStressCheck 16 10 jdbc:mysql://localhost:3306/scratch root password
+ *
+ * Exits with status 1 if a check fails.
+ */
+class SeatAllocatorStressCheck {
+
+    private static final String[] COURSES = {"Stress A", "Stress B", "Stress C", "Stress D"};
+    private static final int CAPACITY = 50;
+
+    public static void main(String[] args) throws InterruptedException, SQLException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+
+        SeatAllocator[] terminals;
+        if (args.length > 2) {
+            terminals = startTerminals(args[2], args.length > 3 ? args[3] : "", args.length > 4 ? args[4] : "");
+        } else {
+            terminals = new SeatAllocator[] {newAllocator()};
+            terminals[0].startWithoutDatabase();
+        }
+
+        // Seats each course has handed out and not had back, as the workers see it
+        AtomicInteger[] outstanding = new AtomicInteger[COURSES.length];
+        AtomicInteger[] peak = new AtomicInteger[COURSES.length];
+        for (int i = 0; i < COURSES.length; i++) {
+            outstanding[i] = new AtomicInteger();
+            peak[i] = new AtomicInteger();
+        }
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        List<List<SeatAllocator.Reservation>> kept = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<SeatAllocator.Reservation> mine = new ArrayList<>();
+            kept.add(mine);
+            SeatAllocator seats = terminals[t % terminals.length];
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                List<SeatAllocator.Reservation> confirmed = new ArrayList<>();
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                while (System.nanoTime() < deadline) {
+                    int course = random.nextInt(COURSES.length);
+                    SeatAllocator.Reservation seat = seats.reserve(COURSES[course]);
+                    if (seat == null) {
+                        refused.incrementAndGet();
+                        if (!confirmed.isEmpty()) {
+                            // Give a seat back so the courses keep churning
+                            SeatAllocator.Reservation back = confirmed.remove(random.nextInt(confirmed.size()));
+                            outstanding[indexOf(back.course)].decrementAndGet();
+                            seats.release(back);
+                        }
+                        continue;
+                    }
+                    reserved.incrementAndGet();
+                    int now = outstanding[course].incrementAndGet();
+                    peak[course].accumulateAndGet(now, Math::max);
+                    if (now > CAPACITY) {
+                        failure.compareAndSet(null, COURSES[course] + " had " + now + " seats out of " + CAPACITY);
+                    }
+                    if (random.nextInt(10) < 2) {
+                        outstanding[course].decrementAndGet();
+                        seats.release(seat); // Changed their mind while the seat was held
+                    } else if (!seats.confirm(seat)) {
+                        failure.compareAndSet(null, "A fresh hold could not be confirmed");
+                    } else {
+                        confirmed.add(seat);
+                    }
+                }
+                mine.addAll(confirmed);
+            }, "seat-stress-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        for (SeatAllocator seats : terminals) {
+            seats.close();
+        }
+
+        for (int i = 0; i < COURSES.length; i++) {
+            int held = 0;
+            for (List<SeatAllocator.Reservation> mine : kept) {
+                for (SeatAllocator.Reservation seat : mine) {
+                    held += seat.course.equals(COURSES[i]) ? 1 : 0;
+                }
+            }
+            // With a database, seats left also count those claimed by no terminal, as of the last second
+            int taken = terminals.length == 1 ? CAPACITY - terminals[0].seatsLeft(COURSES[i]) : held;
+            if (taken != held || held != outstanding[i].get()) {
+                failure.compareAndSet(null, COURSES[i] + " counts " + taken + " seats taken, but "
+                    + held + " are confirmed");
+            }
+            System.out.printf("%-16s peak %d of %d, %d confirmed at the end%n", COURSES[i], peak[i].get(), CAPACITY, held);
+        }
+        System.out.printf("%d threads, %d seats handed out, %d requests turned away%n", threads, reserved.get(), refused.get());
+
+        if (failure.get() != null) {
+            System.out.println("FAILED: " + failure.get());
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private static SeatAllocator newAllocator() {
+        return new SeatAllocator(COURSES, CAPACITY, (seat, student) -> {
+            throw new IllegalStateException("Nobody joins a waitlist here");
+        });
+    }
+
+    /**
+     * Two allocators, each with its own pool, sharing one 'course_seats' table.
+     */
+    private static SeatAllocator[] startTerminals(String url, String user, String password)
+            throws InterruptedException, SQLException {
+        SeatAllocator[] terminals = {newAllocator(), newAllocator()};
+        ConnectionPool setup = new ConnectionPool(url, user, password, 0, 1, 60_000L);
+        try (Connection conn = setup.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS course_seats (course VARCHAR(100) PRIMARY KEY, " +
+                               "capacity INT NOT NULL, taken INT NOT NULL DEFAULT 0)");
+            stmt.executeUpdate("DELETE FROM course_seats WHERE course LIKE 'Stress %'");
+        }
+        for (SeatAllocator seats : terminals) {
+            seats.start(new ConnectionPool(url, user, password, 0, 2, 60_000L));
+        }
+        for (SeatAllocator seats : terminals) {
+            while (!seats.isReady()) {
+                Thread.sleep(50);
+            }
+        }
+        return terminals;
+    }
+
+    private static int indexOf(String course) {
+        for (int i = 0; i < COURSES.length; i++) {
+            if (COURSES[i].equals(course)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(course);
+    }
+}
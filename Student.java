@@ -0,0 +1,18 @@
+class Student {
+    private String name;
+    private String email;
+    private String phone;
+    private String course;
+
+    public Student(String name, String email, String phone, String course) {
+        this.name = name;
+        this.email = email;
+        this.phone = phone;
+        this.course = course;
+    }
+
+    public String getName() { return name; }
+    public String getEmail() { return email; }
+    public String getPhone() { return phone; }
+    public String getCourse() { return course; }
+}
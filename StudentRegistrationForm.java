@@ -1,139 +1,319 @@
-import javax.swing.*;
-import java.awt.*;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-
-class Student {
-    private String name;
-    private String email;
-    private String phone;
-    private String course;
-
-    public Student(String name, String email, String phone, String course) {
-        this.name = name;
-        this.email = email;
-        this.phone = phone;
-        this.course = course;
-    }
-
-    public String getName() { return name; }
-    public String getEmail() { return email; }
-    public String getPhone() { return phone; }
-    public String getCourse() { return course; }
-}
-
-public class StudentRegistrationForm extends JFrame {
-
-    private final JTextField nameField, emailField, phoneField;
-    private final JComboBox<String> courseComboBox;
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/university_db";
-    private static final String USER = "root";
-    private static final String PASS = "password";
-
-    public StudentRegistrationForm() {
-        setTitle("Student Registration Form");
-        setSize(450, 350);
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setLocationRelativeTo(null);
-
-        JPanel panel = new JPanel(new GridBagLayout());
-        panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
-        GridBagConstraints gbc = new GridBagConstraints();
-        gbc.insets = new Insets(5, 5, 5, 5);
-        gbc.fill = GridBagConstraints.HORIZONTAL;
-
-        gbc.gridx = 0;
-        gbc.gridy = 0;
-        panel.add(new JLabel("Name:"), gbc);
-
-        gbc.gridx = 1;
-        nameField = new JTextField(20);
-        panel.add(nameField, gbc);
-
-        gbc.gridx = 0;
-        gbc.gridy = 1;
-        panel.add(new JLabel("Email:"), gbc);
-
-        gbc.gridx = 1;
-        emailField = new JTextField(20);
-        panel.add(emailField, gbc);
-
-        gbc.gridx = 0;
-        gbc.gridy = 2;
-        panel.add(new JLabel("Phone:"), gbc);
-
-        gbc.gridx = 1;
-        phoneField = new JTextField(20);
-        panel.add(phoneField, gbc);
-        
-        gbc.gridx = 0;
-        gbc.gridy = 3;
-        panel.add(new JLabel("Course:"), gbc);
-
-        gbc.gridx = 1;
-        String[] courses = {"Computer Science", "Engineering", "Business", "Arts"};
-        courseComboBox = new JComboBox<>(courses);
-        panel.add(courseComboBox, gbc);
-
-        gbc.gridx = 1;
-        gbc.gridy = 4;
-        gbc.anchor = GridBagConstraints.EAST;
-        gbc.fill = GridBagConstraints.NONE;
-        JButton registerButton = new JButton("Register");
-        panel.add(registerButton, gbc);
-        
-        add(panel);
-
-        registerButton.addActionListener(e -> registerStudent());
-    }
-
-    private void registerStudent() {
-        String name = nameField.getText();
-        String email = emailField.getText();
-        String phone = phoneField.getText();
-        String course = (String) courseComboBox.getSelectedItem();
-
-        if (name.trim().isEmpty() || email.trim().isEmpty() || phone.trim().isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Please fill all fields.", "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        if (!email.contains("@") || !email.contains(".")) {
-            JOptionPane.showMessageDialog(this, "Please enter a valid email.", "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        Student student = new Student(name, email, phone, course);
-        
-        try (Connection conn = DriverManager.getConnection(DB_URL, USER, PASS)) {
-            String sql = "INSERT INTO students (name, email, phone, course) VALUES (?, ?, ?, ?)";
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, student.getName());
-                pstmt.setString(2, student.getEmail());
-                pstmt.setString(3, student.getPhone());
-                pstmt.setString(4, student.getCourse());
-                pstmt.executeUpdate();
-                JOptionPane.showMessageDialog(this, "Student registered successfully!");
-                clearFields();
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Database Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
-    }
-    
-    private void clearFields() {
-        nameField.setText("");
-        emailField.setText("");
-        phoneField.setText("");
-        courseComboBox.setSelectedIndex(0);
-    }
-    
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> new StudentRegistrationForm().setVisible(true));
-    }
-}
-
-
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class StudentRegistrationForm extends JFrame {
+
+    private final JTextField nameField, emailField, phoneField;
+    private final JComboBox<String> courseComboBox;
+    private final JLabel statusLabel;
+    private final JButton registerButton;
+    private RegistrationSpool spool; // Null if it could not be opened
+    private final EmailIndex registeredEmails = new EmailIndex();
+    private final SeatAllocator seats;
+    private final StudentRoster roster = new StudentRoster(POOL);
+    private final ExecutorService dbExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "registration-db");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final String[] COURSES = {"Computer Science", "Engineering", "Business", "Arts"};
+    private static final String DB_URL = "jdbc:mysql://localhost:3306/university_db?rewriteBatchedStatements=true";
+    private static final String USER = "root";
+    private static final String PASS = "password";
+    // One connection each for the spool flusher, seat reconciling, email lookups and the email warm-up,
+    // which holds its own for the whole table scan, plus two for open roster windows
+    private static final ConnectionPool POOL = new ConnectionPool(DB_URL, USER, PASS, 0, 6, 60_000L);
+
+    public StudentRegistrationForm() {
+        setTitle("Student Registration Form");
+        setSize(560, 380);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLocationRelativeTo(null);
+
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        panel.add(new JLabel("Name:"), gbc);
+
+        gbc.gridx = 1;
+        nameField = new JTextField(20);
+        panel.add(nameField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        panel.add(new JLabel("Email:"), gbc);
+
+        gbc.gridx = 1;
+        emailField = new JTextField(20);
+        panel.add(emailField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        panel.add(new JLabel("Phone:"), gbc);
+
+        gbc.gridx = 1;
+        phoneField = new JTextField(20);
+        panel.add(phoneField, gbc);
+        
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        panel.add(new JLabel("Course:"), gbc);
+
+        gbc.gridx = 1;
+        courseComboBox = new JComboBox<>(COURSES);
+        panel.add(courseComboBox, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 4;
+        gbc.anchor = GridBagConstraints.EAST;
+        gbc.fill = GridBagConstraints.NONE;
+        registerButton = new JButton("Register");
+        JButton rosterButton = new JButton("View Roster");
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        buttonPanel.add(rosterButton);
+        buttonPanel.add(registerButton);
+        panel.add(buttonPanel, gbc);
+        
+        add(panel);
+
+        statusLabel = new JLabel(" ");
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(0, 10, 5, 10));
+        add(statusLabel, BorderLayout.SOUTH);
+
+        registerButton.addActionListener(e -> registerStudent());
+        rosterButton.addActionListener(e -> new RosterBrowser(roster, COURSES).setVisible(true));
+
+        seats = new SeatAllocator(COURSES, Integer.getInteger("registration.seats.per.course", 30), this::seatOffered);
+        try {
+            spool = new RegistrationSpool(Paths.get(System.getProperty("registration.spool.dir", "registration-spool")), POOL,
+                this::registrationDropped);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not open the registration spool: " + ex.getMessage(),
+                "Error", JOptionPane.ERROR_MESSAGE);
+            registerButton.setEnabled(false);
+        }
+        if (spool != null) {
+            spool.forEachPending(student -> registeredEmails.add(student.getEmail()));
+        }
+        registeredEmails.warmUp(POOL);
+        seats.start(POOL);
+        new Timer(1000, e -> updateStatus()).start();
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                seats.close(); // So other terminals can sell the seats this one claimed
+            }
+        });
+    }
+
+    private void registerStudent() {
+        String name = nameField.getText();
+        String email = emailField.getText();
+        String phone = phoneField.getText();
+        String course = (String) courseComboBox.getSelectedItem();
+
+        if (name.trim().isEmpty() || email.trim().isEmpty() || phone.trim().isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please fill all fields.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        if (!email.contains("@") || !email.contains(".")) {
+            JOptionPane.showMessageDialog(this, "Please enter a valid email.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        // Longer values would only be refused by the database, after the student was told they were registered
+        if (name.length() > RegistrationSpool.MAX_NAME_LENGTH || email.trim().length() > RegistrationSpool.MAX_EMAIL_LENGTH
+                || phone.length() > RegistrationSpool.MAX_PHONE_LENGTH) {
+            JOptionPane.showMessageDialog(this, String.format("Name and email can be at most %d characters, phone at most %d.",
+                RegistrationSpool.MAX_NAME_LENGTH, RegistrationSpool.MAX_PHONE_LENGTH), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        if (!seats.isReady()) {
+            JOptionPane.showMessageDialog(this, "Course seats are still loading. Please try again shortly.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        Student student = new Student(name, email.trim(), phone, course);
+        switch (registeredEmails.match(email)) {
+            case NEW:
+                register(student);
+                break;
+            case DUPLICATE:
+                JOptionPane.showMessageDialog(this, "A student with this email is already registered.", "Error", JOptionPane.ERROR_MESSAGE);
+                break;
+            case MAYBE:
+                checkThenRegister(student);
+                break;
+        }
+    }
+
+    /**
+     * Settles an email the index can't rule out with a lookup by key, off
+     * the EDT, then registers the student unless it is taken. If the lookup
+     * fails the registration goes ahead; the unique key still keeps a
+     * duplicate out of the table.
+     */
+    private void checkThenRegister(Student student) {
+        registerButton.setEnabled(false);
+        dbExecutor.execute(() -> {
+            boolean registered = false;
+            try {
+                registered = registeredEmails.isRegistered(student.getEmail());
+            } catch (SQLException ex) {
+                System.err.println("Could not look up " + student.getEmail() + ": " + ex.getMessage());
+            }
+            boolean taken = registered;
+            SwingUtilities.invokeLater(() -> {
+                registerButton.setEnabled(true);
+                if (taken) {
+                    JOptionPane.showMessageDialog(this, "A student with this email is already registered.", "Error", JOptionPane.ERROR_MESSAGE);
+                } else {
+                    register(student);
+                }
+            });
+        });
+    }
+
+    private void register(Student student) {
+        String email = student.getEmail();
+        String course = student.getCourse();
+        if (!registeredEmails.add(email)) {
+            // Registered here while its lookup ran
+            JOptionPane.showMessageDialog(this, "A student with this email is already registered.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        SeatAllocator.Reservation seat = seats.reserve(course);
+        if (seat == null && seats.waitlistSize(course) == 0 && seats.seatsLeft(course) > 0) {
+            // Other terminals claimed the free seats for now; this one claims more within a second
+            registeredEmails.remove(email);
+            JOptionPane.showMessageDialog(this, "No seat in " + course + " is free on this terminal right now. " +
+                "Please try again in a moment.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (seat == null) {
+            int choice = JOptionPane.showConfirmDialog(this, course + " is full. Join the waitlist?", "Course Full",
+                JOptionPane.YES_NO_OPTION);
+            if (choice == JOptionPane.YES_OPTION) {
+                int position = seats.joinWaitlist(course, student);
+                JOptionPane.showMessageDialog(this, "Added to the " + course + " waitlist at position " + position +
+                    ". A seat will be offered here when one frees up.");
+                clearFields();
+            } else {
+                registeredEmails.remove(email);
+            }
+            return;
+        }
+
+        try {
+            seats.confirm(seat); // Just reserved, so the hold can't have expired
+            spool.submit(student); // Saved locally; the database insert happens in the background
+            JOptionPane.showMessageDialog(this, "Student registered successfully!");
+            clearFields();
+            updateStatus();
+        } catch (IOException ex) {
+            seats.release(seat);
+            registeredEmails.remove(email);
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Could not save registration: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Offers a freed seat to a waitlisted student. The seat is held until
+     * the offer is answered or the hold expires, whichever comes first.
+     */
+    private void seatOffered(SeatAllocator.Reservation seat, Student student) {
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane pane = new JOptionPane("A seat in " + seat.course + " has freed up for " + student.getName() +
+                " (" + student.getEmail() + "). Register them?", JOptionPane.QUESTION_MESSAGE, JOptionPane.YES_NO_OPTION);
+            JDialog dialog = pane.createDialog(this, "Waitlist");
+            dialog.setModal(false); // Other students keep registering meanwhile
+
+            long left = Math.max(0, seat.expiresAt - System.currentTimeMillis());
+            Timer expiry = new Timer((int) Math.min(left, Integer.MAX_VALUE), e -> {
+                dialog.dispose();
+                seats.release(seat); // Usually expired already; passes the seat to the next student
+                registeredEmails.remove(student.getEmail());
+            });
+            expiry.setRepeats(false);
+            pane.addPropertyChangeListener(JOptionPane.VALUE_PROPERTY, e -> {
+                expiry.stop();
+                dialog.dispose();
+                if (Integer.valueOf(JOptionPane.YES_OPTION).equals(e.getNewValue())) {
+                    admitFromWaitlist(seat, student);
+                } else {
+                    seats.release(seat);
+                    registeredEmails.remove(student.getEmail());
+                }
+            });
+            expiry.start();
+            dialog.setVisible(true);
+        });
+    }
+
+    private void admitFromWaitlist(SeatAllocator.Reservation seat, Student student) {
+        if (!seats.confirm(seat)) {
+            registeredEmails.remove(student.getEmail());
+            JOptionPane.showMessageDialog(this, "The seat offered to " + student.getName() + " has expired.",
+                "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        try {
+            spool.submit(student);
+            JOptionPane.showMessageDialog(this, student.getName() + " registered for " + seat.course + " from the waitlist.");
+            updateStatus();
+        } catch (IOException ex) {
+            seats.release(seat);
+            registeredEmails.remove(student.getEmail());
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Could not save registration: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Gives back the seat of a registration the spool could not save. Runs
+     * on the spool's flusher thread.
+     */
+    private void registrationDropped(Student student, RegistrationSpool.Drop reason) {
+        seats.vacate(student.getCourse());
+        if (reason == RegistrationSpool.Drop.REJECTED) {
+            registeredEmails.remove(student.getEmail());
+        }
+        // A duplicate's email stays indexed: it belongs to the student already in the table
+    }
+
+    private void updateStatus() {
+        if (spool != null) {
+            statusLabel.setText(spool.status() + (registeredEmails.isComplete() ? "" : " | Loading registered emails"));
+        }
+    }
+    
+    private void clearFields() {
+        nameField.setText("");
+        emailField.setText("");
+        phoneField.setText("");
+        courseComboBox.setSelectedIndex(0);
+    }
+    
+    public static void main(String[] args) {
+        SwingUtilities.invokeLater(() -> new StudentRegistrationForm().setVisible(true));
+    }
+}
+
+
@@ -0,0 +1,222 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read side of the 'students' table, in pages ordered by (course, name, id).
+ *
+ * Pages are keyset seeks past the last row of the previous page, served by
+ * an index on (course, name), so a deep page costs the same as the first.
+ * A course with at most {@link #COHORT_LIMIT} students (the current term's
+ * intake) is instead loaded whole into memory and paged from there, and
+ * reloaded once it is {@link #COHORT_TTL_MILLIS} old. A course found to be
+ * larger is not counted again for as long.
+ */
+class StudentRoster {
+
+    static final int PAGE_SIZE = 100;
+    private static final int COHORT_LIMIT = 20_000;
+    private static final long COHORT_TTL_MILLIS = 30_000L;
+
+    private static final String COLUMNS = "SELECT id, name, email, phone, course FROM students ";
+
+    /**
+     * A student as stored, with the row id used for keyset seeks.
+     */
+    static final class Entry {
+        final int id;
+        final Student student;
+
+        Entry(int id, Student student) {
+            this.id = id;
+            this.student = student;
+        }
+    }
+
+    /**
+     * Every student in one course, in (name, id) order as the database sorts it.
+     */
+    private static final class Cohort {
+        final Entry[] entries;
+        final Map<Integer, Integer> positions = new HashMap<>(); // Row id to index in entries
+        final long loadedAt = System.currentTimeMillis();
+
+        Cohort(List<Entry> rows) {
+            entries = rows.toArray(new Entry[0]);
+            for (int i = 0; i < entries.length; i++) {
+                positions.put(entries[i].id, i);
+            }
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final Map<String, Cohort> cohorts = new ConcurrentHashMap<>();
+    private final Map<String, Long> tooLarge = new ConcurrentHashMap<>(); // Course to when it was counted
+    private volatile boolean indexReady;
+
+    StudentRoster(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * The next page of students matching the filter.
+     *
+     * @param course only this course, or null for all
+     * @param namePrefix only names starting with this, case-insensitively; empty for all
+     * @param after last entry of the previous page, or null for the first page
+     */
+    List<Entry> page(String course, String namePrefix, Entry after, int limit) throws SQLException {
+        if (course != null) {
+            Cohort cohort = cohort(course);
+            if (cohort != null) {
+                return page(cohort, namePrefix, after, limit);
+            }
+        }
+
+        StringBuilder sql = new StringBuilder(COLUMNS).append("WHERE 1 = 1");
+        List<Object> parameters = new ArrayList<>();
+        if (course != null) {
+            sql.append(" AND course = ?");
+            parameters.add(course);
+        }
+        if (!namePrefix.isEmpty()) {
+            sql.append(" AND name LIKE ? ESCAPE '!'");
+            parameters.add(namePrefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%");
+        }
+        if (after != null) {
+            if (course == null) {
+                sql.append(" AND (course > ? OR (course = ? AND (name > ? OR (name = ? AND id > ?))))");
+                parameters.add(after.student.getCourse());
+                parameters.add(after.student.getCourse());
+            } else {
+                sql.append(" AND (name > ? OR (name = ? AND id > ?))");
+            }
+            parameters.add(after.student.getName());
+            parameters.add(after.student.getName());
+            parameters.add(after.id);
+        }
+        sql.append(" ORDER BY course, name, id LIMIT ?");
+        parameters.add(limit);
+
+        List<Entry> rows = new ArrayList<>(limit);
+        try (Connection conn = pool.getConnection()) {
+            ensureIndex(conn);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    pstmt.setObject(i + 1, parameters.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(readEntry(rs));
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * True if pages of this course are currently served from memory.
+     */
+    boolean isCached(String course) {
+        Cohort cohort = course != null ? cohorts.get(course) : null;
+        return cohort != null && System.currentTimeMillis() - cohort.loadedAt < COHORT_TTL_MILLIS;
+    }
+
+    private static List<Entry> page(Cohort cohort, String namePrefix, Entry after, int limit) {
+        int start = 0;
+        if (after != null) {
+            Integer position = cohort.positions.get(after.id);
+            if (position != null) {
+                start = position + 1;
+            } else {
+                // Reloaded without that row; resume at the first name after it
+                while (start < cohort.entries.length
+                        && cohort.entries[start].student.getName().compareToIgnoreCase(after.student.getName()) <= 0) {
+                    start++;
+                }
+            }
+        }
+        List<Entry> rows = new ArrayList<>(limit);
+        for (int i = start; i < cohort.entries.length && rows.size() < limit; i++) {
+            String name = cohort.entries[i].student.getName();
+            if (name.regionMatches(true, 0, namePrefix, 0, namePrefix.length())) {
+                rows.add(cohort.entries[i]);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * The cached cohort for a course, loading it if it is small enough.
+     * Null if the course is too large to hold.
+     */
+    private Cohort cohort(String course) throws SQLException {
+        Cohort cohort = cohorts.get(course);
+        if (cohort != null && System.currentTimeMillis() - cohort.loadedAt < COHORT_TTL_MILLIS) {
+            return cohort;
+        }
+        Long counted = tooLarge.get(course);
+        if (counted != null && System.currentTimeMillis() - counted < COHORT_TTL_MILLIS) {
+            return null; // Not counted again for every page scrolled
+        }
+        try (Connection conn = pool.getConnection()) {
+            ensureIndex(conn);
+            try (PreparedStatement count = conn.prepareStatement("SELECT COUNT(*) FROM students WHERE course = ?")) {
+                count.setString(1, course);
+                try (ResultSet rs = count.executeQuery()) {
+                    rs.next();
+                    if (rs.getInt(1) > COHORT_LIMIT) {
+                        cohorts.remove(course);
+                        tooLarge.put(course, System.currentTimeMillis());
+                        return null;
+                    }
+                }
+            }
+            List<Entry> rows = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(COLUMNS + "WHERE course = ? ORDER BY name, id")) {
+                pstmt.setString(1, course);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(readEntry(rs));
+                    }
+                }
+            }
+            cohort = new Cohort(rows);
+            cohorts.put(course, cohort);
+            tooLarge.remove(course);
+            return cohort;
+        }
+    }
+
+    private void ensureIndex(Connection conn) throws SQLException {
+        if (indexReady) {
+            return;
+        }
+        RegistrationSpool.createTables(conn);
+        boolean hasCourseNameIndex = false;
+        try (ResultSet indexes = conn.getMetaData().getIndexInfo(null, null, "students", false, false)) {
+            while (indexes.next()) {
+                hasCourseNameIndex |= "idx_students_course_name".equalsIgnoreCase(indexes.getString("INDEX_NAME"));
+            }
+        }
+        if (!hasCourseNameIndex) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("CREATE INDEX idx_students_course_name ON students (course, name)"); // InnoDB appends id
+            }
+        }
+        indexReady = true;
+    }
+
+    private static Entry readEntry(ResultSet rs) throws SQLException {
+        return new Entry(rs.getInt("id"), new Student(rs.getString("name"), rs.getString("email"),
+            rs.getString("phone"), rs.getString("course")));
+    }
+}
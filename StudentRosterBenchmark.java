@@ -0,0 +1,247 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fills the students table with a few large courses and one small one, then
+ * scrolls through it with {@link StudentRoster} a page at a time, as
+ * {@link RosterBrowser} does, and reports how long the first page takes
+ * against pages a hundred thousand rows in. For comparison it also times
+ * the deep page fetched with OFFSET, as paging used to be done, and pages
+ * of the small course, which come from memory once it is loaded. Runs
+ * against an in-memory H2 database in MySQL mode by default; give it a URL
+ * to measure a real server, but a scratch one, as it writes to the
+ * students table:
+ *
+ *     javac *.java && java -cp .:h2.jar StudentRosterBenchmark [students] [url user password]
+ *
+ * Exits with status 1 if scrolling skips or repeats a row, or shows one
+ * out of (course, name, id) order.
+ */
+class StudentRosterBenchmark {
+
+    private static final int SMALL_COURSE = 5_000; // Within the roster's cohort limit, so paged from memory
+    private static final int LARGE_COURSES = 3;
+    private static final int DEEP_PAGES = 1_000;
+    private static final int DEEP_SAMPLES = 100; // Pages at the end of each scroll counted as deep
+    private static final int WALKS = 5;
+    private static final int FIRST_PAGES = 200;
+    private static final int BATCH = 1_000;
+    private static final String[] SURNAMES = {
+        "Adams", "Baker", "Chen", "Diaz", "Evans", "Fischer", "Garcia", "Haddad", "Ito", "Jensen",
+        "Kowalski", "Lopez", "Martin", "Nguyen", "Okafor", "Patel", "Quinn", "Rossi", "Smith", "Tanaka"};
+    private static final String[] GIVEN_NAMES = {
+        "Ada", "Ben", "Chloe", "Dev", "Elif", "Farid", "Grace", "Hugo", "Ines", "Jon", "Kim", "Leo"};
+    private static final String COLUMNS = "SELECT id, name, email, phone, course FROM students ";
+
+    public static void main(String[] args) throws Exception {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        String url = args.length > 1 ? args[1] : "jdbc:h2:mem:roster_bench;MODE=MySQL;DB_CLOSE_DELAY=-1";
+        String user = args.length > 2 ? args[2] : "";
+        String password = args.length > 3 ? args[3] : "";
+        String tag = "bench" + System.currentTimeMillis(); // Keeps this run's courses apart from earlier rows
+
+        try {
+            DriverManager.getDriver(url);
+        } catch (SQLException ex) {
+            System.out.println("No JDBC driver for " + url + "; put h2.jar (or the MySQL connector) on the class path");
+            System.exit(2);
+        }
+
+        String small = tag + " small";
+        String large = tag + " large 1";
+        long start = System.nanoTime();
+        fill(url, user, password, tag, students, small);
+        System.out.printf("%,d students in %d large courses and one of %,d, added in %,d ms%n", students,
+            LARGE_COURSES, SMALL_COURSE, (System.nanoTime() - start) / 1_000_000);
+
+        ConnectionPool pool = new ConnectionPool(url, user, password, 1, 2, 60_000L);
+        StudentRoster roster = new StudentRoster(pool);
+        String failure = null;
+
+        int allPages = Math.max(DEEP_SAMPLES, Math.min(DEEP_PAGES, students / StudentRoster.PAGE_SIZE));
+        // Warm the JIT and the database's caches
+        walk(roster, null, allPages, new long[allPages]);
+        firstPages(roster, null, FIRST_PAGES);
+
+        long[] firstAll = firstPages(roster, null, FIRST_PAGES);
+        long[] deepAll = new long[WALKS * DEEP_SAMPLES];
+        List<Integer> scrolled = null;
+        for (int w = 0; w < WALKS; w++) {
+            long[] latencies = new long[allPages];
+            scrolled = walk(roster, null, allPages, latencies);
+            System.arraycopy(latencies, allPages - DEEP_SAMPLES, deepAll, w * DEEP_SAMPLES, DEEP_SAMPLES);
+        }
+        List<Integer> expected = ids(pool, COLUMNS + "ORDER BY course, name, id LIMIT ?",
+            allPages * StudentRoster.PAGE_SIZE);
+        if (!scrolled.equals(expected)) {
+            failure = mismatch("all courses", scrolled, expected);
+        }
+        long[] offsetAll = new long[WALKS];
+        int depth = (allPages - 1) * StudentRoster.PAGE_SIZE;
+        for (int i = 0; i < WALKS; i++) {
+            long queried = System.nanoTime();
+            List<Integer> page = ids(pool, COLUMNS + "ORDER BY course, name, id LIMIT ? OFFSET ?",
+                StudentRoster.PAGE_SIZE, depth);
+            offsetAll[i] = System.nanoTime() - queried;
+            if (failure == null && !page.equals(expected.subList(depth, expected.size()))) {
+                failure = mismatch("the OFFSET page", page, expected.subList(depth, expected.size()));
+            }
+        }
+
+        int largePages = Math.max(DEEP_SAMPLES,
+            Math.min(DEEP_PAGES, (students - SMALL_COURSE) / LARGE_COURSES / StudentRoster.PAGE_SIZE));
+        long[] firstLarge = firstPages(roster, large, FIRST_PAGES);
+        long[] deepLarge = new long[WALKS * DEEP_SAMPLES];
+        for (int w = 0; w < WALKS; w++) {
+            long[] latencies = new long[largePages];
+            scrolled = walk(roster, large, largePages, latencies);
+            System.arraycopy(latencies, largePages - DEEP_SAMPLES, deepLarge, w * DEEP_SAMPLES, DEEP_SAMPLES);
+        }
+        expected = ids(pool, COLUMNS + "WHERE course = ? ORDER BY name, id LIMIT ?", large,
+            largePages * StudentRoster.PAGE_SIZE);
+        if (failure == null && !scrolled.equals(expected)) {
+            failure = mismatch(large, scrolled, expected);
+        }
+
+        int smallPages = SMALL_COURSE / StudentRoster.PAGE_SIZE;
+        long[] loads = new long[WALKS];
+        long[] smallPageNanos = new long[WALKS * (smallPages - 1)];
+        for (int w = 0; w < WALKS; w++) {
+            StudentRoster fresh = new StudentRoster(pool); // Nothing cached yet, so the first page loads the course
+            long[] latencies = new long[smallPages];
+            scrolled = walk(fresh, small, smallPages, latencies);
+            loads[w] = latencies[0];
+            System.arraycopy(latencies, 1, smallPageNanos, w * (smallPages - 1), smallPages - 1);
+        }
+        expected = ids(pool, COLUMNS + "WHERE course = ? ORDER BY name, id", small);
+        if (failure == null && !scrolled.equals(expected)) {
+            failure = mismatch(small, scrolled, expected);
+        }
+        pool.shutdown();
+
+        System.out.printf("pages of %d rows; deep pages are the last %d of %,d scrolled through%n",
+            StudentRoster.PAGE_SIZE, DEEP_SAMPLES, allPages);
+        report("first page, all", firstAll);
+        report("deep page, all", deepAll);
+        report("OFFSET " + String.format("%,d", depth), offsetAll);
+        report("first page, large", firstLarge);
+        report("page " + largePages + ", large", deepLarge);
+        report("small, loading", loads);
+        report("small, later pages", smallPageNanos);
+        System.out.printf("a deep page takes %.2fx the first, %.2fx with OFFSET%n", median(deepAll) / median(firstAll),
+            median(offsetAll) / median(firstAll));
+
+        if (failure != null) {
+            System.out.println("FAILED: " + failure);
+            System.exit(1);
+        }
+        System.out.println("Every page follows on from the last, in the order of one query over the table");
+        System.out.println("OK");
+    }
+
+    private static void fill(String url, String user, String password, String tag, int students, String small)
+            throws SQLException {
+        Random random = new Random(24);
+        try (Connection conn = DriverManager.getConnection(url, user, password)) {
+            RegistrationSpool.createTables(conn);
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO students (name, email, phone, course) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < students; i++) {
+                    // Each full name is shared by many students, so pages also break between equal names
+                    pstmt.setString(1, SURNAMES[random.nextInt(SURNAMES.length)] + " "
+                        + GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)]);
+                    pstmt.setString(2, tag + "-" + i + "@example.edu");
+                    pstmt.setString(3, "555-" + (1000 + i % 9000));
+                    pstmt.setString(4, i < SMALL_COURSE ? small : tag + " large " + (1 + i % LARGE_COURSES));
+                    pstmt.addBatch();
+                    if ((i + 1) % BATCH == 0 || i == students - 1) {
+                        pstmt.executeBatch();
+                        conn.commit();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Scrolls through up to {@code pages} pages, each following the last
+     * row of the one before.
+     *
+     * @param latencies filled with each page's time in nanoseconds
+     * @return the ids of the rows shown, in order
+     */
+    private static List<Integer> walk(StudentRoster roster, String course, int pages, long[] latencies)
+            throws SQLException {
+        List<Integer> ids = new ArrayList<>(pages * StudentRoster.PAGE_SIZE);
+        StudentRoster.Entry after = null;
+        for (int p = 0; p < pages; p++) {
+            long start = System.nanoTime();
+            List<StudentRoster.Entry> page = roster.page(course, "", after, StudentRoster.PAGE_SIZE);
+            latencies[p] = System.nanoTime() - start;
+            for (StudentRoster.Entry entry : page) {
+                ids.add(entry.id);
+            }
+            if (page.size() < StudentRoster.PAGE_SIZE) {
+                break;
+            }
+            after = page.get(page.size() - 1);
+        }
+        return ids;
+    }
+
+    private static long[] firstPages(StudentRoster roster, String course, int times) throws SQLException {
+        long[] latencies = new long[times];
+        for (int i = 0; i < times; i++) {
+            long start = System.nanoTime();
+            roster.page(course, "", null, StudentRoster.PAGE_SIZE);
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    private static List<Integer> ids(ConnectionPool pool, String sql, Object... parameters) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                pstmt.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt("id"));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static String mismatch(String scrolling, List<Integer> shown, List<Integer> expected) {
+        int at = 0;
+        while (at < shown.size() && at < expected.size() && shown.get(at).equals(expected.get(at))) {
+            at++;
+        }
+        return "scrolling " + scrolling + " showed " + shown.size() + " rows, the table has " + expected.size()
+            + "; they part at row " + at;
+    }
+
+    private static double median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[(sorted.length - 1) / 2];
+    }
+
+    private static void report(String label, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-20s p50 %,8.2f ms  p99 %,8.2f ms  max %,8.2f ms%n", label, sorted[(sorted.length - 1) / 2] / 1e6,
+            sorted[(int) Math.ceil(sorted.length * 0.99) - 1] / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,658 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Append-only journal of account changes, in memory-mapped segment files.
+ *
+ * Every record is {@link #RECORD_SIZE} bytes and carries a CRC32, so a torn
+ * write at the tail is detected and dropped on replay. Appends only copy
+ * into the mapped segment; a flusher thread calls {@code force()} for
+ * everything appended so far, so concurrent callers waiting in
+ * {@link #awaitDurable} share one flush (group commit). A full segment is
+ * rolled over to the next file. Writers only hold the lock to claim
+ * sequence numbers and space; a {@link Batch} copies its records in
+ * outside it, and the flusher only counts records once every earlier one
+ * has been copied.
+ *
+ * {@link #open} rebuilds the registry from the last snapshot plus the
+ * records after it, writes a fresh snapshot and starts over with empty
+ * segments, so recovery only ever replays one run's worth of records.
+ * {@link #close} snapshots again. The directory is locked while open, so
+ * only one process at a time can use it.
+ */
+class TransactionJournal {
+
+    static final byte OPEN = 1;       // other = holder name, amount = opening balance
+    static final byte DEPOSIT = 2;
+    static final byte WITHDRAWAL = 3;
+    static final byte TRANSFER = 4;   // account = source, other = destination
+
+    /*
+     * Record layout:
+     *   0  int   CRC32 of bytes 4..127
+     *   4  byte  type (0 marks the end of the written part of a segment)
+     *   5  byte  account number length
+     *   6  byte  other field length
+     *   8  long  sequence
+     *  16  long  amount in cents
+     *  24  24 bytes account number, UTF-8
+     *  48  80 bytes other field, UTF-8; holder names are cut to fit
+     */
+    static final int RECORD_SIZE = 128;
+    private static final int ACCOUNT_OFFSET = 24;
+    private static final int ACCOUNT_BYTES = 24;
+    private static final int OTHER_OFFSET = 48;
+    private static final int OTHER_BYTES = 80;
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024; // 131072 records
+
+    private static final String SNAPSHOT = "snapshot.dat";
+    private static final String LOCK = "journal.lock";
+    private static final int SNAPSHOT_MAGIC = 0x424e4b31; // "BNK1"
+
+    private final Path directory;
+    private final AccountRegistry registry;
+    private final FileLock lock; // Held until close
+    private final Thread flusher;
+
+    // Guarded by this
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private int segmentPosition; // Bytes of the current segment handed out to writers
+    private final List<Retired> retired = new ArrayList<>(); // Rolled over, may still need forcing
+    private final Deque<Slots> inFlight = new ArrayDeque<>(); // Handed out, in sequence order
+    private long appendedSequence; // Highest sequence handed out
+    private long writtenSequence; // Every record up to this one is in its segment
+    private long durableSequence;
+    private IOException flushFailure;
+    private boolean closed;
+    private final byte[] record = new byte[RECORD_SIZE];
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * A run of consecutive records in one segment, handed to one writer.
+     */
+    private static final class Slots {
+        final ByteBuffer target; // Positioned at the first record
+        final long firstSequence;
+        final int count;
+        boolean written;
+
+        Slots(ByteBuffer target, long firstSequence, int count) {
+            this.target = target;
+            this.firstSequence = firstSequence;
+            this.count = count;
+        }
+    }
+
+    private static final class Retired {
+        final MappedByteBuffer segment;
+        final long lastSequence;
+
+        Retired(MappedByteBuffer segment, long lastSequence) {
+            this.segment = segment;
+            this.lastSequence = lastSequence;
+        }
+    }
+
+    /**
+     * Records buffered by one thread and appended together, for callers that
+     * post many changes at once. Records are encoded and copied into the
+     * segment outside the journal's lock, so batches from several threads
+     * are written in parallel; the lock is only taken to hand out sequence
+     * numbers and segment space. Not thread-safe; use one per thread.
+     */
+    final class Batch {
+        private byte[] types = new byte[64];
+        private long[] amounts = new long[64];
+        private byte[][] accounts = new byte[64][];
+        private byte[][] others = new byte[64][];
+        private int size;
+        private byte[] encoded = new byte[64 * RECORD_SIZE];
+        private final CRC32 batchCrc = new CRC32();
+
+        /**
+         * Buffers a record. Nothing is journaled until {@link #flush}.
+         *
+         * @throws IllegalArgumentException if the account number is too long to journal
+         */
+        void add(byte type, String account, long cents, String other) {
+            byte[] accountBytes = accountBytes(account);
+            if (size == types.length) {
+                int capacity = size * 2;
+                types = Arrays.copyOf(types, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+                accounts = Arrays.copyOf(accounts, capacity);
+                others = Arrays.copyOf(others, capacity);
+                encoded = new byte[capacity * RECORD_SIZE];
+            }
+            types[size] = type;
+            amounts[size] = cents;
+            accounts[size] = accountBytes;
+            others[size] = otherBytes(other);
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Appends the buffered records in order and empties the batch.
+         * Returns the sequence of the last one, or 0 if the batch was empty.
+         * Like {@link TransactionJournal#append}, the records are not durable
+         * until {@link #awaitDurable} returns for it.
+         */
+        long flush() {
+            long last = 0;
+            int done = 0;
+            try {
+                while (done < size) {
+                    Slots slots = reserve(size - done);
+                    try {
+                        ByteBuffer view = ByteBuffer.wrap(encoded);
+                        for (int i = 0; i < slots.count; i++) {
+                            int k = done + i;
+                            encode(view, i * RECORD_SIZE, types[k], accounts[k], others[k],
+                                slots.firstSequence + i, amounts[k], batchCrc);
+                        }
+                        slots.target.put(encoded, 0, slots.count * RECORD_SIZE);
+                    } finally {
+                        complete(slots);
+                    }
+                    done += slots.count;
+                    last = slots.firstSequence + slots.count - 1;
+                }
+            } finally {
+                Arrays.fill(accounts, 0, size, null);
+                Arrays.fill(others, 0, size, null);
+                size = 0;
+            }
+            return last;
+        }
+    }
+
+    private TransactionJournal(Path directory, AccountRegistry registry, FileLock lock, long lastSequence)
+            throws IOException {
+        this.directory = directory;
+        this.registry = registry;
+        this.lock = lock;
+        this.appendedSequence = lastSequence;
+        this.writtenSequence = lastSequence;
+        this.durableSequence = lastSequence;
+        this.segmentIndex = 1;
+        this.segment = createSegment(segmentIndex);
+
+        flusher = new Thread(this::flushLoop, "bank-journal");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Recovers {@code registry} from the journal in {@code directory}, creating
+     * it if needed, and attaches the journal to it.
+     */
+    static TransactionJournal open(Path directory, AccountRegistry registry) throws IOException {
+        Files.createDirectories(directory);
+        FileLock lock = lockDirectory(directory);
+        try {
+            Replay replay = new Replay(readSnapshot(directory.resolve(SNAPSHOT), registry));
+            for (Path file : segmentFiles(directory)) {
+                replaySegment(file, registry, replay);
+                if (replay.ended) {
+                    break; // Nothing after the end, a gap or a torn record was acknowledged
+                }
+            }
+            long lastSequence = replay.lastSequence;
+
+            writeSnapshot(directory, registry, lastSequence);
+            for (Path file : segmentFiles(directory)) {
+                Files.delete(file); // All covered by the snapshot now
+            }
+            forceDirectory(directory);
+
+            TransactionJournal journal = new TransactionJournal(directory, registry, lock, lastSequence);
+            registry.attach(journal);
+            return journal;
+        } catch (IOException | RuntimeException ex) {
+            lock.channel().close(); // Releases the lock
+            throw ex;
+        }
+    }
+
+    /**
+     * Appends a record and returns its sequence. It is not durable until
+     * {@link #awaitDurable} returns for that sequence.
+     */
+    synchronized long append(byte type, String account, long cents, String other) {
+        byte[] accountBytes = accountBytes(account);
+        Slots slots = reserve(1);
+        try {
+            encode(ByteBuffer.wrap(record), 0, type, accountBytes, otherBytes(other), slots.firstSequence, cents, crc);
+            slots.target.put(record);
+        } finally {
+            complete(slots);
+        }
+        return slots.firstSequence;
+    }
+
+    /**
+     * Starts a batch of records to append together.
+     */
+    Batch batch() {
+        return new Batch();
+    }
+
+    /**
+     * Hands out up to {@code wanted} records of space in the current
+     * segment, rolling over to a new one when it is full.
+     */
+    private synchronized Slots reserve(int wanted) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        if (segmentPosition + RECORD_SIZE > SEGMENT_SIZE) {
+            retired.add(new Retired(segment, appendedSequence));
+            try {
+                segment = createSegment(++segmentIndex);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            segmentPosition = 0;
+        }
+        int count = Math.min(wanted, (SEGMENT_SIZE - segmentPosition) / RECORD_SIZE);
+        ByteBuffer target = segment.duplicate(); // Own position, shared contents
+        target.position(segmentPosition);
+        segmentPosition += count * RECORD_SIZE;
+        Slots slots = new Slots(target, appendedSequence + 1, count);
+        appendedSequence += count;
+        inFlight.addLast(slots);
+        return slots;
+    }
+
+    /**
+     * Marks slots as written and advances the written sequence over every
+     * run finished so far, in order, so the flusher never claims a record
+     * durable while an earlier one is still being copied in.
+     */
+    private synchronized void complete(Slots slots) {
+        slots.written = true;
+        boolean advanced = false;
+        while (!inFlight.isEmpty() && inFlight.peekFirst().written) {
+            Slots done = inFlight.removeFirst();
+            writtenSequence = done.firstSequence + done.count - 1;
+            advanced = true;
+        }
+        if (advanced) {
+            notifyAll(); // Wake the flusher
+        }
+    }
+
+    private static byte[] accountBytes(String account) {
+        byte[] bytes = account.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > ACCOUNT_BYTES) {
+            throw new IllegalArgumentException("Account number too long to journal: " + account);
+        }
+        return bytes;
+    }
+
+    private static byte[] otherBytes(String other) {
+        return other == null ? new byte[0] : truncate(other.getBytes(StandardCharsets.UTF_8), OTHER_BYTES);
+    }
+
+    /**
+     * Writes one record at {@code offset} of {@code buffer}, CRC last.
+     */
+    private static void encode(ByteBuffer buffer, int offset, byte type, byte[] account, byte[] other,
+                               long sequence, long cents, CRC32 crc) {
+        byte[] bytes = buffer.array();
+        Arrays.fill(bytes, offset, offset + RECORD_SIZE, (byte) 0);
+        buffer.put(offset + 4, type);
+        buffer.put(offset + 5, (byte) account.length);
+        buffer.put(offset + 6, (byte) other.length);
+        buffer.putLong(offset + 8, sequence);
+        buffer.putLong(offset + 16, cents);
+        System.arraycopy(account, 0, bytes, offset + ACCOUNT_OFFSET, account.length);
+        System.arraycopy(other, 0, bytes, offset + OTHER_OFFSET, other.length);
+        crc.reset();
+        crc.update(bytes, offset + 4, RECORD_SIZE - 4);
+        buffer.putInt(offset, (int) crc.getValue());
+    }
+
+    /**
+     * Blocks until the record with this sequence has been forced to disk.
+     */
+    synchronized void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        while (durableSequence < sequence) {
+            if (flushFailure != null) {
+                throw new UncheckedIOException("Journal flush failed", flushFailure);
+            }
+            if (closed && !flusher.isAlive()) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                interrupted = true; // Keep waiting; the change is already applied
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flushes everything appended, stops journaling and writes a snapshot.
+     * Call once no more changes are in flight.
+     */
+    void close() throws IOException {
+        registry.attach(null);
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            try {
+                flusher.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return; // Leave the segments for replay
+            }
+            synchronized (this) {
+                if (flushFailure != null) {
+                    throw flushFailure;
+                }
+                writeSnapshot(directory, registry, durableSequence);
+            }
+            for (Path file : segmentFiles(directory)) {
+                Files.delete(file);
+            }
+            forceDirectory(directory);
+        } finally {
+            lock.channel().close(); // Releases the lock
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long target;
+            MappedByteBuffer current;
+            List<Retired> toForce;
+            synchronized (this) {
+                while (writtenSequence == durableSequence) {
+                    if (closed && appendedSequence == durableSequence) {
+                        return; // Closed and nothing left to flush
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                target = writtenSequence;
+                current = segment;
+                toForce = new ArrayList<>(retired);
+            }
+
+            try {
+                for (Retired full : toForce) {
+                    full.segment.force(); // Older segments first, so durable records never follow a gap
+                }
+                current.force();
+            } catch (UncheckedIOException ex) {
+                synchronized (this) {
+                    flushFailure = ex.getCause();
+                    notifyAll();
+                }
+                return;
+            }
+
+            synchronized (this) {
+                // A retired segment is done once everything in it was written before this flush
+                retired.removeIf(full -> full.lastSequence <= target);
+                durableSequence = target;
+                notifyAll();
+            }
+        }
+    }
+
+    private MappedByteBuffer createSegment(int index) throws IOException {
+        Path file = directory.resolve(String.format("journal-%06d.log", index));
+        Files.deleteIfExists(file);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE); // Zero-filled; stays valid after close
+        }
+    }
+
+    private static List<Path> segmentFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "journal-*.log")) {
+            stream.forEach(files::add);
+        }
+        files.sort(null); // Zero-padded names sort in segment order
+        return files;
+    }
+
+    /**
+     * How far replay has got.
+     */
+    private static final class Replay {
+        long lastSequence;
+        boolean ended; // Reached the last record that can be trusted; later segments are not read
+
+        Replay(long lastSequence) {
+            this.lastSequence = lastSequence;
+        }
+    }
+
+    /**
+     * Applies the records of one segment that come after the last sequence
+     * replayed, in order and without gaps. Writers copy records in outside
+     * the lock and the kernel writes mapped pages back in any order, so a
+     * crash can leave a record missing before ones that made it to disk.
+     * Those were never acknowledged, since a record is only durable once
+     * every earlier one is, so replay ends at the first unwritten record,
+     * torn record or skipped sequence.
+     */
+    private static void replaySegment(Path file, AccountRegistry registry, Replay replay) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        byte[] bytes = new byte[RECORD_SIZE];
+        ByteBuffer recordView = ByteBuffer.wrap(bytes);
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_SIZE) {
+            buffer.get(bytes);
+            byte type = recordView.get(4);
+            if (type == 0) {
+                replay.ended = true; // Segments fill in order, so nothing later was written without a gap
+                return;
+            }
+            crc.reset();
+            crc.update(bytes, 4, RECORD_SIZE - 4);
+            if (recordView.getInt(0) != (int) crc.getValue()) {
+                replay.ended = true;
+                return;
+            }
+            long sequence = recordView.getLong(8);
+            if (sequence <= replay.lastSequence) {
+                continue; // Already in the snapshot
+            }
+            if (sequence != replay.lastSequence + 1) {
+                replay.ended = true;
+                return;
+            }
+            String account = new String(bytes, ACCOUNT_OFFSET, recordView.get(5), StandardCharsets.UTF_8);
+            String other = new String(bytes, OTHER_OFFSET, recordView.get(6), StandardCharsets.UTF_8);
+            apply(registry, type, account, recordView.getLong(16), other);
+            replay.lastSequence = sequence;
+        }
+    }
+
+    private static void apply(AccountRegistry registry, byte type, String account, long cents, String other) {
+        if (type == OPEN) {
+            if (registry.find(account) == null) {
+                registry.restore(account, other, cents);
+            }
+            return;
+        }
+        BankAccount target = registry.find(account);
+        if (target == null) {
+            return; // Opened before a snapshot that has since been lost; nothing to apply to
+        }
+        switch (type) {
+            case DEPOSIT:
+                target.replay(cents);
+                break;
+            case WITHDRAWAL:
+                target.replay(-cents);
+                break;
+            case TRANSFER:
+                target.replay(-cents);
+                BankAccount destination = registry.find(other);
+                if (destination != null) {
+                    destination.replay(cents);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Loads the snapshot into the registry and returns the sequence it
+     * covers, or 0 if there is none.
+     */
+    private static long readSnapshot(Path file, AccountRegistry registry) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file)), crc))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a bank snapshot: " + file);
+            }
+            long sequence = in.readLong();
+            int count = in.readInt();
+            List<BankAccount> accounts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                accounts.add(new BankAccount(in.readUTF(), in.readUTF(), in.readLong()));
+            }
+            long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Bank snapshot is corrupt: " + file);
+            }
+            for (BankAccount account : accounts) {
+                registry.restore(account.getAccountNumber(), account.getAccountHolderName(), account.getBalanceCents());
+            }
+            return sequence;
+        }
+    }
+
+    private static void writeSnapshot(Path directory, AccountRegistry registry, long sequence) throws IOException {
+        List<BankAccount> accounts = new ArrayList<>();
+        registry.forEach(accounts::add);
+
+        Path temp = directory.resolve(SNAPSHOT + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)), crc));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(sequence);
+            out.writeInt(accounts.size());
+            for (BankAccount account : accounts) {
+                out.writeUTF(account.getAccountNumber());
+                out.writeUTF(account.getAccountHolderName());
+                out.writeLong(account.getBalanceCents());
+            }
+            out.writeLong(crc.getValue()); // Covers everything before it
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(directory); // The rename must be durable before the segments it replaces are deleted
+    }
+
+    /**
+     * Makes renames and deletions in the directory durable. Platforms that
+     * can't open a directory (Windows) make them durable on their own.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException ex) {
+            return;
+        }
+        try (FileChannel dir = channel) {
+            dir.force(true);
+        }
+    }
+
+    /**
+     * Locks the directory for this process. A second process, such as a
+     * batch post while the GUI is running, would otherwise snapshot over
+     * the first one's journal and delete its segments.
+     */
+    private static FileLock lockDirectory(Path directory) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            lock = null; // Held by this process
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Journal " + directory + " is in use by another process");
+        }
+        return lock;
+    }
+
+    /**
+     * Cuts UTF-8 bytes to at most {@code limit} without splitting a character.
+     */
+    private static byte[] truncate(byte[] bytes, int limit) {
+        if (bytes.length <= limit) {
+            return bytes;
+        }
+        int end = limit;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+            end--; // Back off continuation bytes
+        }
+        return Arrays.copyOf(bytes, end);
+    }
+}
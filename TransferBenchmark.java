@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opens a million accounts in an {@link AccountRegistry} and runs random
+ * transfers between them, first on one thread and then doubling up to one
+ * per core, reporting transfers per second for each. Unlike
+ * {@link TransferStressCheck}, which crowds a few accounts to provoke
+ * races, this measures throughput with accounts as plentiful as a real
+ * bank's. Needs no database:
+ *
+ *     javac *.java && java -Xmx1g TransferBenchmark [accounts] [seconds] [maxThreads]
+ *
+ * Exits with status 1 if the money in the bank changes.
+ */
+class TransferBenchmark {
+
+    private static final long OPENING_CENTS = 100_000L;
+
+    public static void main(String[] args) throws InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        AccountRegistry registry = new AccountRegistry(count);
+        String[] numbers = new String[count];
+        for (int i = 0; i < count; i++) {
+            numbers[i] = String.format("%09d", i);
+            registry.open(numbers[i], "Holder " + i, OPENING_CENTS);
+        }
+        System.out.printf("%,d accounts opened in %,d ms%n", count, (System.nanoTime() - start) / 1_000_000);
+        long before = total(registry);
+
+        run(registry, numbers, 1, 1, false); // Warm the JIT
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            run(registry, numbers, threads, seconds, true);
+            if (threads == maxThreads) {
+                break;
+            }
+        }
+
+        long after = total(registry);
+        if (after != before) {
+            System.out.println("FAILED: the bank holds " + Money.format(after) + ", it opened with " + Money.format(before));
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private static void run(AccountRegistry registry, String[] numbers, int threads, long seconds, boolean report)
+            throws InterruptedException {
+        LongAdder done = new LongAdder();
+        LongAdder refused = new LongAdder();
+        CountDownLatch go = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    go.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                while (System.nanoTime() < deadline[0]) {
+                    AccountRegistry.TransferResult result = registry.transfer(numbers[random.nextInt(numbers.length)],
+                        numbers[random.nextInt(numbers.length)], 1 + random.nextLong(OPENING_CENTS / 10));
+                    if (result == AccountRegistry.TransferResult.OK) {
+                        done.increment();
+                    } else {
+                        refused.increment();
+                    }
+                }
+            }, "transfer-bench-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        long start = System.nanoTime();
+        deadline[0] = start + seconds * 1_000_000_000L;
+        go.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        if (report) {
+            System.out.printf("%2d threads  %,12.0f transfers/s  (%,d refused)%n", threads, done.sum() / elapsed, refused.sum());
+        }
+    }
+
+    private static long total(AccountRegistry registry) {
+        long[] total = new long[1];
+        registry.forEach(account -> total[0] += account.getBalanceCents());
+        return total[0];
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs concurrent transfers, deposits and withdrawals against an
+ * {@link AccountRegistry} and checks that transfers neither create nor lose
+ * money and no balance goes negative. Needs no database:
+ *
+ *     javac *.java && java TransferStressCheck [threads] [seconds] [journal-dir]
+ *
+ * With a journal directory the changes are journaled too, and the check
+ * also replays the journal into a fresh registry and compares balances.
+ * Exits with status 1 if a check fails.
+ */
+class TransferStressCheck {
+
+    private static final int ACCOUNTS = 20;
+    private static final long OPENING_CENTS = 100_000L;
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        Path journalDir = args.length > 2 ? Paths.get(args[2]) : null;
+
+        AccountRegistry registry = new AccountRegistry();
+        TransactionJournal journal = journalDir != null ? TransactionJournal.open(journalDir, registry) : null;
+        String[] numbers = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            numbers[i] = "STRESS-" + i;
+            if (registry.find(numbers[i]) == null) {
+                registry.open(numbers[i], "Stress " + i, OPENING_CENTS);
+            }
+        }
+        long before = total(registry, numbers);
+
+        AtomicLong deposited = new AtomicLong(); // Net of withdrawals
+        AtomicLong transfers = new AtomicLong();
+        AtomicLong refused = new AtomicLong();
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                while (System.nanoTime() < deadline) {
+                    String from = numbers[random.nextInt(ACCOUNTS)];
+                    String to = numbers[random.nextInt(ACCOUNTS)];
+                    long cents = 1 + random.nextLong(OPENING_CENTS / 10);
+                    int action = random.nextInt(10);
+                    if (action == 0) {
+                        if (registry.find(from).deposit(cents)) {
+                            deposited.addAndGet(cents);
+                        }
+                    } else if (action == 1) {
+                        if (registry.find(from).withdraw(cents)) {
+                            deposited.addAndGet(-cents);
+                        }
+                    } else {
+                        // Both directions at once, so lock ordering is exercised too
+                        AccountRegistry.TransferResult result = registry.transfer(from, to, cents);
+                        if (result == AccountRegistry.TransferResult.OK) {
+                            transfers.incrementAndGet();
+                        } else if (result == AccountRegistry.TransferResult.INSUFFICIENT_FUNDS
+                                   || result == AccountRegistry.TransferResult.SAME_ACCOUNT) {
+                            refused.incrementAndGet();
+                        } else {
+                            failure.compareAndSet(null, "Unexpected transfer result " + result);
+                        }
+                    }
+                    long balance = registry.find(from).getBalanceCents();
+                    if (balance < 0) {
+                        failure.compareAndSet(null, from + " went negative: " + balance);
+                    }
+                }
+            }, "transfer-stress-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long after = total(registry, numbers);
+        if (after != before + deposited.get()) {
+            failure.compareAndSet(null, "Total is " + after + " cents, expected " + (before + deposited.get()));
+        }
+        System.out.printf("%d threads, %d transfers, %d refused, total %s%n", threads, transfers.get(), refused.get(),
+            Money.format(after));
+
+        if (journal != null) {
+            long[] balances = new long[ACCOUNTS];
+            for (int i = 0; i < ACCOUNTS; i++) {
+                balances[i] = registry.find(numbers[i]).getBalanceCents();
+            }
+            journal.close();
+            AccountRegistry replayed = new AccountRegistry();
+            TransactionJournal.open(journalDir, replayed).close();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                long recovered = replayed.find(numbers[i]).getBalanceCents();
+                if (recovered != balances[i]) {
+                    failure.compareAndSet(null, numbers[i] + " replays to " + recovered + ", was " + balances[i]);
+                }
+            }
+            System.out.println("Journal replayed to the same balances");
+        }
+
+        if (failure.get() != null) {
+            System.out.println("FAILED: " + failure.get());
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private static long total(AccountRegistry registry, String[] numbers) {
+        long total = 0;
+        for (String number : numbers) {
+            total += registry.find(number).getBalanceCents();
+        }
+        return total;
+    }
+}